@@ -8,6 +8,9 @@ package org.neoxml;
 
 import org.xml.sax.EntityResolver;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
@@ -132,6 +135,61 @@ public interface Document extends Branch {
      */
     void setXMLEncoding(String encoding);
 
+    /**
+     * Returns all elements of this document with given name in document order. Documents may keep an index of
+     * elements by their names, so repeated lookups don't walk the whole document. The default implementation
+     * selects the elements by XPath on every call.
+     *
+     * @param qName the name of elements
+     * @return unmodifiable list of matching elements
+     */
+    default List<Element> elementsByQName(QName qName) {
+        final List<Element> result = new ArrayList<>();
+
+        for (Node node : selectNodes("//*")) {
+            if (qName.equals(((Element) node).getQName())) {
+                result.add((Element) node);
+            }
+        }
+
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Registers an index of elements by the value of given attribute, replacing any index of the same name. The index
+     * is filled on its first use and then maintained as the document changes.
+     *
+     * @param indexName     the name of the index
+     * @param attributeName the name of the indexed attribute
+     * @param elementName   the name of indexed elements, null to index elements of any name
+     * @throws UnsupportedOperationException if this document doesn't support indexes, as by default
+     */
+    default void addAttributeIndex(String indexName, QName attributeName, QName elementName) {
+        throw new UnsupportedOperationException("This document does not support attribute indexes");
+    }
+
+    /**
+     * Removes the attribute index of given name
+     *
+     * @param indexName the name of the index
+     * @return true if the index was registered
+     */
+    default boolean removeAttributeIndex(String indexName) {
+        return false;
+    }
+
+    /**
+     * Returns the elements whose indexed attribute has given value
+     *
+     * @param indexName the name of the index
+     * @param value     the attribute value
+     * @return unmodifiable list of the elements in document order
+     * @throws IllegalArgumentException if there is no index of given name
+     */
+    default List<Element> lookup(String indexName, String value) {
+        throw new IllegalArgumentException("No attribute index named: " + indexName);
+    }
+
     static Document require(Node node) {
         if (node instanceof Document) {
             return (Document) node;
@@ -10,6 +10,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.function.Consumer;
 
 /**
  * <p>
@@ -609,6 +610,21 @@ public interface Element extends Branch {
      */
     Iterator<Element> elementIterator(QName qName);
 
+    /**
+     * Performs the action for each element contained in this element which matches the given fully qualified name.
+     * Unlike {@link #elements(QName)} and {@link #elementIterator(QName)}, no list or iterator has to be created.
+     *
+     * @param qName  is the fully qualified name to search for, or null for all elements
+     * @param action the action
+     */
+    default void forEachElement(QName qName, Consumer<? super Element> action) {
+        final Iterator<Element> iterator = qName != null ? elementIterator(qName) : elementIterator();
+
+        while (iterator.hasNext()) {
+            action.accept(iterator.next());
+        }
+    }
+
     // Helper methods
     // -------------------------------------------------------------------------
 
@@ -647,6 +663,23 @@ public interface Element extends Branch {
      */
     void appendAttributes(Element element);
 
+    /**
+     * <p>
+     * Creates a copy of this element detached from its parent, getParent() on the clone will return null.
+     * </p>
+     * <p>
+     * Elements of this library may return a copy sharing the attributes and content with this element until either of
+     * them changes, changing this element first gives its copies the previous content. Nodes of the copy are created
+     * when they are first reached from it, even by reads, so a copy takes memory only for the parts read or changed.
+     * Changes made through nodes of other implementations, which don't notify their parent before they change, are
+     * seen by copies which haven't reached the changed nodes yet.
+     * </p>
+     *
+     * @return the copy of this element or this element if it is read only
+     */
+    @Override
+    Element clone();
+
     /**
      * <p>
      * Creates a deep copy of this element The new element is detached from its parent, and getParent() on the clone will
@@ -177,6 +177,21 @@ public interface Node extends Cloneable {
      */
     String getStringValue();
 
+    /**
+     * Appends the XPath string-value of this node to given buffer. Unlike
+     * {@link #getStringValue()} it does not create intermediate strings for
+     * nested nodes, so each character of the value is copied just once.
+     *
+     * @param buffer the buffer the string-value is appended to
+     */
+    default void appendStringValue(StringBuilder buffer) {
+        final String value = getStringValue();
+
+        if (value != null) {
+            buffer.append(value);
+        }
+    }
+
     /**
      * <p>
      * Returns the XPath expression which will return a node set containing the given node such as /a/b/&#64;c. No
@@ -437,6 +452,31 @@ public interface Node extends Cloneable {
      */
     boolean accept(Visitor visitor);
 
+    /**
+     * <p>
+     * <code>structuralHash</code> returns a 64-bit hash of the name, attributes and text of this node and of its
+     * content, regardless of its parent or position. Equal subtrees have equal hashes, so the hash can serve as a
+     * cache key and nodes with different hashes differ. Elements cache their hash until they or any of their
+     * descendants change, so hashing an unchanged subtree again costs nothing.
+     * </p>
+     * <p>
+     * The default implementation hashes the XML text of this node without caching; the nodes of the
+     * <code>org.neoxml.tree</code> package override it.
+     * </p>
+     *
+     * @return the structural hash
+     */
+    default long structuralHash() {
+        final String xml = asXML();
+        long hash = 0xcbf29ce484222325L;
+
+        for (int i = 0, length = xml.length(); i < length; i++) {
+            hash = (hash ^ xml.charAt(i)) * 0x100000001b3L;
+        }
+
+        return hash;
+    }
+
     /**
      * <p>
      * <code>clone</code> will return a deep clone or if this node is read-only then clone will return the same instance.
@@ -10,6 +10,8 @@ import org.neoxml.Element;
 import org.neoxml.QName;
 import org.neoxml.tree.AbstractAttribute;
 
+import java.util.Objects;
+
 /**
  * <p>
  * <code>BeanAttribute</code> represents a mutable XML attribute which is backed by a property of the JavaBean of its
@@ -54,7 +56,7 @@ public class BeanAttribute extends AbstractAttribute {
 
     @Override
     public void setValue(String data) {
-        beanList.setData(index, data);
+        setData(data);
     }
 
     @Override
@@ -64,7 +66,13 @@ public class BeanAttribute extends AbstractAttribute {
 
     @Override
     public void setData(Object data) {
+        beforeChange();
+        final String oldValue = getValue();
         beanList.setData(index, data);
+
+        if (!Objects.equals(oldValue, getValue())) {
+            valueChanged(oldValue);
+        }
     }
 }
 
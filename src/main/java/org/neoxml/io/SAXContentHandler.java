@@ -24,6 +24,7 @@ import org.neoxml.dtd.InternalEntityDecl;
 import org.neoxml.tree.AbstractElement;
 import org.neoxml.tree.NamespaceStack;
 import org.neoxml.util.HeadList;
+import org.neoxml.util.StringPool;
 import org.xml.sax.Attributes;
 import org.xml.sax.EntityResolver;
 import org.xml.sax.InputSource;
@@ -151,6 +152,12 @@ public class SAXContentHandler extends DefaultHandler implements LexicalHandler,
      */
     private boolean mergeAdjacentText = false;
 
+    /**
+     * Whether every chunk of characters delivered by the parser should be added
+     * as a separate text node when adjacent text nodes are not merged
+     */
+    private boolean preserveTextChunks = false;
+
     /**
      * Have we added text to the buffer
      */
@@ -171,6 +178,11 @@ public class SAXContentHandler extends DefaultHandler implements LexicalHandler,
      */
     private boolean stripWhitespaceText = false;
 
+    /**
+     * Pool used to share repeating text and attribute values, null if values are not pooled
+     */
+    private StringPool valuePool;
+
     public SAXContentHandler() {
         this(DefaultDocumentFactory.getInstance());
     }
@@ -214,7 +226,7 @@ public class SAXContentHandler extends DefaultHandler implements LexicalHandler,
 
     @Override
     public void processingInstruction(String target, String data) throws SAXException {
-        if (mergeAdjacentText && textInTextBuffer) {
+        if (textInTextBuffer) {
             completeCurrentTextNode();
         }
 
@@ -250,7 +262,7 @@ public class SAXContentHandler extends DefaultHandler implements LexicalHandler,
         namespaceStack.clear();
         declaredNamespaceIndex = 0;
 
-        if (mergeAdjacentText) {
+        if (mergeAdjacentText || !preserveTextChunks) {
             if (textBuffer == null) {
                 textBuffer = new StringBuilder();
             } else {
@@ -274,7 +286,7 @@ public class SAXContentHandler extends DefaultHandler implements LexicalHandler,
 
     @Override
     public void startElement(String namespaceURI, String localName, String qualifiedName, Attributes attributes) throws SAXException {
-        if (mergeAdjacentText && textInTextBuffer) {
+        if (textInTextBuffer) {
             completeCurrentTextNode();
         }
 
@@ -307,7 +319,7 @@ public class SAXContentHandler extends DefaultHandler implements LexicalHandler,
 
     @Override
     public void endElement(String namespaceURI, String localName, String qName) throws SAXException {
-        if (mergeAdjacentText && textInTextBuffer) {
+        if (textInTextBuffer) {
             completeCurrentTextNode();
         }
 
@@ -327,24 +339,25 @@ public class SAXContentHandler extends DefaultHandler implements LexicalHandler,
 
         if (currentElement != null) {
             if (entity != null) {
-                if (mergeAdjacentText && textInTextBuffer) {
+                if (textInTextBuffer) {
                     completeCurrentTextNode();
                 }
 
                 currentElement.addEntity(entity, new String(ch, start, end));
                 entity = null;
             } else if (insideCDATASection) {
-                if (mergeAdjacentText && textInTextBuffer) {
+                if (textInTextBuffer) {
                     completeCurrentTextNode();
                 }
 
                 cdataText.append(ch, start, end);
             } else {
-                if (mergeAdjacentText) {
+                if (mergeAdjacentText || !preserveTextChunks) {
+                    // chunks of one text run are collected until the run ends
                     textBuffer.append(ch, start, end);
                     textInTextBuffer = true;
                 } else {
-                    currentElement.addText(new String(ch, start, end));
+                    currentElement.addText(valuePool != null ? valuePool.intern(ch, start, end) : new String(ch, start, end));
                 }
             }
         }
@@ -449,6 +462,10 @@ public class SAXContentHandler extends DefaultHandler implements LexicalHandler,
 
     @Override
     public void startCDATA() throws SAXException {
+        if (textInTextBuffer) {
+            completeCurrentTextNode();
+        }
+
         insideCDATASection = true;
         if (cdataText == null) {
             cdataText = new StringBuilder();
@@ -460,13 +477,13 @@ public class SAXContentHandler extends DefaultHandler implements LexicalHandler,
     @Override
     public void endCDATA() throws SAXException {
         insideCDATASection = false;
-        currentElement.addCDATA(cdataText.toString());
+        currentElement.addCDATA(valuePool != null ? valuePool.intern(cdataText) : cdataText.toString());
     }
 
     @Override
     public void comment(char[] ch, int start, int end) throws SAXException {
         if (!ignoreComments) {
-            if (mergeAdjacentText && textInTextBuffer) {
+            if (textInTextBuffer) {
                 completeCurrentTextNode();
             }
 
@@ -739,6 +756,29 @@ public class SAXContentHandler extends DefaultHandler implements LexicalHandler,
         this.mergeAdjacentText = mergeAdjacentText;
     }
 
+    /**
+     * Returns whether chunks of characters delivered by the parser are added as
+     * separate text nodes when adjacent text nodes are not merged.
+     *
+     * @return Value of property preserveTextChunks.
+     */
+    public boolean isPreserveTextChunks() {
+        return preserveTextChunks;
+    }
+
+    /**
+     * Sets whether chunks of characters delivered by the parser should be added
+     * as separate text nodes when adjacent text nodes are not merged. By default
+     * the chunks of one text run (e.g. text split at parser buffer boundaries or
+     * by entity references) are collected into a single text node. Whitespace is
+     * stripped only when adjacent text is merged.
+     *
+     * @param preserveTextChunks New value of property preserveTextChunks.
+     */
+    public void setPreserveTextChunks(boolean preserveTextChunks) {
+        this.preserveTextChunks = preserveTextChunks;
+    }
+
     /**
      * Sets whether whitespace between element start and end tags should be
      * ignored
@@ -759,6 +799,26 @@ public class SAXContentHandler extends DefaultHandler implements LexicalHandler,
         this.stripWhitespaceText = stripWhitespaceText;
     }
 
+    /**
+     * Returns the pool used to share repeating text and attribute values.
+     *
+     * @return the pool or null if values are not pooled
+     */
+    public StringPool getValuePool() {
+        return valuePool;
+    }
+
+    /**
+     * Sets the pool used to share repeating text and attribute values, so
+     * equal values in built document are represented by the same
+     * <code>String</code> instance.
+     *
+     * @param valuePool the pool or null if values should not be pooled
+     */
+    public void setValuePool(StringPool valuePool) {
+        this.valuePool = valuePool;
+    }
+
     /**
      * Returns whether we should ignore comments or not.
      *
@@ -785,7 +845,7 @@ public class SAXContentHandler extends DefaultHandler implements LexicalHandler,
      * with it and add it to the current element
      */
     protected void completeCurrentTextNode() {
-        if (stripWhitespaceText) {
+        if (mergeAdjacentText && stripWhitespaceText) {
             boolean whitespace = true;
 
             for (int i = 0, size = textBuffer.length(); i < size; i++) {
@@ -797,16 +857,20 @@ public class SAXContentHandler extends DefaultHandler implements LexicalHandler,
             }
 
             if (!whitespace) {
-                currentElement.addText(textBuffer.toString());
+                currentElement.addText(textBufferValue());
             }
         } else {
-            currentElement.addText(textBuffer.toString());
+            currentElement.addText(textBufferValue());
         }
 
         textBuffer.setLength(0);
         textInTextBuffer = false;
     }
 
+    private String textBufferValue() {
+        return valuePool != null ? valuePool.intern(textBuffer) : textBuffer.toString();
+    }
+
     /**
      * DOCUMENT ME!
      *
@@ -882,7 +946,7 @@ public class SAXContentHandler extends DefaultHandler implements LexicalHandler,
         if (element instanceof AbstractElement) {
             // optimised method
             AbstractElement baseElement = (AbstractElement) element;
-            baseElement.setAttributes(attributes, namespaceStack, false);
+            baseElement.setAttributes(attributes, namespaceStack, valuePool, false);
         } else {
             int size = attributes.getLength();
 
@@ -894,6 +958,10 @@ public class SAXContentHandler extends DefaultHandler implements LexicalHandler,
                     String attributeLocalName = attributes.getLocalName(i);
                     String attributeValue = attributes.getValue(i);
 
+                    if (valuePool != null) {
+                        attributeValue = valuePool.intern(attributeValue);
+                    }
+
                     QName qName = namespaceStack.getAttributeQName(attributeURI, attributeLocalName, attributeQName);
                     element.addAttribute(qName, attributeValue);
                 }
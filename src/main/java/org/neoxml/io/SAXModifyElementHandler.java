@@ -43,7 +43,7 @@ class SAXModifyElementHandler implements ElementHandler {
 
             if (currentParent != null) {
                 // Clone sets parent + document to null
-                Element clonedElem = (Element) origElement.clone();
+                Element clonedElem = origElement.clone();
 
                 // Ask for modified element
                 modifiedElement = elemModifier.modifyElement(clonedElem);
@@ -63,7 +63,7 @@ class SAXModifyElementHandler implements ElementHandler {
             } else {
                 if (origElement.isRootElement()) {
                     // Clone sets parent + document to null
-                    Element clonedElem = (Element) origElement.clone();
+                    Element clonedElem = origElement.clone();
 
                     // Ask for modified element
                     modifiedElement = elemModifier.modifyElement(clonedElem);
@@ -11,6 +11,7 @@ import org.neoxml.Document;
 import org.neoxml.DocumentException;
 import org.neoxml.DocumentFactory;
 import org.neoxml.ElementHandler;
+import org.neoxml.util.StringPool;
 import org.xml.sax.EntityResolver;
 import org.xml.sax.ErrorHandler;
 import org.xml.sax.InputSource;
@@ -118,6 +119,11 @@ public class SAXReader {
      */
     private boolean mergeAdjacentText = false;
 
+    /**
+     * Whether chunks of characters should be added as separate text nodes
+     */
+    private boolean preserveTextChunks = false;
+
     /**
      * Holds value of property stripWhitespaceText.
      */
@@ -128,6 +134,11 @@ public class SAXReader {
      */
     private boolean ignoreComments = false;
 
+    /**
+     * Pool used to share repeating text and attribute values
+     */
+    private StringPool valuePool;
+
     /**
      * Encoding of InputSource - null means system default encoding
      */
@@ -415,6 +426,76 @@ public class SAXReader {
         }
     }
 
+    /**
+     * <p>
+     * Parses the input with the configured <code>XMLReader</code> and passes the events to given handler instead of
+     * building a document. It lets streaming consumers reuse the parser settings of this reader.
+     * </p>
+     *
+     * @param in      <code>InputSource</code> to read from.
+     * @param handler the handler receiving the SAX events
+     * @throws DocumentException if an error occurs during parsing.
+     */
+    public void parse(InputSource in, DefaultHandler handler) throws DocumentException {
+        try {
+            XMLReader reader = getXMLReader();
+
+            try {
+                configureReader(reader, handler);
+                reader.setContentHandler(handler);
+
+                if (entityResolver != null) {
+                    reader.setEntityResolver(entityResolver);
+                }
+
+                reader.parse(in);
+            } finally {
+                // the next read configures the reader for its own handler again
+                configured = false;
+
+                if (contentHandler != null) {
+                    reader.setContentHandler(contentHandler);
+                }
+            }
+        } catch (SAXParseException parseException) {
+            String systemId = parseException.getSystemId();
+
+            if (systemId == null) {
+                systemId = "";
+            }
+
+            String message = "Error on line " + parseException.getLineNumber() + " of document " + systemId + " : " + parseException.getMessage();
+
+            throw new DocumentException(message, parseException);
+        } catch (DocumentException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new DocumentException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * <p>
+     * Reads a document calling given handler when each element starts and ends, instead of the handlers registered
+     * by {@link #addHandler(String, ElementHandler)}. The handler may detach elements it has processed to keep the
+     * document small.
+     * </p>
+     *
+     * @param in      <code>InputSource</code> to read from.
+     * @param handler the handler called for every element
+     * @return the document, without the elements detached by the handler
+     * @throws DocumentException if an error occurs during parsing.
+     */
+    public Document read(InputSource in, ElementHandler handler) throws DocumentException {
+        final SAXContentHandler elementContentHandler = new SAXContentHandler(getDocumentFactory(), handler);
+
+        configureContentHandler(elementContentHandler);
+        elementContentHandler.setInputSource(in);
+        parse(in, elementContentHandler);
+
+        return elementContentHandler.getDocument();
+    }
+
     // Properties
     // -------------------------------------------------------------------------
 
@@ -515,6 +596,12 @@ public class SAXReader {
     /**
      * Sets whether or not adjacent text nodes should be merged together when
      * parsing.
+     * <p>
+     * Even when this is false, the chunks in which the parser delivers one run
+     * of text (e.g. split at buffer boundaries or by character references) are
+     * collected into a single text node. Earlier versions added a text node per
+     * chunk, use {@link #setPreserveTextChunks(boolean)} to get that behaviour.
+     * </p>
      *
      * @param mergeAdjacentText New value of property mergeAdjacentText.
      */
@@ -523,6 +610,30 @@ public class SAXReader {
         this.configured = false;
     }
 
+    /**
+     * Returns whether chunks of characters delivered by the parser are added as
+     * separate text nodes when adjacent text nodes are not merged.
+     *
+     * @return Value of property preserveTextChunks.
+     */
+    public boolean isPreserveTextChunks() {
+        return preserveTextChunks;
+    }
+
+    /**
+     * Sets whether chunks of characters delivered by the parser should be added
+     * as separate text nodes when adjacent text nodes are not merged. By default
+     * the chunks of one text run are collected into a single text node; before
+     * this property was added, a text node was created per chunk, so set it to
+     * true to keep that behaviour.
+     *
+     * @param preserveTextChunks New value of property preserveTextChunks.
+     */
+    public void setPreserveTextChunks(boolean preserveTextChunks) {
+        this.preserveTextChunks = preserveTextChunks;
+        this.configured = false;
+    }
+
     /**
      * Sets whether whitespace between element start and end tags should be
      * ignored
@@ -544,6 +655,29 @@ public class SAXReader {
         this.configured = false;
     }
 
+    /**
+     * Returns the pool used to share repeating text and attribute values.
+     *
+     * @return the pool or null if values are not pooled
+     */
+    public StringPool getValuePool() {
+        return valuePool;
+    }
+
+    /**
+     * Sets the pool used to share repeating text and attribute values of
+     * parsed documents, e.g. <code>new StringPool(4096, 32)</code>. Equal
+     * values are then represented by the same <code>String</code> instance,
+     * which can save a lot of memory for documents with many repeated values.
+     * The pool is kept between parsed documents. Values are not pooled by default.
+     *
+     * @param valuePool the pool or null if values should not be pooled
+     */
+    public void setValuePool(StringPool valuePool) {
+        this.valuePool = valuePool;
+        this.configured = false;
+    }
+
     /**
      * Returns whether we should ignore comments or not.
      *
@@ -657,18 +791,9 @@ public class SAXReader {
 
             if (entityResolver != null) {
                 reader.setEntityResolver(entityResolver);
-                contentHandler.setEntityResolver(entityResolver);
             }
 
-            boolean internal = isIncludeInternalDTDDeclarations();
-            boolean external = isIncludeExternalDTDDeclarations();
-
-            contentHandler.setIncludeInternalDTDDeclarations(internal);
-            contentHandler.setIncludeExternalDTDDeclarations(external);
-            contentHandler.setMergeAdjacentText(isMergeAdjacentText());
-            contentHandler.setStripWhitespaceText(isStripWhitespaceText());
-            contentHandler.setIgnoreComments(isIgnoreComments());
-
+            configureContentHandler(contentHandler);
             configureReader(reader, contentHandler);
 
             configured = true;
@@ -678,6 +803,20 @@ public class SAXReader {
     }
 
 
+    private void configureContentHandler(SAXContentHandler handler) {
+        if (entityResolver != null) {
+            handler.setEntityResolver(entityResolver);
+        }
+
+        handler.setIncludeInternalDTDDeclarations(isIncludeInternalDTDDeclarations());
+        handler.setIncludeExternalDTDDeclarations(isIncludeExternalDTDDeclarations());
+        handler.setMergeAdjacentText(isMergeAdjacentText());
+        handler.setPreserveTextChunks(isPreserveTextChunks());
+        handler.setStripWhitespaceText(isStripWhitespaceText());
+        handler.setIgnoreComments(isIgnoreComments());
+        handler.setValuePool(getValuePool());
+    }
+
     /**
      * Sets the <code>XMLReader</code> used to parse SAX events
      *
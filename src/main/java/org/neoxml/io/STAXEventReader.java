@@ -47,7 +47,7 @@ public class STAXEventReader {
     /**
      * A StAX input factory, used to construct streams from IO streams.
      */
-    private final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+    private final XMLInputFactory inputFactory = DefaultInputFactory.INSTANCE;
 
     /**
      * Constructs a default <code>STAXEventReader</code> instance with a
@@ -533,6 +533,14 @@ public class STAXEventReader {
     public org.neoxml.QName createQName(QName qname) {
         return factory.createQName(qname.getLocalPart(), qname.getPrefix(), qname.getNamespaceURI());
     }
+
+    /**
+     * Holds the input factory shared by all instances, created on first use. It keeps the default properties, so CDATA
+     * sections are read as characters, and it is never exposed, so they aren't changed.
+     */
+    private static final class DefaultInputFactory {
+        static final XMLInputFactory INSTANCE = XMLInputFactory.newInstance();
+    }
 }
 
 /*
@@ -0,0 +1,283 @@
+package org.neoxml.io;
+
+import org.neoxml.Branch;
+import org.neoxml.DefaultDocumentFactory;
+import org.neoxml.Document;
+import org.neoxml.DocumentFactory;
+import org.neoxml.Element;
+import org.neoxml.QName;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.io.Reader;
+
+/**
+ * <p>
+ * Reads a neoxml {@link Document} or {@link Element} from a StAX {@link XMLStreamReader}. Unlike
+ * {@link STAXEventReader} it reads the cursor of the stream reader directly, without creating an event object per
+ * token, and builds the tree without recursion. Qualified names are created by the {@link DocumentFactory}, which
+ * shares them through its <code>QNameCache</code>.
+ * </p>
+ * <p>
+ * Streams are read by stream readers of one {@link XMLInputFactory} shared by all instances of this class, unless
+ * another factory is set.
+ * </p>
+ */
+public class STAXStreamReader {
+    private DocumentFactory factory;
+
+    private XMLInputFactory inputFactory;
+
+    /**
+     * Text of consecutive character events, which are merged into one text node
+     */
+    private final StringBuilder text = new StringBuilder();
+
+    public STAXStreamReader() {
+        this(null);
+    }
+
+    public STAXStreamReader(DocumentFactory factory) {
+        setDocumentFactory(factory);
+    }
+
+    public void setDocumentFactory(DocumentFactory documentFactory) {
+        if (documentFactory != null) {
+            this.factory = documentFactory;
+        } else {
+            this.factory = DefaultDocumentFactory.getInstance();
+        }
+    }
+
+    /**
+     * Sets the factory creating stream readers for streams, null for the shared default factory
+     *
+     * @param inputFactory the factory
+     */
+    public void setXMLInputFactory(XMLInputFactory inputFactory) {
+        this.inputFactory = inputFactory;
+    }
+
+    /**
+     * Returns the factory set by {@link #setXMLInputFactory(XMLInputFactory)}. The shared default factory is not
+     * returned, so its properties can't be changed for all readers.
+     *
+     * @return the factory creating stream readers for streams, null if the shared default factory is used
+     */
+    public XMLInputFactory getXMLInputFactory() {
+        return inputFactory;
+    }
+
+    private XMLInputFactory inputFactory() {
+        return inputFactory != null ? inputFactory : SharedInputFactory.INSTANCE;
+    }
+
+    public Document readDocument(InputStream is) throws XMLStreamException {
+        return readDocument(is, null);
+    }
+
+    public Document readDocument(Reader reader) throws XMLStreamException {
+        return readDocument(reader, null);
+    }
+
+    public Document readDocument(InputStream is, String systemId) throws XMLStreamException {
+        final XMLStreamReader streamReader = inputFactory().createXMLStreamReader(systemId, is);
+
+        try {
+            return readDocument(streamReader);
+        } finally {
+            streamReader.close();
+        }
+    }
+
+    public Document readDocument(Reader reader, String systemId) throws XMLStreamException {
+        final XMLStreamReader streamReader = inputFactory().createXMLStreamReader(systemId, reader);
+
+        try {
+            return readDocument(streamReader);
+        } finally {
+            streamReader.close();
+        }
+    }
+
+    /**
+     * Reads the rest of the document from the stream reader. Character data outside the root element and the document
+     * type declaration are skipped.
+     *
+     * @param reader the stream reader, positioned at the start of the document or before the root element
+     * @return the document
+     * @throws XMLStreamException if the stream cannot be read
+     */
+    public Document readDocument(XMLStreamReader reader) throws XMLStreamException {
+        String encoding = null;
+
+        if (reader.getEventType() == XMLStreamConstants.START_DOCUMENT) {
+            // the declared encoding, or the one detected like SAXReader does
+            encoding = reader.getCharacterEncodingScheme();
+            encoding = encoding != null ? encoding : reader.getEncoding();
+        }
+
+        final Document document = encoding != null ? factory.createDocument(encoding) : factory.createDocument();
+        int event = reader.getEventType();
+
+        while (event != XMLStreamConstants.END_DOCUMENT) {
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    readContent(reader, document);
+                    break;
+                case XMLStreamConstants.COMMENT:
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    addLeaf(reader, document, event);
+                    break;
+                default:
+                    // start of document, document type and space outside the root element
+                    break;
+            }
+
+            if (!reader.hasNext()) {
+                break;
+            }
+
+            event = reader.next();
+        }
+
+        return document;
+    }
+
+    /**
+     * Reads an element with its content. The stream reader is left at the end tag of the element.
+     *
+     * @param reader the stream reader, positioned at the start tag of the element
+     * @return the detached element
+     * @throws XMLStreamException if the stream cannot be read or isn't positioned at a start tag
+     */
+    public Element readElement(XMLStreamReader reader) throws XMLStreamException {
+        if (reader.getEventType() != XMLStreamConstants.START_ELEMENT) {
+            throw new XMLStreamException("Expected start tag, found event " + reader.getEventType(),
+                    reader.getLocation());
+        }
+
+        return readContent(reader, null);
+    }
+
+    /**
+     * Reads the element at the cursor and its descendants, adding the element to given branch if not null
+     */
+    private Element readContent(XMLStreamReader reader, Branch branch) throws XMLStreamException {
+        final Element root = createElement(reader);
+        Element current = root;
+        text.setLength(0);
+
+        if (branch != null) {
+            branch.add(root);
+        }
+
+        while (current != null) {
+            if (!reader.hasNext()) {
+                throw new XMLStreamException("Unexpected end of stream while reading element content",
+                        reader.getLocation());
+            }
+
+            final int event = reader.next();
+
+            switch (event) {
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                    text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    break;
+                case XMLStreamConstants.START_ELEMENT:
+                    flushText(current);
+                    final Element element = createElement(reader);
+                    current.add(element);
+                    current = element;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    flushText(current);
+                    current = current != root ? current.getParent() : null;
+                    break;
+                default:
+                    flushText(current);
+                    addLeaf(reader, current, event);
+            }
+        }
+
+        return root;
+    }
+
+    private Element createElement(XMLStreamReader reader) {
+        final Element element = factory.createElement(createQName(reader.getLocalName(), reader.getPrefix(),
+                reader.getNamespaceURI()));
+
+        for (int i = 0, count = reader.getNamespaceCount(); i < count; i++) {
+            element.add(factory.createNamespace(nonNull(reader.getNamespacePrefix(i)), nonNull(reader.getNamespaceURI(i))));
+        }
+
+        // the parser has rejected duplicate attributes already
+        for (int i = 0, count = reader.getAttributeCount(); i < count; i++) {
+            final QName qname = createQName(reader.getAttributeLocalName(i), reader.getAttributePrefix(i),
+                    reader.getAttributeNamespace(i));
+            element.add(factory.createAttribute(element, qname, reader.getAttributeValue(i)));
+        }
+
+        return element;
+    }
+
+    private void addLeaf(XMLStreamReader reader, Branch branch, int event) throws XMLStreamException {
+        switch (event) {
+            case XMLStreamConstants.CDATA:
+                branch.add(factory.createCDATA(reader.getText()));
+                break;
+            case XMLStreamConstants.COMMENT:
+                branch.add(factory.createComment(reader.getText()));
+                break;
+            case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                branch.add(factory.createProcessingInstruction(reader.getPITarget(), nonNull(reader.getPIData())));
+                break;
+            case XMLStreamConstants.ENTITY_REFERENCE:
+                branch.add(factory.createEntity(reader.getLocalName(), reader.getText()));
+                break;
+            default:
+                throw new XMLStreamException("Unsupported event " + event, reader.getLocation());
+        }
+    }
+
+    private void flushText(Element element) {
+        if (text.length() > 0) {
+            element.add(factory.createText(text.toString()));
+            text.setLength(0);
+        }
+    }
+
+    private QName createQName(String localName, String prefix, String uri) {
+        return factory.createQName(localName, nonNull(prefix), nonNull(uri));
+    }
+
+    private static String nonNull(String value) {
+        return value != null ? value : "";
+    }
+
+    /**
+     * Holds the shared input factory, so it is created on first use only
+     */
+    private static final class SharedInputFactory {
+        /**
+         * Property of the JDK implementation which reports CDATA sections instead of merging them into characters
+         */
+        private static final String REPORT_CDATA = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+
+        static final XMLInputFactory INSTANCE = createInputFactory();
+
+        private static XMLInputFactory createInputFactory() {
+            final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+
+            if (inputFactory.isPropertySupported(REPORT_CDATA)) {
+                inputFactory.setProperty(REPORT_CDATA, Boolean.TRUE);
+            }
+
+            return inputFactory;
+        }
+    }
+}
@@ -19,6 +19,7 @@ import org.neoxml.NodeType;
 import org.neoxml.ProcessingInstruction;
 import org.neoxml.Text;
 import org.neoxml.tree.NamespaceStack;
+import org.neoxml.tree.TreeWalker;
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
@@ -36,6 +37,8 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -72,6 +75,33 @@ public class XMLWriter extends XMLFilterImpl implements LexicalHandler, Closeabl
 
     protected static final OutputFormat DEFAULT_FORMAT = new OutputFormat();
 
+    /**
+     * True for writers which don't override how elements and their content are written, descendant elements are
+     * written by them without recursion. Subclasses overriding any of these methods are called for every element.
+     */
+    private static final ClassValue<Boolean> WRITES_ITERATIVELY = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            for (Class<?> c = type; c != XMLWriter.class; c = c.getSuperclass()) {
+                if (declares(c, "writeElement", Element.class) || declares(c, "writeElementContent", Element.class)
+                        || declares(c, "writeNode", Node.class)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        private boolean declares(Class<?> type, String name, Class<?> parameterType) {
+            try {
+                type.getDeclaredMethod(name, parameterType);
+                return true;
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+    };
+
     /**
      * Should entityRefs by resolved when writing ?
      */
@@ -829,6 +859,24 @@ public class XMLWriter extends XMLFilterImpl implements LexicalHandler, Closeabl
     // -------------------------------------------------------------------------
 
     protected void writeElement(Element element) throws IOException {
+        final ElementState state = writeStartTag(element);
+
+        if (state != null) {
+            if (WRITES_ITERATIVELY.get(getClass())) {
+                writeContentTree(state);
+            } else {
+                writeElementContent(element);
+                writeEndTag(state);
+            }
+        }
+    }
+
+    /**
+     * Writes the start tag of the element, or the whole element if it is empty
+     *
+     * @return state of the element whose content is to be written, null if the element is empty
+     */
+    private ElementState writeStartTag(Element element) throws IOException {
         int size = element.nodeCount();
         String qualifiedName = element.getQualifiedName();
 
@@ -851,7 +899,9 @@ public class XMLWriter extends XMLFilterImpl implements LexicalHandler, Closeabl
         // Print out additional namespace declarations
         boolean textOnly = true;
 
-        for (Node node : element) {
+        for (int i = 0; i < size; i++) {
+            final Node node = element.node(i);
+
             if (node instanceof Namespace) {
                 Namespace additional = (Namespace) node;
 
@@ -872,38 +922,89 @@ public class XMLWriter extends XMLFilterImpl implements LexicalHandler, Closeabl
 
         if (size <= 0) {
             writeEmptyElementClose(qualifiedName);
-        } else {
-            writer.write('>');
+            popNamespaces(previouslyDeclaredNamespaces);
 
-            if (textOnly) {
-                // we have at least one text node so lets assume
-                // that its non-empty
-                writeElementContent(element);
-            } else {
-                // we know it's not null or empty from above
-                ++indentLevel;
+            lastOutputNodeType = NodeType.ELEMENT_NODE;
+            return null;
+        }
 
-                writeElementContent(element);
+        writer.write('>');
 
-                --indentLevel;
+        if (!textOnly) {
+            // we know it's not null or empty from above
+            ++indentLevel;
+        }
 
-                if (lastOutputNodeType != NodeType.TEXT_NODE) {
-                    writePrintln();
-                    indent();
-                }
-            }
+        return new ElementState(element, qualifiedName, previouslyDeclaredNamespaces, !textOnly);
+    }
 
-            writer.write("</");
-            writer.write(qualifiedName);
-            writer.write('>');
+    private void writeEndTag(ElementState state) throws IOException {
+        if (state.indented) {
+            --indentLevel;
+
+            if (lastOutputNodeType != NodeType.TEXT_NODE) {
+                writePrintln();
+                indent();
+            }
         }
 
-        // remove declared namespaceStack from stack
+        writer.write("</");
+        writer.write(state.qualifiedName);
+        writer.write('>');
+
+        popNamespaces(state.previouslyDeclaredNamespaces);
+
+        lastOutputNodeType = NodeType.ELEMENT_NODE;
+    }
+
+    /**
+     * Removes namespaces declared by an element from the stack
+     */
+    private void popNamespaces(int previouslyDeclaredNamespaces) {
         while (namespaceStack.size() > previouslyDeclaredNamespaces) {
             namespaceStack.pop();
         }
+    }
 
-        lastOutputNodeType = NodeType.ELEMENT_NODE;
+    /**
+     * Writes the content of an element and closes it. Descendant elements are walked without recursion, states of the
+     * open ones are kept on a stack.
+     */
+    private void writeContentTree(ElementState root) throws IOException {
+        final TreeWalker walker = new TreeWalker(root.element);
+        final Deque<ElementState> stack = new ArrayDeque<>();
+
+        walker.next();
+        startContent(root);
+        stack.push(root);
+
+        while (walker.hasNext()) {
+            final int event = walker.next();
+            final Node node = walker.getNode();
+            final ElementState state = stack.peek();
+
+            if (event == TreeWalker.END) {
+                // empty elements are written as a whole when they start
+                if (state.element == node) {
+                    endContent(state);
+                    writeEndTag(state);
+                    stack.pop();
+                }
+            } else if (!writeContentText(state, node)) {
+                if (event == TreeWalker.START) {
+                    final ElementState child = writeStartTag((Element) node);
+
+                    if (child != null) {
+                        startContent(child);
+                        stack.push(child);
+                    } else {
+                        walker.skipContent();
+                    }
+                } else {
+                    writeNode(node);
+                }
+            }
+        }
     }
 
     /**
@@ -937,81 +1038,94 @@ public class XMLWriter extends XMLFilterImpl implements LexicalHandler, Closeabl
      * @throws IOException DOCUMENT ME!
      */
     protected void writeElementContent(Element element) throws IOException {
+        final ElementState state = new ElementState(element);
+        startContent(state);
+
+        for (int i = 0, size = element.nodeCount(); i < size; i++) {
+            Node node = element.node(i);
+
+            if (!writeContentText(state, node)) {
+                writeNode(node);
+            }
+        }
+
+        endContent(state);
+    }
+
+    private void startContent(ElementState state) {
         boolean trim = format.isTrimText();
-        boolean oldPreserve = preserve;
+        state.oldPreserve = preserve;
 
         if (trim) { // verify we have to before more expensive test
-            preserve = isElementSpacePreserved(element);
+            preserve = isElementSpacePreserved(state.element);
             trim = !preserve;
         }
 
-        final boolean padText = format.isPadText();
-
-        if (trim) {
-            // concatenate adjacent text nodes together
-            // so that whitespace trimming works properly
-            StringBuilder buff = null;
-            boolean textOnly = true;
-
-            for (int i = 0, size = element.nodeCount(); i < size; i++) {
-                Node node = element.node(i);
+        state.trim = trim;
+        state.padText = format.isPadText();
+    }
 
-                if (node instanceof Text) {
-                    if (buff == null) {
-                        buff = new StringBuilder(node.getText());
-                    } else {
-                        buff.append(node.getText());
-                    }
+    /**
+     * Writes a text node of the content, or what has to precede another node. If whitespace trimming is enabled then
+     * adjacent text nodes are concatenated before they are written.
+     *
+     * @return true if the node was a text node, false if the node is still to be written
+     */
+    private boolean writeContentText(ElementState state, Node node) throws IOException {
+        if (state.trim) {
+            if (node instanceof Text) {
+                if (state.buff == null) {
+                    state.buff = new StringBuilder(node.getText());
                 } else {
-                    if (buff != null && buff.length() > 0) {
-                        padStart(buff, textOnly, padText);
-                        writeAndPad(buff, padText);
-
-                        buff.setLength(0);
-                    }
-
-                    textOnly = false;
-                    writeNode(node);
+                    state.buff.append(node.getText());
                 }
+
+                return true;
             }
 
-            if (buff != null && buff.length() > 0) {
-                padStart(buff, textOnly, padText);
+            if (state.buff != null && state.buff.length() > 0) {
+                padStart(state.buff, state.textOnly, state.padText);
+                writeAndPad(state.buff, state.padText);
 
-                writeString(buff.toString());
+                state.buff.setLength(0);
             }
-        } else {
-            Node lastTextNode = null;
 
-            for (int i = 0, size = element.nodeCount(); i < size; i++) {
-                Node node = element.node(i);
-
-                if (node instanceof Text) {
-                    writeNode(node);
-                    lastTextNode = node;
-                } else {
-                    if ((lastTextNode != null) && padText) {
-                        // only add the PAD_TEXT if the text itself ends with
-                        // whitespace
-                        String txt = lastTextNode.getText();
+            state.textOnly = false;
+            return false;
+        }
 
-                        if (!txt.isEmpty()) {
-                            char lastTextChar = txt.charAt(txt.length() - 1);
+        if (node instanceof Text) {
+            writeNode(node);
+            state.lastTextNode = node;
+            return true;
+        }
 
-                            if (Character.isWhitespace(lastTextChar)) {
-                                writer.write(PAD_TEXT);
-                            }
-                        }
-                    }
+        if ((state.lastTextNode != null) && state.padText) {
+            // only add the PAD_TEXT if the text itself ends with
+            // whitespace
+            String txt = state.lastTextNode.getText();
 
-                    writeNode(node);
+            if (!txt.isEmpty()) {
+                char lastTextChar = txt.charAt(txt.length() - 1);
 
-                    lastTextNode = null;
+                if (Character.isWhitespace(lastTextChar)) {
+                    writer.write(PAD_TEXT);
                 }
             }
         }
 
-        preserve = oldPreserve;
+        state.lastTextNode = null;
+        return false;
+    }
+
+    private void endContent(ElementState state) throws IOException {
+        if (state.trim && state.buff != null && state.buff.length() > 0) {
+            padStart(state.buff, state.textOnly, state.padText);
+
+            writeString(state.buff.toString());
+        }
+
+        preserve = state.oldPreserve;
     }
 
     /**
@@ -1693,6 +1807,46 @@ public class XMLWriter extends XMLFilterImpl implements LexicalHandler, Closeabl
     public void setResolveEntityRefs(boolean resolve) {
         this.resolveEntityRefs = resolve;
     }
+
+    /**
+     * State of an element whose content is being written
+     */
+    private static final class ElementState {
+        private final Element element;
+
+        /**
+         * Qualified name of the element and size of the namespace stack before its start tag, if it was written
+         */
+        private final String qualifiedName;
+        private final int previouslyDeclaredNamespaces;
+
+        /**
+         * True if the content is indented, i.e. there are elements or comments in it
+         */
+        private final boolean indented;
+
+        private boolean oldPreserve;
+        private boolean trim;
+        private boolean padText;
+
+        /**
+         * Adjacent text nodes concatenated for whitespace trimming
+         */
+        private StringBuilder buff;
+        private boolean textOnly = true;
+        private Node lastTextNode;
+
+        ElementState(Element element) {
+            this(element, null, 0, false);
+        }
+
+        ElementState(Element element, String qualifiedName, int previouslyDeclaredNamespaces, boolean indented) {
+            this.element = element;
+            this.qualifiedName = qualifiedName;
+            this.previouslyDeclaredNamespaces = previouslyDeclaredNamespaces;
+            this.indented = indented;
+        }
+    }
 }
 
 /*
@@ -0,0 +1,197 @@
+package org.neoxml.rule;
+
+import org.neoxml.Attribute;
+import org.neoxml.Branch;
+import org.neoxml.Element;
+import org.neoxml.Node;
+import org.neoxml.NodeType;
+import org.neoxml.tree.TreeWalker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * <code>CompiledMode</code> is the immutable form of a {@link Mode}. Rules are copied and sorted when the mode is
+ * compiled, the decision table of rules by node types and names is built in advance, so matching needs no lazy
+ * initialization and the mode can be used by many threads at once.
+ * </p>
+ */
+final class CompiledMode {
+    private static final NodeType[] NODE_TYPES = NodeType.values();
+
+    /**
+     * Rules in ascending precedence by node types, without rules matching just elements or attributes of some name
+     */
+    private final Rule[][] typeRules;
+
+    /**
+     * Rules in ascending precedence for element names tested by some rule
+     */
+    private final Map<String, Rule[]> elementRules;
+
+    /**
+     * Rules in ascending precedence for attribute names tested by some rule
+     */
+    private final Map<String, Rule[]> attributeRules;
+
+    /**
+     * Action of the built-in rules of this mode
+     */
+    private final Action applyTemplatesAction = node -> {
+        if (node instanceof Branch) {
+            applyTemplates((Branch) node);
+        }
+    };
+
+    CompiledMode(Mode mode) {
+        final List<Rule> rules = new ArrayList<>();
+
+        for (Rule rule : mode.getRules()) {
+            final Rule copy = new Rule(rule, rule.getPattern());
+
+            // built-in rules continue in this mode rather than in the mutable one
+            if (rule.getAction() == mode.getApplyTemplatesAction()) {
+                copy.setAction(applyTemplatesAction);
+            }
+
+            rules.add(copy);
+        }
+
+        Collections.sort(rules);
+
+        this.typeRules = new Rule[NODE_TYPES.length][];
+
+        for (NodeType type : NODE_TYPES) {
+            typeRules[type.ordinal()] = select(rules, type, null);
+        }
+
+        this.elementRules = selectByName(rules, NodeType.ELEMENT_NODE);
+        this.attributeRules = selectByName(rules, NodeType.ATTRIBUTE_NODE);
+    }
+
+    /**
+     * Runs the action of the rule matching the node
+     *
+     * @param node the node
+     * @throws Exception if the action fails
+     */
+    void fireRule(Node node) throws Exception {
+        if (node != null) {
+            final Rule rule = getMatchingRule(node);
+
+            if (rule != null) {
+                final Action action = rule.getAction();
+
+                if (action != null) {
+                    action.run(node);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fires rules of the content of given branch, descendants matched by the built-in rules are walked without
+     * recursion
+     */
+    private void applyTemplates(Branch branch) throws Exception {
+        final TreeWalker walker = new TreeWalker(branch);
+
+        if (walker.next() == TreeWalker.START && branch instanceof Element) {
+            fireAttributeRules((Element) branch);
+        }
+
+        for (int event = walker.next(); event != TreeWalker.END || walker.getDepth() > 0; event = walker.next()) {
+            if (event == TreeWalker.END) {
+                continue;
+            }
+
+            final Node node = walker.getNode();
+            final Rule rule = getMatchingRule(node);
+            final Action action = rule != null ? rule.getAction() : null;
+
+            if (event == TreeWalker.START) {
+                if (action == applyTemplatesAction) {
+                    fireAttributeRules((Element) node);
+                    continue;
+                }
+
+                walker.skipContent();
+            }
+
+            if (action != null) {
+                action.run(node);
+            }
+        }
+    }
+
+    private void fireAttributeRules(Element element) throws Exception {
+        for (int i = 0, size = element.attributeCount(); i < size; i++) {
+            final Attribute attribute = element.attribute(i);
+            fireRule(attribute);
+        }
+    }
+
+    /**
+     * @param node the node to match
+     * @return the rule of the highest precedence matching the node or null
+     */
+    Rule getMatchingRule(Node node) {
+        final NodeType type = node.getNodeTypeEnum();
+        Rule[] rules = null;
+
+        if (type == NodeType.ELEMENT_NODE) {
+            rules = elementRules.get(node.getName());
+        } else if (type == NodeType.ATTRIBUTE_NODE) {
+            rules = attributeRules.get(node.getName());
+        }
+
+        if (rules == null) {
+            rules = typeRules[type.ordinal()];
+        }
+
+        for (int i = rules.length - 1; i >= 0; i--) {
+            if (rules[i].matches(node)) {
+                return rules[i];
+            }
+        }
+
+        return null;
+    }
+
+    private static Map<String, Rule[]> selectByName(List<Rule> rules, NodeType type) {
+        final Map<String, Rule[]> answer = new HashMap<>();
+
+        for (Rule rule : rules) {
+            final String name = rule.getMatchesNodeName();
+
+            if (name != null && isApplicable(rule, type) && !answer.containsKey(name)) {
+                answer.put(name, select(rules, type, name));
+            }
+        }
+
+        return answer;
+    }
+
+    private static Rule[] select(List<Rule> rules, NodeType type, String name) {
+        final List<Rule> answer = new ArrayList<>();
+
+        for (Rule rule : rules) {
+            final String matchName = rule.getMatchesNodeName();
+
+            if (isApplicable(rule, type) && (matchName == null || matchName.equals(name))) {
+                answer.add(rule);
+            }
+        }
+
+        return answer.toArray(new Rule[0]);
+    }
+
+    private static boolean isApplicable(Rule rule, NodeType type) {
+        final NodeType matchType = rule.getMatchType();
+        return matchType == NodeType.ANY_NODE || matchType == type;
+    }
+}
@@ -0,0 +1,163 @@
+package org.neoxml.rule;
+
+import org.neoxml.Branch;
+import org.neoxml.Node;
+import org.neoxml.XPath;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * <code>CompiledStylesheet</code> is an immutable rule plan created by {@link Stylesheet#compile()}. Later changes of
+ * the stylesheet don't affect it, and it can be run by any number of threads concurrently without locking, provided
+ * the actions and patterns of its rules are thread safe.
+ * </p>
+ * <p>
+ * Actions of the rules should apply templates by the compiled stylesheet rather than by the original one.
+ * </p>
+ */
+public final class CompiledStylesheet {
+    private final Map<String, CompiledMode> modes;
+
+    /**
+     * Mode with built-in rules only, used for modes without rules
+     */
+    private final CompiledMode defaultMode;
+
+    private final String modeName;
+
+    CompiledStylesheet(RuleManager ruleManager, String modeName) {
+        final Map<String, Mode> ruleModes = ruleManager.getModes();
+
+        this.modes = new HashMap<>(ruleModes.size() * 2);
+        this.defaultMode = new CompiledMode(ruleManager.createMode());
+        this.modeName = modeName;
+
+        for (Map.Entry<String, Mode> entry : ruleModes.entrySet()) {
+            modes.put(entry.getKey(), new CompiledMode(entry.getValue()));
+        }
+    }
+
+    /**
+     * @return the name of the mode the stylesheet uses by default
+     */
+    public String getModeName() {
+        return modeName;
+    }
+
+    /**
+     * Runs this stylesheet on the given input which should be either a Node or a List of Node objects.
+     *
+     * @param input the input to run this stylesheet on
+     * @throws Exception if something goes wrong
+     */
+    public void run(Object input) throws Exception {
+        run(input, modeName);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void run(Object input, String mode) throws Exception {
+        if (input instanceof Node) {
+            run((Node) input, mode);
+        } else if (input instanceof List<?>) {
+            run((List<Object>) input, mode);
+        }
+    }
+
+    public void run(List<Object> list) throws Exception {
+        run(list, modeName);
+    }
+
+    public void run(List<Object> list, String mode) throws Exception {
+        final CompiledMode mod = getMode(mode);
+
+        for (Object object : list) {
+            if (object instanceof Node) {
+                mod.fireRule((Node) object);
+            }
+        }
+    }
+
+    public void run(Node node) throws Exception {
+        run(node, modeName);
+    }
+
+    public void run(Node node, String mode) throws Exception {
+        getMode(mode).fireRule(node);
+    }
+
+    /**
+     * Processes the result of the xpath expression. The xpath expression is evaluated against the provided input
+     * object.
+     *
+     * @param input the input object
+     * @param xpath the xpath expression
+     * @throws Exception if something goes wrong
+     */
+    public void applyTemplates(Object input, XPath xpath) throws Exception {
+        applyTemplates(input, xpath, modeName);
+    }
+
+    /**
+     * Processes the result of the xpath expression in the given mode. The xpath expression is evaluated against the
+     * provided input object.
+     *
+     * @param input the input object
+     * @param xpath the xpath expression
+     * @param mode  the mode
+     * @throws Exception if something goes wrong
+     */
+    public void applyTemplates(Object input, XPath xpath, String mode) throws Exception {
+        final CompiledMode mod = getMode(mode);
+
+        for (Node current : xpath.selectNodes(input)) {
+            mod.fireRule(current);
+        }
+    }
+
+    /**
+     * If input is a <code>Node</code>, this will processes all of the children of that node. If input is a
+     * <code>List</code> of <code>Nodes</code>s, these nodes will be iterated and all children of each node will be
+     * processed.
+     *
+     * @param input the input object, this can either be a <code>Node</code> or a <code>List</code>
+     * @throws Exception if something goes wrong
+     */
+    public void applyTemplates(Object input) throws Exception {
+        applyTemplates(input, modeName);
+    }
+
+    /**
+     * Processes the input object in the given mode, see {@link #applyTemplates(Object)}.
+     *
+     * @param input the input object, this can either be a <code>Node</code> or a <code>List</code>
+     * @param mode  the mode
+     * @throws Exception if something goes wrong
+     */
+    public void applyTemplates(Object input, String mode) throws Exception {
+        final CompiledMode mod = getMode(mode);
+
+        if (input instanceof Branch) {
+            applyTemplates((Branch) input, mod);
+        } else if (input instanceof List<?>) {
+            for (Object object : (List<?>) input) {
+                if (object instanceof Branch) {
+                    applyTemplates((Branch) object, mod);
+                }
+            }
+        }
+    }
+
+    private static void applyTemplates(Branch input, CompiledMode mode) throws Exception {
+        for (int i = 0, size = input.nodeCount(); i < size; i++) {
+            mode.fireRule(input.node(i));
+        }
+    }
+
+    private CompiledMode getMode(String mode) {
+        final CompiledMode answer = modes.get(mode);
+        return answer != null ? answer : defaultMode;
+    }
+}
@@ -6,14 +6,19 @@
 package org.neoxml.rule;
 
 import org.neoxml.Attribute;
+import org.neoxml.Branch;
 import org.neoxml.Document;
 import org.neoxml.Element;
 import org.neoxml.Node;
 import org.neoxml.NodeType;
+import org.neoxml.tree.TreeWalker;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumMap;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
 
 /**
  * <p>
@@ -27,15 +32,21 @@ import java.util.Map;
  */
 public class Mode {
 
-    private final EnumMap<NodeType, RuleSet> ruleSets = new EnumMap<>(NodeType.class);
     /**
-     * Map of exact (local) element names to RuleSet instances
+     * RuleSets by node types, each of them contains the rules matching any node as well
      */
-    private Map<String, RuleSet> elementNameRuleSets;
+    private final EnumMap<NodeType, RuleSet> ruleSets = new EnumMap<>(NodeType.class);
+
     /**
-     * Map of exact (local) attribute names to RuleSet instances
+     * Action of the built-in rules for documents and elements, it applies templates of this mode to the children
      */
-    private Map<String, RuleSet> attributeNameRuleSets;
+    private final Action applyTemplatesAction = node -> {
+        if (node instanceof Element) {
+            applyTemplates((Element) node);
+        } else if (node instanceof Document) {
+            applyTemplates((Document) node);
+        }
+    };
 
     /**
      * Runs the actions associated with the given node
@@ -58,41 +69,57 @@ public class Mode {
     }
 
     public void applyTemplates(Element element) throws Exception {
-        for (int i = 0, size = element.attributeCount(); i < size; i++) {
-            Attribute attribute = element.attribute(i);
-            fireRule(attribute);
+        applyTemplates((Branch) element);
+    }
+
+    public void applyTemplates(Document document) throws Exception {
+        applyTemplates((Branch) document);
+    }
+
+    /**
+     * Fires rules of the content of given branch. Descendants matched by the built-in rules are walked without
+     * recursion, their attributes and content are processed in place of running the built-in action.
+     */
+    private void applyTemplates(Branch branch) throws Exception {
+        final TreeWalker walker = new TreeWalker(branch);
+
+        if (walker.next() == TreeWalker.START && branch instanceof Element) {
+            fireAttributeRules((Element) branch);
         }
 
-        for (int i = 0, size = element.nodeCount(); i < size; i++) {
-            Node node = element.node(i);
-            fireRule(node);
+        for (int event = walker.next(); event != TreeWalker.END || walker.getDepth() > 0; event = walker.next()) {
+            if (event == TreeWalker.END) {
+                continue;
+            }
+
+            final Node node = walker.getNode();
+            final Rule rule = getMatchingRule(node);
+            final Action action = rule != null ? rule.getAction() : null;
+
+            if (event == TreeWalker.START) {
+                if (action == applyTemplatesAction) {
+                    fireAttributeRules((Element) node);
+                    continue;
+                }
+
+                walker.skipContent();
+            }
+
+            if (action != null) {
+                action.run(node);
+            }
         }
     }
 
-    public void applyTemplates(Document document) throws Exception {
-        for (int i = 0, size = document.nodeCount(); i < size; i++) {
-            Node node = document.node(i);
-            fireRule(node);
+    private void fireAttributeRules(Element element) throws Exception {
+        for (int i = 0, size = element.attributeCount(); i < size; i++) {
+            Attribute attribute = element.attribute(i);
+            fireRule(attribute);
         }
     }
 
     public void addRule(Rule rule) {
         final NodeType matchType = rule.getMatchType();
-        final String name = rule.getMatchesNodeName();
-
-        if (name != null) {
-            switch (matchType) {
-                case ELEMENT_NODE:
-                    elementNameRuleSets = addToNameMap(elementNameRuleSets, name, rule);
-                    break;
-                case ATTRIBUTE_NODE:
-                    attributeNameRuleSets = addToNameMap(attributeNameRuleSets, name, rule);
-                    break;
-
-                default:
-                    break;
-            }
-        }
 
         if (matchType == NodeType.ANY_NODE) {
             // add rule to all other RuleSets if they exist
@@ -106,21 +133,6 @@ public class Mode {
 
     public void removeRule(Rule rule) {
         NodeType matchType = rule.getMatchType();
-        String name = rule.getMatchesNodeName();
-
-        if (name != null) {
-            switch (matchType) {
-                case ELEMENT_NODE:
-                    removeFromNameMap(elementNameRuleSets, name, rule);
-                    break;
-                case ATTRIBUTE_NODE:
-                    removeFromNameMap(attributeNameRuleSets, name, rule);
-                    break;
-
-                default:
-                    break;
-            }
-        }
 
         getRuleSet(matchType).removeRule(rule);
 
@@ -139,40 +151,6 @@ public class Mode {
     public Rule getMatchingRule(Node node) {
         NodeType matchType = node.getNodeTypeEnum();
 
-        switch (matchType) {
-            case ELEMENT_NODE:
-                if (elementNameRuleSets != null) {
-                    String name = node.getName();
-                    RuleSet ruleSet = elementNameRuleSets.get(name);
-
-                    if (ruleSet != null) {
-                        Rule answer = ruleSet.getMatchingRule(node);
-
-                        if (answer != null) {
-                            return answer;
-                        }
-                    }
-                }
-                break;
-            case ATTRIBUTE_NODE:
-                if (attributeNameRuleSets != null) {
-                    String name = node.getName();
-                    RuleSet ruleSet = attributeNameRuleSets.get(name);
-
-                    if (ruleSet != null) {
-                        Rule answer = ruleSet.getMatchingRule(node);
-
-                        if (answer != null) {
-                            return answer;
-                        }
-                    }
-                }
-                break;
-
-            default:
-                break;
-        }
-
         Rule answer = null;
         RuleSet ruleSet = ruleSets.get(matchType);
 
@@ -193,6 +171,31 @@ public class Mode {
         return answer;
     }
 
+    /**
+     * @return the action which applies templates of this mode to children of documents and elements
+     */
+    Action getApplyTemplatesAction() {
+        return applyTemplatesAction;
+    }
+
+    /**
+     * @return all rules of this mode
+     */
+    List<Rule> getRules() {
+        final Set<Rule> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+        final List<Rule> rules = new ArrayList<>();
+
+        for (RuleSet ruleSet : ruleSets.values()) {
+            for (Rule rule : ruleSet.getRuleArray()) {
+                if (distinct.add(rule)) {
+                    rules.add(rule);
+                }
+            }
+        }
+
+        return rules;
+    }
+
     /**
      * DOCUMENT ME!
      *
@@ -218,36 +221,6 @@ public class Mode {
         }
         return ruleSet;
     }
-
-    /**
-     * Adds the Rule to a RuleSet for the given name.
-     *
-     * @param map  DOCUMENT ME!
-     * @param name DOCUMENT ME!
-     * @param rule DOCUMENT ME!
-     * @return the Map (which will be created if the given map was null
-     */
-    protected Map<String, RuleSet> addToNameMap(Map<String, RuleSet> map, String name, Rule rule) {
-        if (map == null) {
-            map = new HashMap<>();
-        }
-
-        RuleSet ruleSet = map.computeIfAbsent(name, n -> new RuleSet());
-
-        ruleSet.addRule(rule);
-
-        return map;
-    }
-
-    protected void removeFromNameMap(Map<String, RuleSet> map, String name, Rule rule) {
-        if (map != null) {
-            RuleSet ruleSet = map.get(name);
-
-            if (ruleSet != null) {
-                ruleSet.removeRule(rule);
-            }
-        }
-    }
 }
 
 /*
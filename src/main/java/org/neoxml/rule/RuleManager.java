@@ -8,8 +8,6 @@ package org.neoxml.rule;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.neoxml.Document;
-import org.neoxml.Element;
 import org.neoxml.Node;
 import org.neoxml.rule.pattern.NodeTypePattern;
 
@@ -103,6 +101,13 @@ public class RuleManager {
         }
     }
 
+    /**
+     * @return modes by their names
+     */
+    Map<String, Mode> getModes() {
+        return modes;
+    }
+
     public void clear() {
         modes.clear();
         appearenceCount = 0;
@@ -154,13 +159,7 @@ public class RuleManager {
      */
     protected void addDefaultRules(Mode mode) {
         // add an applyTemplates rule
-        Action applyTemplates = node -> {
-            if (node instanceof Element) {
-                mode.applyTemplates((Element) node);
-            } else if (node instanceof Document) {
-                mode.applyTemplates((Document) node);
-            }
-        };
+        Action applyTemplates = mode.getApplyTemplatesAction();
 
         Action valueOf = getValueOfAction();
 
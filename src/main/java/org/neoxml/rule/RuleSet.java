@@ -7,10 +7,14 @@
 package org.neoxml.rule;
 
 import org.neoxml.Node;
+import org.neoxml.NodeType;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * <p>
@@ -18,6 +22,10 @@ import java.util.List;
  * conflict resolution policy. This makes finding the correct rule for a neoxml Node using the XSLT processing model
  * efficient as the rules can be evaluated in order of priority.
  * </p>
+ * <p>
+ * Rules are dispatched through a decision table keyed by the node type and the name of elements and attributes, so
+ * only rules whose patterns can match the node are evaluated.
+ * </p>
  *
  * @author <a href="mailto:james.strachan@metastuff.com">James Strachan </a>
  * @version $Revision: 1.10 $
@@ -33,6 +41,11 @@ public final class RuleSet {
      */
     private Rule[] ruleArray;
 
+    /**
+     * Lazily filled decision table, sorted rules which may match nodes by node types and names
+     */
+    private Map<NodeType, Map<String, Rule[]>> decisionTable;
+
     @Override
     public String toString() {
         return super.toString() + " [RuleSet: " + rules + " ]";
@@ -46,7 +59,7 @@ public final class RuleSet {
      * @return the matching Rule or no rule if none matched
      */
     public Rule getMatchingRule(Node node) {
-        Rule[] matches = getRuleArray();
+        Rule[] matches = getCandidateRules(node);
 
         for (int i = matches.length - 1; i >= 0; i--) {
             Rule rule = matches[i];
@@ -62,11 +75,13 @@ public final class RuleSet {
     public void addRule(Rule rule) {
         rules.add(rule);
         ruleArray = null;
+        decisionTable = null;
     }
 
     public void removeRule(Rule rule) {
         rules.remove(rule);
         ruleArray = null;
+        decisionTable = null;
     }
 
     /**
@@ -77,6 +92,43 @@ public final class RuleSet {
     public void addAll(RuleSet that) {
         rules.addAll(that.rules);
         ruleArray = null;
+        decisionTable = null;
+    }
+
+    /**
+     * Returns the rules which may match given node.
+     *
+     * @param node the node to match
+     * @return the rules as a sorted array in ascending precendence, see {@link #getRuleArray()}
+     */
+    private Rule[] getCandidateRules(Node node) {
+        if (decisionTable == null) {
+            decisionTable = new EnumMap<>(NodeType.class);
+        }
+
+        final NodeType type = node.getNodeTypeEnum();
+        final String name = type == NodeType.ELEMENT_NODE || type == NodeType.ATTRIBUTE_NODE ? node.getName() : null;
+        final Map<String, Rule[]> names = decisionTable.computeIfAbsent(type, key -> new HashMap<>());
+        Rule[] candidates = names.get(name);
+
+        if (candidates == null) {
+            final List<Rule> list = new ArrayList<>();
+
+            for (Rule rule : getRuleArray()) {
+                final NodeType matchType = rule.getMatchType();
+                final String matchName = rule.getMatchesNodeName();
+
+                if ((matchType == NodeType.ANY_NODE || matchType == type)
+                        && (matchName == null || matchName.equals(name))) {
+                    list.add(rule);
+                }
+            }
+
+            candidates = list.toArray(new Rule[0]);
+            names.put(name, candidates);
+        }
+
+        return candidates;
     }
 
     /**
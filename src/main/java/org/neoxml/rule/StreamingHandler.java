@@ -0,0 +1,168 @@
+package org.neoxml.rule;
+
+import org.neoxml.Branch;
+import org.neoxml.Document;
+import org.neoxml.Element;
+import org.neoxml.ElementHandler;
+import org.neoxml.ElementPath;
+import org.neoxml.Namespace;
+import org.neoxml.Node;
+
+/**
+ * <p>
+ * <code>StreamingHandler</code> runs a {@link Mode} while a document is being parsed. Nodes whose matching rule is the
+ * built-in one, which just applies templates to the children, are streamed through: rules of their attributes are
+ * fired when they start and their children are processed one by one and then released. Elements matched by other
+ * rules are kept until they are complete, then the rule is fired and the element is released.
+ * </p>
+ * <p>
+ * The rule which decides between streaming and keeping an element is matched when the element starts, so it sees the
+ * ancestors and attributes of the element but not its content. The rule fired for a complete element is matched
+ * again.
+ * </p>
+ */
+final class StreamingHandler implements ElementHandler {
+    private final Mode mode;
+
+    /**
+     * Depth of the node whose subtree is being kept or skipped, 0 for the document, -1 if all nodes are streamed
+     */
+    private int inactiveDepth = -1;
+
+    /**
+     * True if the inactive node is kept for its rule, false if it has no rule so its subtree is skipped
+     */
+    private boolean keep;
+
+    StreamingHandler(Mode mode) {
+        this.mode = mode;
+    }
+
+    @Override
+    public void onStart(ElementPath elementPath) {
+        final Element element = elementPath.getCurrent();
+        final int depth = elementPath.size();
+
+        try {
+            if (depth == 1) {
+                inactiveDepth = -1;
+                start(element.getDocument(), 0);
+            }
+
+            if (inactiveDepth >= 0) {
+                return;
+            }
+
+            firePending(depth > 1 ? elementPath.getElement(depth - 2) : element.getDocument(), 1);
+
+            if (start(element, depth)) {
+                for (int i = 0, size = element.attributeCount(); i < size; i++) {
+                    mode.fireRule(element.attribute(i));
+                }
+
+                // the content holds just namespace declarations yet, they stay to keep the scope of descendants
+                for (int i = 0, size = element.nodeCount(); i < size; i++) {
+                    mode.fireRule(element.node(i));
+                }
+            }
+        } catch (Exception e) {
+            throw new ActionException(e);
+        }
+    }
+
+    @Override
+    public void onEnd(ElementPath elementPath) {
+        final Element element = elementPath.getCurrent();
+        final int depth = elementPath.size();
+
+        if (inactiveDepth >= 0 && inactiveDepth < depth) {
+            if (!keep) {
+                // nothing in a skipped subtree is needed
+                element.detach();
+            }
+
+            return;
+        }
+
+        try {
+            if (inactiveDepth == depth) {
+                inactiveDepth = -1;
+
+                if (keep) {
+                    mode.fireRule(element);
+                }
+            } else {
+                firePending(element, 0);
+            }
+        } catch (Exception e) {
+            throw new ActionException(e);
+        }
+
+        element.detach();
+    }
+
+    /**
+     * Processes what is left of the document after parsing
+     *
+     * @param document the parsed document
+     * @throws Exception if an action fails
+     */
+    void end(Document document) throws Exception {
+        if (inactiveDepth < 0) {
+            firePending(document, 0);
+        } else if (inactiveDepth == 0 && keep) {
+            mode.fireRule(document);
+        }
+    }
+
+    /**
+     * Matches the rule of a started node
+     *
+     * @return true if the node is streamed, false if it is kept or skipped
+     */
+    private boolean start(Node node, int depth) {
+        final Rule rule = mode.getMatchingRule(node);
+        final Action action = rule != null ? rule.getAction() : null;
+
+        if (action != null && action == mode.getApplyTemplatesAction()) {
+            return true;
+        }
+
+        inactiveDepth = depth;
+        keep = action != null;
+        return false;
+    }
+
+    /**
+     * Fires rules of complete children of a streamed branch and releases them
+     *
+     * @param branch the branch
+     * @param open   number of last children which are not complete yet
+     */
+    private void firePending(Branch branch, int open) throws Exception {
+        int index = 0;
+
+        while (branch.nodeCount() - index > open) {
+            final Node node = branch.node(index);
+
+            if (node instanceof Namespace) {
+                // fired when the element started
+                index++;
+            } else {
+                mode.fireRule(node);
+                branch.remove(node);
+            }
+        }
+    }
+
+    /**
+     * Carries an exception thrown by an action through the parser
+     */
+    static final class ActionException extends RuntimeException {
+        private static final long serialVersionUID = 1;
+
+        ActionException(Exception cause) {
+            super(cause.getMessage(), cause);
+        }
+    }
+}
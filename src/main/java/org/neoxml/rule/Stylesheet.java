@@ -7,8 +7,12 @@
 package org.neoxml.rule;
 
 import org.neoxml.Branch;
+import org.neoxml.Document;
+import org.neoxml.DocumentException;
 import org.neoxml.Node;
 import org.neoxml.XPath;
+import org.neoxml.io.SAXReader;
+import org.xml.sax.InputSource;
 
 import java.util.List;
 
@@ -88,6 +92,53 @@ public class Stylesheet {
         mod.fireRule(node);
     }
 
+    /**
+     * Runs this stylesheet on a document while it is parsed, see {@link #run(SAXReader, InputSource, String)}.
+     *
+     * @param reader the reader used to parse the document
+     * @param in     the input
+     * @throws Exception if parsing or an action fails
+     */
+    public void run(SAXReader reader, InputSource in) throws Exception {
+        run(reader, in, this.modeName);
+    }
+
+    /**
+     * <p>
+     * Runs this stylesheet in the given mode on a document while it is parsed, without building the whole document.
+     * Nodes matched by the built-in rules are streamed through, an element matched by another rule is built, passed
+     * to the action of the rule when it is complete and then released. So the memory used is bounded by the largest
+     * element matched by a rule, rather than by the document. The document is kept whole if a rule matches it.
+     * </p>
+     * <p>
+     * Rules are resolved by priorities and import precedence as by {@link #run(Node, String)}. Whether an element is
+     * streamed is decided when it starts, so patterns of the rules should not depend on the content of elements, only
+     * on their names, attributes and ancestors. Actions see the ancestors of the node, but not the preceding nodes
+     * which were released already.
+     * </p>
+     *
+     * @param reader the reader used to parse the document
+     * @param in     the input
+     * @param mode   the mode
+     * @throws Exception if parsing or an action fails
+     */
+    public void run(SAXReader reader, InputSource in, String mode) throws Exception {
+        final StreamingHandler handler = new StreamingHandler(ruleManager.getMode(mode));
+        final Document document;
+
+        try {
+            document = reader.read(in, handler);
+        } catch (DocumentException e) {
+            if (e.getNestedException() instanceof StreamingHandler.ActionException) {
+                throw (Exception) e.getNestedException().getCause();
+            }
+
+            throw e;
+        }
+
+        handler.end(document);
+    }
+
     /**
      * Processes the result of the xpath expression. The xpath expression is
      * evaluated against the provided input object.
@@ -169,6 +220,16 @@ public class Stylesheet {
         ruleManager.clear();
     }
 
+    /**
+     * Compiles the rules of this stylesheet into an immutable plan which can be run by many threads concurrently.
+     * Later changes of this stylesheet don't affect the plan.
+     *
+     * @return the compiled stylesheet
+     */
+    public CompiledStylesheet compile() {
+        return new CompiledStylesheet(ruleManager, modeName);
+    }
+
     // Properties
     // -------------------------------------------------------------------------
 
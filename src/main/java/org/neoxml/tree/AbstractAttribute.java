@@ -51,6 +51,22 @@ public abstract class AbstractAttribute extends AbstractNode implements Attribut
         throw new UnsupportedOperationException(msg);
     }
 
+    /**
+     * Forgets the cached structural hashes which depend on this attribute and updates the attribute indexes of its
+     * document, called by subclasses whenever the value of an attribute with a parent changes
+     *
+     * @param oldValue the value before the change
+     */
+    protected void valueChanged(String oldValue) {
+        invalidateStructuralHash();
+
+        final AbstractDocument document = AbstractElement.documentToNotify(getParent());
+
+        if (document != null) {
+            document.attributeValueChanged(this, oldValue);
+        }
+    }
+
     @Override
     public Object getData() {
         return getValue();
@@ -14,6 +14,7 @@ import org.neoxml.Node;
 import org.neoxml.NodeList;
 import org.neoxml.ProcessingInstruction;
 import org.neoxml.QName;
+import org.neoxml.Visitor;
 
 import java.util.Iterator;
 import java.util.List;
@@ -31,10 +32,72 @@ public abstract class AbstractBranch extends AbstractNode implements Branch {
 
     protected static final int DEFAULT_CONTENT_LIST_SIZE = 5;
 
+    /**
+     * Cached structural hash, 0 if it is not known. A branch with a known hash has known hashes of all its descendant
+     * branches, so invalidating stops at the first ancestor without one.
+     */
+    private volatile long structuralHash;
+
     protected AbstractBranch() {
         super();
     }
 
+    @Override
+    public long structuralHash() {
+        final long hash = structuralHash;
+        return hash != 0 ? hash : StructuralHash.of(this);
+    }
+
+    long cachedStructuralHash() {
+        return structuralHash;
+    }
+
+    void cacheStructuralHash(long hash) {
+        structuralHash = hash;
+    }
+
+    /**
+     * Called before the attributes or content of this branch or a node of them change. Elements whose content is
+     * shared by copies give the copies the previous content first. Such elements keep their structural hash cached
+     * like all their descendants, so only ancestors with a cached hash are walked, as they are by
+     * {@link #invalidateStructuralHash()} after the change.
+     */
+    @Override
+    protected void beforeChange() {
+        AbstractBranch branch = this;
+
+        while (branch.structuralHash != 0) {
+            if (branch instanceof DefaultElement) {
+                ((DefaultElement) branch).detachCopies();
+            }
+
+            final Element parent = branch.getParent();
+
+            if (!(parent instanceof AbstractBranch)) {
+                break;
+            }
+
+            branch = (AbstractBranch) parent;
+        }
+    }
+
+    @Override
+    protected void invalidateStructuralHash() {
+        AbstractBranch branch = this;
+
+        while (branch.structuralHash != 0) {
+            branch.structuralHash = 0;
+
+            final Element parent = branch.getParent();
+
+            if (!(parent instanceof AbstractBranch)) {
+                break;
+            }
+
+            branch = (AbstractBranch) parent;
+        }
+    }
+
     @Override
     public boolean isReadOnly() {
         return false;
@@ -121,6 +184,26 @@ public abstract class AbstractBranch extends AbstractNode implements Branch {
         }
     }
 
+    /**
+     * Appends the XPath defined string-value of the given content object
+     *
+     * @param node   the content node
+     * @param buffer the buffer the string-value is appended to
+     */
+    protected void appendContentAsStringValue(Node node, StringBuilder buffer) {
+        switch (node.getNodeTypeEnum()) {
+            case CDATA_SECTION_NODE:
+                // case ENTITY_NODE:
+            case ENTITY_REFERENCE_NODE:
+            case TEXT_NODE:
+            case ELEMENT_NODE:
+                node.appendStringValue(buffer);
+                break;
+            default:
+                break;
+        }
+    }
+
     public String getTextTrim() {
         String text = getText();
 
@@ -245,15 +328,15 @@ public abstract class AbstractBranch extends AbstractNode implements Branch {
 
     @Override
     public Element elementByID(String elementID) {
-        for (Element element : safeContentList().filter(ELEMENT_CONDITION, Element.class)) {
-            final String id = element.attributeValue("ID");
+        final TreeWalker walker = new TreeWalker(this);
+        walker.next();
 
-            if ((id != null) && id.equals(elementID)) {
-                return element;
-            } else {
-                element = element.elementByID(elementID);
+        while (walker.hasNext()) {
+            if (walker.next() == TreeWalker.START) {
+                final Element element = (Element) walker.getNode();
+                final String id = element.attributeValue("ID");
 
-                if (element != null) {
+                if ((id != null) && id.equals(elementID)) {
                     return element;
                 }
             }
@@ -262,6 +345,50 @@ public abstract class AbstractBranch extends AbstractNode implements Branch {
         return null;
     }
 
+    /**
+     * Visits the content of this branch, descendant elements are walked without recursion unless they override
+     * <code>accept(Visitor)</code>
+     *
+     * @param visitor the visitor
+     */
+    protected void visitContent(Visitor visitor) {
+        final TreeWalker walker = new TreeWalker(this);
+        walker.next();
+
+        for (int event = walker.next(); event != TreeWalker.END || walker.getDepth() > 0; event = walker.next()) {
+            final Node node = walker.getNode();
+
+            if (event == TreeWalker.START && !AbstractElement.VISITS_ITERATIVELY.get(node.getClass())) {
+                // the element overrides accept, so it visits its subtree itself
+                walker.skipContent();
+                walker.next();
+
+                if (!node.accept(visitor)) {
+                    walker.skipSiblings();
+                }
+            } else if (event == TreeWalker.START) {
+                final Element element = (Element) node;
+
+                if (!(visitor.visitEnter(element) && visitor.visit(element) && visitAttributes(element, visitor))) {
+                    walker.skipContent();
+                }
+            } else if (!(event == TreeWalker.END ? visitor.visitLeave((Element) node) : node.accept(visitor))) {
+                // stop processing the rest of the parent
+                walker.skipSiblings();
+            }
+        }
+    }
+
+    protected static boolean visitAttributes(Element element, Visitor visitor) {
+        for (int i = 0, size = element.attributeCount(); i < size; i++) {
+            if (!visitor.visit(element.attribute(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
     @Override
     public void appendContent(Branch branch) {
         contentList(branch.nodeCount());
@@ -6,6 +6,7 @@
 
 package org.neoxml.tree;
 
+import org.neoxml.Attribute;
 import org.neoxml.Comment;
 import org.neoxml.Document;
 import org.neoxml.DocumentType;
@@ -22,7 +23,14 @@ import org.neoxml.io.XMLWriter;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
  * <p>
@@ -38,10 +46,56 @@ public abstract class AbstractDocument extends AbstractBranch implements Documen
      */
     protected String encoding;
 
+    /**
+     * Numbering of nodes in document order, null until it is needed
+     */
+    private transient volatile DocumentOrder documentOrder;
+
+    /**
+     * Whether descendant elements are indexed by their names
+     */
+    private boolean elementIndexEnabled;
+
+    /**
+     * Descendant elements by their names, null until it is needed
+     */
+    private transient volatile ElementIndex elementIndex;
+
+    /**
+     * Registered attribute indexes by their names, null if there is none
+     */
+    private Map<String, AttributeIndex> attributeIndexes;
+
+    /**
+     * Incremented whenever this document starts keeping caches, elements found in it before are no longer known to be
+     * in it, see {@link AbstractElement#documentToNotify()}
+     */
+    private transient int ownerVersion;
+
     protected AbstractDocument() {
         super();
     }
 
+    @Override
+    public AbstractDocument clone() {
+        final AbstractDocument document = (AbstractDocument) super.clone();
+
+        if (document != null) {
+            document.documentOrder = null;
+            document.elementIndex = null;
+
+            if (attributeIndexes != null) {
+                document.attributeIndexes = new LinkedHashMap<>();
+
+                for (AttributeIndex index : attributeIndexes.values()) {
+                    document.attributeIndexes.put(index.getName(), index.copy());
+                }
+            }
+        }
+
+        return document;
+    }
+
     @Override
     public NodeType getNodeTypeEnum() {
         return NodeType.DOCUMENT_NODE;
@@ -74,6 +128,15 @@ public abstract class AbstractDocument extends AbstractBranch implements Documen
         return (root != null) ? root.getStringValue() : "";
     }
 
+    @Override
+    public void appendStringValue(StringBuilder buffer) {
+        Element root = getRootElement();
+
+        if (root != null) {
+            root.appendStringValue(buffer);
+        }
+    }
+
     @Override
     public String asXML() {
         OutputFormat format = new OutputFormat();
@@ -124,12 +187,7 @@ public abstract class AbstractDocument extends AbstractBranch implements Documen
                 return false;
             }
 
-            // visit content
-            for (Node node : safeContentList()) {
-                if (!node.accept(visitor)) {
-                    break;
-                }
-            }
+            visitContent(visitor);
         }
 
         // leave this node and indicate whether to stop processing (although it does not make sense in Document node)
@@ -241,6 +299,12 @@ public abstract class AbstractDocument extends AbstractBranch implements Documen
     protected void childAdded(Node node) {
         if (node != null) {
             node.setDocument(this);
+
+            if (hasCaches()) {
+                AbstractElement.adoptOwner(node, this);
+            }
+
+            descendantAdded(node);
         }
     }
 
@@ -248,7 +312,241 @@ public abstract class AbstractDocument extends AbstractBranch implements Documen
     protected void childRemoved(Node node) {
         if (node != null) {
             node.setDocument(null);
+            descendantRemoved(node);
+
+            if (hasCaches()) {
+                AbstractElement.adoptOwner(node, null);
+            }
+        }
+    }
+
+    /**
+     * @return true if this document keeps numbering or indexes which have to be notified of changes of its content
+     */
+    boolean hasCaches() {
+        return documentOrder != null || elementIndex != null || attributeIndexes != null;
+    }
+
+    /**
+     * @return the version elements found in this document are marked with
+     */
+    int ownerVersion() {
+        return ownerVersion;
+    }
+
+    /**
+     * Makes this document the owner of all its elements, called before it starts keeping caches. Elements aren't
+     * tracked while it keeps none, so elements removed meanwhile are forgotten by a new owner version.
+     */
+    private synchronized void trackOwners() {
+        if (!hasCaches()) {
+            ownerVersion++;
+            AbstractElement.adoptOwner(getRootElement(), this);
+        }
+    }
+
+    /**
+     * Called when a node (with all its descendants) is added anywhere in this document
+     *
+     * @param node the added node
+     */
+    protected void descendantAdded(Node node) {
+        documentOrder = null;
+
+        if (node instanceof Element) {
+            elementIndex = null;
+        }
+
+        if (attributeIndexes != null) {
+            if (node instanceof Attribute) {
+                for (AttributeIndex index : attributeIndexes.values()) {
+                    index.add((Attribute) node);
+                }
+            } else if (node instanceof Element) {
+                forEachIndexedElement((Element) node, AttributeIndex::add);
+            }
+        }
+    }
+
+    /**
+     * Called when a node (with all its descendants) is removed from anywhere in this document
+     *
+     * @param node the removed node
+     */
+    protected void descendantRemoved(Node node) {
+        documentOrder = null;
+
+        if (node instanceof Element) {
+            elementIndex = null;
+        }
+
+        if (attributeIndexes != null) {
+            if (node instanceof Attribute) {
+                for (AttributeIndex index : attributeIndexes.values()) {
+                    index.remove((Attribute) node);
+                }
+            } else if (node instanceof Element) {
+                forEachIndexedElement((Element) node, AttributeIndex::remove);
+            }
+        }
+    }
+
+    /**
+     * Called when the value of an attribute of this document changes
+     *
+     * @param attribute the changed attribute
+     * @param oldValue  the previous value of the attribute
+     */
+    protected void attributeValueChanged(Attribute attribute, String oldValue) {
+        if (attributeIndexes != null) {
+            for (AttributeIndex index : attributeIndexes.values()) {
+                index.valueChanged(attribute, oldValue);
+            }
+        }
+    }
+
+    /**
+     * Passes given element and all its descendants to all built attribute indexes
+     */
+    private void forEachIndexedElement(Element element, BiConsumer<AttributeIndex, Element> action) {
+        final List<AttributeIndex> indexes = new ArrayList<>(attributeIndexes.size());
+
+        for (AttributeIndex index : attributeIndexes.values()) {
+            if (index.isBuilt()) {
+                indexes.add(index);
+            }
+        }
+
+        if (!indexes.isEmpty()) {
+            final Consumer<Element> indexElement = descendant -> {
+                for (AttributeIndex index : indexes) {
+                    action.accept(index, descendant);
+                }
+            };
+
+            indexElement.accept(element);
+            ElementIndex.forEachDescendant(element, indexElement);
+        }
+    }
+
+    /**
+     * Called when an element of this document changes its name
+     *
+     * @param element the renamed element
+     */
+    protected void elementRenamed(Element element) {
+        elementIndex = null;
+
+        if (attributeIndexes != null) {
+            for (AttributeIndex index : attributeIndexes.values()) {
+                if (index.getElementName() != null) {
+                    index.invalidate();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if elements of this document are indexed by their names
+     */
+    public boolean isElementIndexEnabled() {
+        return elementIndexEnabled;
+    }
+
+    /**
+     * Enables or disables the index of elements by their names. The index is built when it is used for the first
+     * time after a change of the document, so it pays off for documents which are queried repeatedly.
+     *
+     * @param elementIndexEnabled true to index elements
+     */
+    public void setElementIndexEnabled(boolean elementIndexEnabled) {
+        this.elementIndexEnabled = elementIndexEnabled;
+
+        if (!elementIndexEnabled) {
+            elementIndex = null;
+        }
+    }
+
+    @Override
+    public List<Element> elementsByQName(QName qName) {
+        if (!elementIndexEnabled) {
+            return Collections.unmodifiableList(ElementIndex.select(this, qName));
+        }
+
+        ElementIndex index = elementIndex;
+
+        if (index == null) {
+            trackOwners();
+            index = ElementIndex.build(this);
+            elementIndex = index;
+        }
+
+        return index.get(qName);
+    }
+
+    @Override
+    public void addAttributeIndex(String indexName, QName attributeName, QName elementName) {
+        Objects.requireNonNull(indexName);
+        Objects.requireNonNull(attributeName);
+
+        if (attributeIndexes == null) {
+            trackOwners();
+            attributeIndexes = new LinkedHashMap<>();
+        }
+
+        attributeIndexes.put(indexName, new AttributeIndex(indexName, attributeName, elementName));
+    }
+
+    @Override
+    public boolean removeAttributeIndex(String indexName) {
+        return attributeIndexes != null && attributeIndexes.remove(indexName) != null;
+    }
+
+    @Override
+    public List<Element> lookup(String indexName, String value) {
+        final AttributeIndex index = attributeIndexes != null ? attributeIndexes.get(indexName) : null;
+
+        if (index == null) {
+            throw new IllegalArgumentException("No attribute index named: " + indexName);
+        }
+
+        return index.lookup(this, value);
+    }
+
+    /**
+     * Looks up elements of given name using a registered attribute index
+     *
+     * @param attributeName the name of the attribute
+     * @param elementName   the name of elements, null for elements of any name
+     * @param value         the attribute value
+     * @return elements in document order, some of them may have other names if the index is not scoped to the
+     * element name, or null if there is no index for the attribute covering the elements
+     */
+    public List<Element> lookup(QName attributeName, QName elementName, String value) {
+        if (attributeIndexes != null) {
+            for (AttributeIndex index : attributeIndexes.values()) {
+                if (index.getAttributeName().equals(attributeName) && index.covers(elementName)) {
+                    return index.lookup(this, value);
+                }
+            }
         }
+
+        return null;
+    }
+
+    /**
+     * @return numbering of nodes of this document, built when it is needed for the first time after a change
+     */
+    DocumentOrder documentOrder() {
+        DocumentOrder order = documentOrder;
+
+        if (order == null) {
+            trackOwners();
+            order = DocumentOrder.build(this);
+            documentOrder = order;
+        }
+
+        return order;
     }
 
     protected void checkAddElementAllowed(Element element) {
@@ -25,17 +25,19 @@ import org.neoxml.Text;
 import org.neoxml.Visitor;
 import org.neoxml.io.XMLWriter;
 import org.neoxml.util.AttributeHelper;
+import org.neoxml.util.StringPool;
 import org.xml.sax.Attributes;
 
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
-import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -63,6 +65,41 @@ public abstract class AbstractElement extends AbstractBranch implements Element
     protected static final boolean VERBOSE_TOSTRING = false;
     protected static final boolean USE_STRINGVALUE_SEPARATOR = false;
 
+    /**
+     * False for element classes which override <code>accept(Visitor)</code>, walks call their method rather than
+     * visiting their content in place
+     */
+    static final ClassValue<Boolean> VISITS_ITERATIVELY = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            return inherits(type, "accept", Visitor.class);
+        }
+    };
+
+    /**
+     * False for element classes which override <code>getStringValue()</code> or
+     * <code>appendStringValue(StringBuilder)</code>, walks call their method rather than appending their content in
+     * place
+     */
+    private static final ClassValue<Boolean> APPENDS_ITERATIVELY = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            return inherits(type, "getStringValue") && inherits(type, "appendStringValue", StringBuilder.class);
+        }
+    };
+
+    /**
+     * The document containing this element, kept only while the document has caches. It is valid while
+     * {@link #ownerVersion} equals the owner version of the document, so documents are found without walking up the
+     * tree.
+     */
+    AbstractDocument ownerDocument;
+
+    /**
+     * The owner version of {@link #ownerDocument} when this element was found in it
+     */
+    int ownerVersion;
+
     protected AbstractElement() {
         super();
     }
@@ -152,20 +189,31 @@ public abstract class AbstractElement extends AbstractBranch implements Element
 
         buffer.append(getXPathNameStep());
 
-        List<Element> mySiblings = parent.elements(getQName());
-
-        if (mySiblings.size() > 1) {
-            int idx = mySiblings.indexOf(this);
+        // position among the siblings of the same name, if there are more of them
+        final QName qName = getQName();
+        int count = 0;
+        int position = 0;
 
-            if (idx >= 0) {
-                buffer.append("[");
+        for (int i = 0, size = parent.nodeCount(); i < size; i++) {
+            final Node node = parent.node(i);
 
-                buffer.append(++idx);
+            if (isElement(node, qName)) {
+                count++;
 
-                buffer.append("]");
+                if (node == this) {
+                    position = count;
+                }
             }
         }
 
+        if (count > 1 && position > 0) {
+            buffer.append("[");
+
+            buffer.append(position);
+
+            buffer.append("]");
+        }
+
         return buffer.toString();
     }
 
@@ -199,35 +247,14 @@ public abstract class AbstractElement extends AbstractBranch implements Element
      */
     @Override
     public boolean accept(Visitor visitor) {
-        if (visitor.visitEnter(this) && visitor.visit(this) && visitAttributes(visitor)) {
-            visitNodes(visitor);
+        if (visitor.visitEnter(this) && visitor.visit(this) && visitAttributes(this, visitor)) {
+            visitContent(visitor);
         }
 
         // leave this node and indicate whether to stop processing after this element
         return visitor.visitLeave(this);
     }
 
-    private boolean visitAttributes(Visitor visitor) {
-        for (int i = 0, size = attributeCount(); i < size; i++) {
-            Attribute attribute = attribute(i);
-
-            if (!visitor.visit(attribute)) {
-                return false;
-            }
-        }
-
-        return true;
-    }
-
-    private void visitNodes(Visitor visitor) {
-        for (int i = 0, size = nodeCount(); i < size; i++) {
-            Node node = node(i);
-            if (node != null && !node.accept(visitor)) {
-                break;
-            }
-        }
-    }
-
     @Override
     protected void toString(StringBuilder builder) {
         String uri = getNamespaceURI();
@@ -320,12 +347,32 @@ public abstract class AbstractElement extends AbstractBranch implements Element
 
     @Override
     public Element element(String name) {
-        return safeContentList().find(new ElementCondition(name), Element.class);
+        final List<Node> list = safeContentList();
+
+        for (int i = 0, size = list.size(); i < size; i++) {
+            final Node node = list.get(i);
+
+            if (isElement(node, name)) {
+                return (Element) node;
+            }
+        }
+
+        return null;
     }
 
     @Override
     public Element element(QName qName) {
-        return safeContentList().find(new ElementQNameCondition(qName), Element.class);
+        final List<Node> list = safeContentList();
+
+        for (int i = 0, size = list.size(); i < size; i++) {
+            final Node node = list.get(i);
+
+            if (isElement(node, qName)) {
+                return (Element) node;
+            }
+        }
+
+        return null;
     }
 
     public Element element(String name, Namespace namespace) {
@@ -353,17 +400,30 @@ public abstract class AbstractElement extends AbstractBranch implements Element
 
     @Override
     public Iterator<Element> elementIterator() {
-        return elements().iterator();
+        return new ElementIterator(safeContentList(), null, null);
     }
 
     @Override
     public Iterator<Element> elementIterator(String name) {
-        return elements(name).iterator();
+        return new ElementIterator(safeContentList(), name, null);
     }
 
     @Override
     public Iterator<Element> elementIterator(QName qName) {
-        return elements(qName).iterator();
+        return new ElementIterator(safeContentList(), null, qName);
+    }
+
+    @Override
+    public void forEachElement(QName qName, Consumer<? super Element> action) {
+        final List<Node> list = safeContentList();
+
+        for (int i = 0; i < list.size(); i++) {
+            final Node node = list.get(i);
+
+            if (isElement(node, qName)) {
+                action.accept((Element) node);
+            }
+        }
     }
 
     public Iterator<Element> elementIterator(String name, Namespace ns) {
@@ -395,7 +455,13 @@ public abstract class AbstractElement extends AbstractBranch implements Element
 
     @Override
     public Attribute attribute(String name) {
-        for (Attribute attribute : safeAttributeList()) {
+        final NodeList<Attribute> list = safeAttributeList();
+
+        if (list instanceof AttributeNodeList) {
+            return ((AttributeNodeList) list).find(name);
+        }
+
+        for (Attribute attribute : list) {
             if (name.equals(attribute.getName())) {
                 return attribute;
             }
@@ -406,7 +472,13 @@ public abstract class AbstractElement extends AbstractBranch implements Element
 
     @Override
     public Attribute attribute(QName qName) {
-        for (Attribute attribute : safeAttributeList()) {
+        final NodeList<Attribute> list = safeAttributeList();
+
+        if (list instanceof AttributeNodeList) {
+            return ((AttributeNodeList) list).find(qName);
+        }
+
+        for (Attribute attribute : list) {
             if (qName.equals(attribute.getQName())) {
                 return attribute;
             }
@@ -428,6 +500,20 @@ public abstract class AbstractElement extends AbstractBranch implements Element
      * @param noNamespaceAttributes DOCUMENT ME!
      */
     public void setAttributes(Attributes attributes, NamespaceStack namespaceStack, boolean noNamespaceAttributes) {
+        setAttributes(attributes, namespaceStack, null, noNamespaceAttributes);
+    }
+
+    /**
+     * This method provides a more optimal way of setting all the attributes on
+     * an Element particularly for use in {@link org.neoxml.io.SAXReader}.
+     * Attribute values are shared through provided pool.
+     *
+     * @param attributes            DOCUMENT ME!
+     * @param namespaceStack        DOCUMENT ME!
+     * @param valuePool             pool of attribute values or null if values should not be pooled
+     * @param noNamespaceAttributes DOCUMENT ME!
+     */
+    public void setAttributes(Attributes attributes, NamespaceStack namespaceStack, StringPool valuePool, boolean noNamespaceAttributes) {
         // clear attributes even if provided attributes are empty
         clearAttributeList();
 
@@ -457,6 +543,10 @@ public abstract class AbstractElement extends AbstractBranch implements Element
 
                     String attributeValue = attributes.getValue(i);
 
+                    if (valuePool != null) {
+                        attributeValue = valuePool.intern(attributeValue);
+                    }
+
                     QName attributeQName = namespaceStack.getAttributeQName(attributeURI, attributeLocalName, name);
 
                     Attribute attribute = factory.createAttribute(this, attributeQName, attributeValue);
@@ -888,26 +978,79 @@ public abstract class AbstractElement extends AbstractBranch implements Element
             return "";
         }
 
-        if (size == 1) {
+        if (size == 1 && !(list.get(0) instanceof Element)) {
             // optimised to avoid StringBuilder creation
             return getContentAsStringValue(list.get(0));
         }
 
         StringBuilder buffer = new StringBuilder();
+        appendStringValue(buffer);
+
+        return buffer.toString();
+    }
 
-        for (Node node : list) {
-            String string = getContentAsStringValue(node);
+    @Override
+    public void appendStringValue(StringBuilder buffer) {
+        final TreeWalker walker = new TreeWalker(this);
+        final int start = buffer.length();
 
-            if (string.length() > 0) {
-                if (USE_STRINGVALUE_SEPARATOR && buffer.length() > 0) {
-                    buffer.append(' ');
-                }
+        while (walker.hasNext()) {
+            final int event = walker.next();
 
-                buffer.append(string);
+            if (event == TreeWalker.END
+                    || event == TreeWalker.START && (walker.getDepth() == 0 || appendsIteratively(walker.getNode()))) {
+                continue;
+            }
+
+            final int length = buffer.length();
+
+            if (USE_STRINGVALUE_SEPARATOR && length > start) {
+                buffer.append(' ');
+            }
+
+            final int valueStart = buffer.length();
+
+            if (event == TreeWalker.START) {
+                // the element overrides its string-value
+                walker.skipContent();
+                final String value = walker.getNode().getStringValue();
+                buffer.append(value != null ? value : "");
+            } else {
+                appendContentAsStringValue(walker.getNode(), buffer);
+            }
+
+            if (buffer.length() == valueStart) {
+                // no separator for empty values
+                buffer.setLength(length);
             }
         }
+    }
 
-        return buffer.toString();
+    private static boolean appendsIteratively(Node element) {
+        // copies still sharing their content append the string-value of the shared element
+        return APPENDS_ITERATIVELY.get(element.getClass())
+                && !(element instanceof DefaultElement && ((DefaultElement) element).isShared());
+    }
+
+    /**
+     * @return true if no class between given element class and this one declares the method, methods of
+     * {@link DefaultElement} differ for copies sharing their content only
+     */
+    private static boolean inherits(Class<?> type, String name, Class<?>... parameterTypes) {
+        if (!AbstractElement.class.isAssignableFrom(type)) {
+            return false;
+        }
+
+        for (Class<?> c = type; c != AbstractElement.class && c != DefaultElement.class; c = c.getSuperclass()) {
+            try {
+                c.getDeclaredMethod(name, parameterTypes);
+                return false;
+            } catch (NoSuchMethodException e) {
+                // inherited
+            }
+        }
+
+        return true;
     }
 
     /**
@@ -1017,33 +1160,36 @@ public abstract class AbstractElement extends AbstractBranch implements Element
     }
 
     @Override
-    public Element createCopy() {
-        Element clone = createElement(getQName());
-
-        clone.setAttributes(safeAttributeList());
-        clone.setContent(safeContentList());
+    public AbstractElement clone() {
+        return (AbstractElement) super.clone();
+    }
 
-        return clone;
+    @Override
+    public Element createCopy() {
+        return copyTo(createElement(getQName()));
     }
 
     @Override
     public Element createCopy(String name) {
-        Element clone = createElement(name);
-
-        clone.setAttributes(safeAttributeList());
-        clone.setContent(safeContentList());
-
-        return clone;
+        return copyTo(createElement(name));
     }
 
     @Override
     public Element createCopy(QName qName) {
-        Element clone = createElement(qName);
+        return copyTo(createElement(qName));
+    }
 
-        clone.setAttributes(safeAttributeList());
-        clone.setContent(safeContentList());
+    /**
+     * Copies attributes and content of this element to a new element
+     *
+     * @param copy the new element
+     * @return the copy
+     */
+    protected Element copyTo(Element copy) {
+        copy.setAttributes(safeAttributeList());
+        copy.setContent(safeContentList());
 
-        return clone;
+        return copy;
     }
 
     @Override
@@ -1144,11 +1290,7 @@ public abstract class AbstractElement extends AbstractBranch implements Element
      */
     public void ensureAttributesCapacity(int minCapacity) {
         if (minCapacity > 1) {
-            List<Attribute> list = attributeList();
-
-            if (list instanceof ArrayList) {
-                ((ArrayList<Attribute>) list).ensureCapacity(minCapacity);
-            }
+            attributeList(minCapacity);
         }
     }
 
@@ -1182,14 +1324,97 @@ public abstract class AbstractElement extends AbstractBranch implements Element
     protected void childAdded(Node node) {
         if (node != null) {
             node.setParent(this);
+            invalidateStructuralHash();
+
+            final AbstractDocument document = documentToNotify();
+
+            if (document != null) {
+                adoptOwner(node, document);
+                document.descendantAdded(node);
+            }
         }
     }
 
     @Override
     protected void childRemoved(Node node) {
         if (node != null) {
+            final AbstractDocument document = documentToNotify();
+
+            // notified before detaching, so a removed attribute still knows its element
+            if (document != null) {
+                document.descendantRemoved(node);
+                adoptOwner(node, null);
+            }
+
             node.setParent(null);
             node.setDocument(null);
+            invalidateStructuralHash();
+        }
+    }
+
+    /**
+     * Returns the document to notify of a change of this element. Elements are tracked only by documents keeping
+     * caches, see {@link AbstractDocument#trackOwners()}, so the check doesn't depend on the depth of this element.
+     *
+     * @return the document containing this element if it has caches depending on its content, null otherwise
+     */
+    AbstractDocument documentToNotify() {
+        final AbstractDocument owner = ownerDocument;
+
+        if (owner != null && owner.hasCaches() && ownerVersion == owner.ownerVersion()) {
+            return owner;
+        }
+
+        return null;
+    }
+
+    /**
+     * @return the document to notify of a change of given element, see {@link #documentToNotify()}
+     */
+    static AbstractDocument documentToNotify(Element element) {
+        if (element instanceof AbstractElement) {
+            return ((AbstractElement) element).documentToNotify();
+        }
+
+        final Document document = element != null ? element.getDocument() : null;
+
+        if (document instanceof AbstractDocument && ((AbstractDocument) document).hasCaches()) {
+            return (AbstractDocument) document;
+        }
+
+        return null;
+    }
+
+    /**
+     * Makes given document the owner of an added element and of its descendants, or forgets the owner of a removed
+     * element if the document is null. Copies still sharing their content are skipped with it.
+     */
+    static void adoptOwner(Node node, AbstractDocument owner) {
+        if (!(node instanceof AbstractElement)) {
+            return;
+        }
+
+        final AbstractElement added = (AbstractElement) node;
+        final int version = owner != null ? owner.ownerVersion() : 0;
+
+        if (added instanceof DefaultElement && ((DefaultElement) added).isShared() || added.nodeCount() == 0) {
+            added.ownerDocument = owner;
+            added.ownerVersion = version;
+            return;
+        }
+
+        final TreeWalker walker = new TreeWalker(added);
+
+        while (walker.hasNext()) {
+            if (walker.next() == TreeWalker.START && walker.getNode() instanceof AbstractElement) {
+                final AbstractElement element = (AbstractElement) walker.getNode();
+                element.ownerDocument = owner;
+                element.ownerVersion = version;
+
+                if (element instanceof DefaultElement && ((DefaultElement) element).isShared()) {
+                    walker.skipContent();
+                }
+            }
         }
     }
 
@@ -1256,7 +1481,7 @@ public abstract class AbstractElement extends AbstractBranch implements Element
      * @return DOCUMENT ME!
      */
     protected final NodeList<Attribute> createAttributeList() {
-        return createAttributeList(DEFAULT_CONTENT_LIST_SIZE);
+        return new AttributeNodeList(this);
     }
 
     /**
@@ -1266,7 +1491,95 @@ public abstract class AbstractElement extends AbstractBranch implements Element
      * @return DOCUMENT ME!
      */
     protected final NodeList<Attribute> createAttributeList(int size) {
-        return new DefaultNodeList<>(this, size);
+        return new AttributeNodeList(this, size);
+    }
+
+    /**
+     * @return true if the node is an element of given local name, any element if the name is null
+     */
+    private static boolean isElement(Node node, String name) {
+        return node instanceof Element && (name == null || name.equals(node.getName()));
+    }
+
+    /**
+     * @return true if the node is an element of given name, any element if the name is null
+     */
+    private static boolean isElement(Node node, QName qName) {
+        if (node instanceof Element) {
+            final QName name = ((Element) node).getQName();
+
+            // names from the same cache are the same instances
+            return qName == null || qName == name || qName.equals(name);
+        }
+
+        return false;
+    }
+
+    /**
+     * Iterates child elements of some name directly over the content, without a filtered list
+     */
+    private static final class ElementIterator implements Iterator<Element> {
+        private final List<Node> content;
+        private final String name;
+        private final QName qName;
+
+        /**
+         * Index of the next element, or the size of the content if there is none
+         */
+        private int next;
+
+        /**
+         * Index of the element returned last, -1 if it was removed or there is none
+         */
+        private int last = -1;
+
+        ElementIterator(List<Node> content, String name, QName qName) {
+            this.content = content;
+            this.name = name;
+            this.qName = qName;
+            this.next = find(0);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < content.size();
+        }
+
+        @Override
+        public Element next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            last = next;
+            next = find(next + 1);
+            return (Element) content.get(last);
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+
+            content.remove(last);
+            next--;
+            last = -1;
+        }
+
+        private int find(int from) {
+            final int size = content.size();
+
+            for (int i = from; i < size; i++) {
+                final Node node = content.get(i);
+
+                if (qName != null ? isElement(node, qName) : isElement(node, name)) {
+                    return i;
+                }
+            }
+
+            return size;
+        }
     }
 }
 
@@ -108,6 +108,34 @@ public abstract class AbstractNode implements Node, Serializable {
         return getUniquePath(null);
     }
 
+    @Override
+    public long structuralHash() {
+        return StructuralHash.leaf(this);
+    }
+
+    /**
+     * Called before the name or value of this node changes, so copies sharing the content of its ancestors keep the
+     * previous value, see {@link AbstractBranch#beforeChange()}
+     */
+    protected void beforeChange() {
+        final Element parent = getParent();
+
+        if (parent instanceof AbstractBranch) {
+            ((AbstractBranch) parent).beforeChange();
+        }
+    }
+
+    /**
+     * Forgets the cached structural hashes which depend on this node, called whenever its name or value changes
+     */
+    protected void invalidateStructuralHash() {
+        final Element parent = getParent();
+
+        if (parent instanceof AbstractBranch) {
+            ((AbstractBranch) parent).invalidateStructuralHash();
+        }
+    }
+
     @Override
     public AbstractNode clone() {
         if (isReadOnly()) {
@@ -0,0 +1,232 @@
+package org.neoxml.tree;
+
+import org.neoxml.Attribute;
+import org.neoxml.Document;
+import org.neoxml.Element;
+import org.neoxml.QName;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * <code>AttributeIndex</code> maps values of an attribute to the elements which have the attribute with that value.
+ * The index may be restricted to elements of one name. Elements with the same value are returned in document order.
+ * </p>
+ * <p>
+ * Indexes are registered by {@link AbstractDocument#addAttributeIndex(String, QName, QName)}. An index is filled on
+ * the first lookup and then kept up to date as attributes and elements are added to or removed from the document and
+ * as attribute values change.
+ * </p>
+ */
+public final class AttributeIndex {
+    private final String name;
+    private final QName attributeName;
+    private final QName elementName;
+
+    /**
+     * Elements by attribute values, null until the index is used
+     */
+    private Map<String, Bucket> values;
+
+    AttributeIndex(String name, QName attributeName, QName elementName) {
+        this.name = name;
+        this.attributeName = attributeName;
+        this.elementName = elementName;
+    }
+
+    /**
+     * @return the name the index is registered with
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the name of indexed attributes
+     */
+    public QName getAttributeName() {
+        return attributeName;
+    }
+
+    /**
+     * @return the name of indexed elements or null if elements of any name are indexed
+     */
+    public QName getElementName() {
+        return elementName;
+    }
+
+    /**
+     * Tests if this index contains all elements of given name having the indexed attribute
+     *
+     * @param qName the name of elements, null for elements of any name
+     * @return true if the index covers such elements
+     */
+    public boolean covers(QName qName) {
+        return elementName == null || elementName.equals(qName);
+    }
+
+    /**
+     * @return unbuilt index with the same definition
+     */
+    AttributeIndex copy() {
+        return new AttributeIndex(name, attributeName, elementName);
+    }
+
+    /**
+     * Returns elements whose indexed attribute has given value
+     *
+     * @param document the indexed document
+     * @param value    the attribute value
+     * @return unmodifiable list of elements in document order
+     */
+    synchronized List<Element> lookup(Document document, String value) {
+        if (values == null) {
+            values = new HashMap<>();
+            ElementIndex.forEachDescendant(document, this::add);
+
+            // elements were added in document order
+            for (Bucket bucket : values.values()) {
+                bucket.sorted = true;
+            }
+        }
+
+        final Bucket bucket = values.get(value);
+        return bucket != null ? bucket.elements(document) : Collections.emptyList();
+    }
+
+    /**
+     * Drops all values, the index is filled again on the next lookup
+     */
+    synchronized void invalidate() {
+        values = null;
+    }
+
+    synchronized boolean isBuilt() {
+        return values != null;
+    }
+
+    /**
+     * Indexes the attribute of given element, if the element is covered
+     */
+    synchronized void add(Element element) {
+        if (values != null && covers(element.getQName())) {
+            final Attribute attribute = element.attribute(attributeName);
+
+            if (attribute != null) {
+                add(element, attribute.getValue());
+            }
+        }
+    }
+
+    /**
+     * Removes the attribute of given element from the index
+     */
+    synchronized void remove(Element element) {
+        if (values != null && covers(element.getQName())) {
+            final Attribute attribute = element.attribute(attributeName);
+
+            if (attribute != null) {
+                remove(element, attribute.getValue());
+            }
+        }
+    }
+
+    /**
+     * Indexes given attribute if it is the indexed one
+     */
+    synchronized void add(Attribute attribute) {
+        final Element element = attribute.getParent();
+
+        if (values != null && element != null && matches(attribute)) {
+            add(element, attribute.getValue());
+        }
+    }
+
+    /**
+     * Removes given attribute from the index if it is the indexed one
+     */
+    synchronized void remove(Attribute attribute) {
+        final Element element = attribute.getParent();
+
+        if (values != null && element != null && matches(attribute)) {
+            remove(element, attribute.getValue());
+        }
+    }
+
+    /**
+     * Moves the element of given attribute from the old value to the current one
+     */
+    synchronized void valueChanged(Attribute attribute, String oldValue) {
+        final Element element = attribute.getParent();
+
+        if (values != null && element != null && matches(attribute)) {
+            remove(element, oldValue);
+            add(element, attribute.getValue());
+        }
+    }
+
+    private boolean matches(Attribute attribute) {
+        return attributeName.equals(attribute.getQName()) && covers(attribute.getParent().getQName());
+    }
+
+    private void add(Element element, String value) {
+        if (value != null) {
+            values.computeIfAbsent(value, key -> new Bucket()).add(element);
+        }
+    }
+
+    private void remove(Element element, String value) {
+        final Bucket bucket = value != null ? values.get(value) : null;
+
+        if (bucket != null && bucket.remove(element)) {
+            values.remove(value);
+        }
+    }
+
+    /**
+     * Elements with one value, they are sorted to document order when they are looked up
+     */
+    private static final class Bucket {
+        private final List<Element> elements = new ArrayList<>(1);
+        private boolean sorted = true;
+        private List<Element> view;
+
+        void add(Element element) {
+            sorted = elements.isEmpty();
+            elements.add(element);
+            view = null;
+        }
+
+        /**
+         * @return true if the bucket is empty
+         */
+        boolean remove(Element element) {
+            for (int i = elements.size() - 1; i >= 0; i--) {
+                if (elements.get(i) == element) {
+                    elements.remove(i);
+                    view = null;
+                    break;
+                }
+            }
+
+            return elements.isEmpty();
+        }
+
+        List<Element> elements(Document document) {
+            if (view == null) {
+                if (!sorted) {
+                    DocumentOrder.of(document).sort(elements);
+                    sorted = true;
+                }
+
+                view = Collections.unmodifiableList(new ArrayList<>(elements));
+            }
+
+            return view;
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package org.neoxml.tree;
+
+import org.neoxml.Attribute;
+import org.neoxml.Node;
+import org.neoxml.QName;
+
+import java.util.List;
+
+/**
+ * Attribute storage of an {@link AbstractElement}. Attributes are kept in insertion order like in
+ * {@link DefaultNodeList}, but once the list grows above {@link #INDEX_THRESHOLD} attributes a compact open-addressed
+ * hash table (keyed by <code>QName</code> and by local name) is lazily built over the list positions,
+ * so lookups by name do not need to scan the whole list.
+ * <p>
+ * Appending an attribute keeps the table up to date, any other structural change just drops it
+ * and it is rebuilt on the next lookup.
+ */
+class AttributeNodeList extends DefaultNodeList<Attribute> {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Lists with less attributes than this are searched linearly
+     */
+    static final int INDEX_THRESHOLD = 8;
+
+    /**
+     * Open-addressed table of list positions (+1, so that 0 means empty slot) hashed by attribute QName
+     */
+    private transient int[] qNameTable;
+
+    /**
+     * Open-addressed table of list positions (+1, so that 0 means empty slot) hashed by attribute local name
+     */
+    private transient int[] nameTable;
+
+    /**
+     * Number of attributes indexed in tables
+     */
+    private transient int indexedSize;
+
+    /**
+     * Value of modCount for which tables are valid
+     */
+    private transient int indexedModCount;
+
+    AttributeNodeList(AbstractBranch branch) {
+        super(branch);
+    }
+
+    AttributeNodeList(AbstractBranch branch, int initialSize) {
+        super(branch, initialSize);
+    }
+
+    private AttributeNodeList(AbstractBranch branch, List<? extends Attribute> nodes) {
+        super(branch, nodes);
+    }
+
+    /**
+     * Finds the first attribute with given <code>QName</code>
+     *
+     * @param qName name of attribute
+     * @return found attribute or null
+     */
+    Attribute find(QName qName) {
+        final int position = positionOf(qName);
+        return position >= 0 ? get(position) : null;
+    }
+
+    /**
+     * Finds the first attribute with given local name
+     *
+     * @param name local name of attribute
+     * @return found attribute or null
+     */
+    Attribute find(String name) {
+        final int size = size();
+
+        if (size < INDEX_THRESHOLD) {
+            for (int i = 0; i < size; i++) {
+                Attribute attribute = get(i);
+
+                if (name.equals(attribute.getName())) {
+                    return attribute;
+                }
+            }
+
+            return null;
+        }
+
+        ensureIndex();
+
+        final int mask = nameTable.length - 1;
+
+        for (int slot = hash(name.hashCode()) & mask; nameTable[slot] != 0; slot = (slot + 1) & mask) {
+            Attribute attribute = get(nameTable[slot] - 1);
+
+            if (name.equals(attribute.getName())) {
+                return attribute;
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public int indexOf(Object element) {
+        if (element instanceof Attribute && size() >= INDEX_THRESHOLD) {
+            final int position = positionOf(((Attribute) element).getQName());
+
+            if (position >= 0 && get(position) == element) {
+                return position;
+            }
+        }
+
+        return super.indexOf(element);
+    }
+
+    @Override
+    public AttributeNodeList duplicate() {
+        return new AttributeNodeList(getParent(), this);
+    }
+
+    @Override
+    public AttributeNodeList copy() {
+        final AttributeNodeList newNodes = new AttributeNodeList(null, size());
+
+        for (Attribute node : this) {
+            newNodes.addNode((Attribute) node.clone());
+        }
+
+        return newNodes;
+    }
+
+    @Override
+    public AttributeNodeList clone() {
+        final AttributeNodeList answer = (AttributeNodeList) super.clone();
+        answer.invalidateIndex();
+        return answer;
+    }
+
+    @Override
+    void addNode(Attribute node) {
+        final boolean indexed = isIndexValid();
+
+        super.addNode(node);
+
+        if (indexed) {
+            appendToIndex();
+        }
+    }
+
+    @Override
+    void addNode(int index, Attribute node) {
+        super.addNode(index, node);
+        invalidateIndex();
+    }
+
+    @Override
+    Attribute setNode(int index, Attribute node) {
+        final Attribute removed = super.setNode(index, node);
+        invalidateIndex();
+        return removed;
+    }
+
+    @Override
+    boolean removeNode(Node node) {
+        final int index = indexOf(node);
+
+        if (index >= 0) {
+            removeNode(index);
+            return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    Attribute removeNode(int index) {
+        final Attribute removed = super.removeNode(index);
+        invalidateIndex();
+        return removed;
+    }
+
+    @Override
+    void clearNodes() {
+        super.clearNodes();
+        invalidateIndex();
+    }
+
+    private int positionOf(QName qName) {
+        final int size = size();
+
+        if (size < INDEX_THRESHOLD) {
+            for (int i = 0; i < size; i++) {
+                if (qName.equals(get(i).getQName())) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+        ensureIndex();
+
+        final int mask = qNameTable.length - 1;
+
+        for (int slot = hash(qName.hashCode()) & mask; qNameTable[slot] != 0; slot = (slot + 1) & mask) {
+            final int position = qNameTable[slot] - 1;
+
+            if (qName.equals(get(position).getQName())) {
+                return position;
+            }
+        }
+
+        return -1;
+    }
+
+    private boolean isIndexValid() {
+        return qNameTable != null && indexedSize == size() && indexedModCount == modCount();
+    }
+
+    private void invalidateIndex() {
+        qNameTable = null;
+        nameTable = null;
+    }
+
+    private void ensureIndex() {
+        if (!isIndexValid()) {
+            buildIndex();
+        }
+    }
+
+    private void buildIndex() {
+        final int size = size();
+
+        // keep load factor at most 1/2
+        final int capacity = Integer.highestOneBit(Math.max(size, INDEX_THRESHOLD) * 4 - 1);
+
+        qNameTable = new int[capacity];
+        nameTable = new int[capacity];
+        indexedSize = 0;
+
+        for (int i = 0; i < size; i++) {
+            insert(i);
+        }
+
+        indexedModCount = modCount();
+    }
+
+    private void appendToIndex() {
+        final int position = size() - 1;
+
+        if ((position + 1) * 2 > qNameTable.length) {
+            buildIndex();
+        } else {
+            insert(position);
+            indexedModCount = modCount();
+        }
+    }
+
+    private void insert(int position) {
+        final Attribute attribute = get(position);
+        final QName qName = attribute.getQName();
+        final String name = attribute.getName();
+
+        // only the first attribute of given name is indexed, as lookups return the first one
+        int mask = qNameTable.length - 1;
+        int slot = hash(qName.hashCode()) & mask;
+
+        while (qNameTable[slot] != 0) {
+            if (qName.equals(get(qNameTable[slot] - 1).getQName())) {
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (qNameTable[slot] == 0) {
+            qNameTable[slot] = position + 1;
+        }
+
+        mask = nameTable.length - 1;
+        slot = hash(name.hashCode()) & mask;
+
+        while (nameTable[slot] != 0) {
+            if (name.equals(get(nameTable[slot] - 1).getName())) {
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (nameTable[slot] == 0) {
+            nameTable[slot] = position + 1;
+        }
+
+        indexedSize++;
+    }
+
+    private static int hash(int h) {
+        return h ^ (h >>> 16);
+    }
+}
@@ -12,6 +12,8 @@ import org.neoxml.Element;
 import org.neoxml.Namespace;
 import org.neoxml.QName;
 
+import java.util.Objects;
+
 /**
  * <p>
  * <code>DefaultAttribute</code> implements a doubly linked node which supports the parent relationship and is mutable.
@@ -99,7 +101,13 @@ public class DefaultAttribute extends AbstractAttribute {
 
     @Override
     public void setValue(String value) {
+        beforeChange();
+        final String oldValue = this.value;
         this.value = value;
+
+        if (parent != null && !Objects.equals(oldValue, value)) {
+            valueChanged(oldValue);
+        }
     }
 
     @Override
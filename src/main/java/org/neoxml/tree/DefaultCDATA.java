@@ -45,7 +45,9 @@ public class DefaultCDATA extends FlyweightCDATA {
 
     @Override
     public void setText(String text) {
+        beforeChange();
         this.text = text;
+        invalidateStructuralHash();
     }
 
     @Override
@@ -45,7 +45,9 @@ public class DefaultComment extends FlyweightComment {
 
     @Override
     public void setText(String text) {
+        beforeChange();
         this.text = text;
+        invalidateStructuralHash();
     }
 
     @Override
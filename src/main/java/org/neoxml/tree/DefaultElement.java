@@ -16,6 +16,10 @@ import org.neoxml.Node;
 import org.neoxml.NodeList;
 import org.neoxml.QName;
 
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 
@@ -33,6 +37,42 @@ public class DefaultElement extends AbstractElement {
      */
     private static final DocumentFactory DOCUMENT_FACTORY = DefaultDocumentFactory.getInstance();
 
+    /**
+     * True for classes which keep content and attributes in the fields of this class and don't hook adding of
+     * children, so copies can be attached to a copy without the hooks. Classes overriding <code>clone()</code> without
+     * overriding {@link #cloneWithoutContent()} as well are copied by their <code>clone()</code>.
+     */
+    private static final ClassValue<Boolean> ADOPTS_COPIES = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            boolean copiesWithoutContent = false;
+
+            for (Class<?> c = type; c != DefaultElement.class; c = c.getSuperclass()) {
+                if (declares(c, "childAdded", Node.class) || declares(c, "contentList")
+                        || declares(c, "attributeList")) {
+                    return false;
+                }
+
+                copiesWithoutContent |= declares(c, "cloneWithoutContent");
+
+                if (!copiesWithoutContent && declares(c, "clone")) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        private boolean declares(Class<?> type, String name, Class<?>... parameterTypes) {
+            try {
+                type.getDeclaredMethod(name, parameterTypes);
+                return true;
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+    };
+
     /**
      * The <code>QName</code> for this element
      */
@@ -57,6 +97,21 @@ public class DefaultElement extends AbstractElement {
      */
     protected NodeList<Attribute> attributes;
 
+    /**
+     * Lazily computed namespaces in scope, shared with the parent if this element binds nothing new
+     */
+    private transient NamespaceScope namespaceScope;
+
+    /**
+     * Template whose attributes and content this copy shares until they are first accessed, null once it has its own
+     */
+    private volatile Template shared;
+
+    /**
+     * Template shared by the copies of this element, null until it is copied or once it changes
+     */
+    private Template copies;
+
 
     public DefaultElement(String name) {
         this(DOCUMENT_FACTORY.createQName(name));
@@ -90,18 +145,27 @@ public class DefaultElement extends AbstractElement {
     @Override
     public void setParent(Element parent) {
         if (parentBranch instanceof Element || (parent != null)) {
+            if (parentBranch != parent) {
+                invalidateNamespaceScopes();
+            }
+
             parentBranch = parent;
         }
     }
 
     @Override
     public Document getDocument() {
-        if (parentBranch instanceof Document) {
-            return (Document) parentBranch;
-        } else if (parentBranch instanceof Element) {
-            Element parent = (Element) parentBranch;
+        Branch branch = parentBranch;
 
-            return parent.getDocument();
+        // walk up without recursion as long as the ancestors are default elements
+        while (branch instanceof DefaultElement) {
+            branch = ((DefaultElement) branch).parentBranch;
+        }
+
+        if (branch instanceof Document) {
+            return (Document) branch;
+        } else if (branch instanceof Element) {
+            return ((Element) branch).getDocument();
         }
 
         return null;
@@ -126,11 +190,65 @@ public class DefaultElement extends AbstractElement {
 
     @Override
     public void setQName(QName name) {
+        final QName oldName = this.qname;
+
+        // copies of this element have names of their own, unlike copies of its ancestors
+        if (oldName != name && getParent() instanceof AbstractBranch) {
+            ((AbstractBranch) getParent()).beforeChange();
+        }
+
         this.qname = name;
+
+        if (oldName != name) {
+            invalidateStructuralHash();
+        }
+
+        if (oldName != null && !oldName.equals(name)) {
+            invalidateNamespaceScopes();
+
+            final AbstractDocument document = documentToNotify();
+
+            if (document != null) {
+                document.elementRenamed(this);
+            }
+        }
+    }
+
+    @Override
+    public Namespace getNamespaceForPrefix(String prefix) {
+        final NamespaceScope scope = namespaceScope();
+
+        if (scope == null) {
+            return super.getNamespaceForPrefix(prefix);
+        }
+
+        if (prefix == null) {
+            prefix = "";
+        }
+
+        if (prefix.equals(getNamespacePrefix())) {
+            return getNamespace();
+        } else if (prefix.equals("xml")) {
+            return Namespace.XML_NAMESPACE;
+        }
+
+        final Namespace answer = scope.forPrefix(prefix);
+
+        if (answer != null) {
+            return answer;
+        }
+
+        return prefix.length() <= 0 ? Namespace.NO_NAMESPACE : null;
     }
 
     @Override
     public Namespace getNamespaceForURI(String uri) {
+        final NamespaceScope scope = namespaceScope();
+
+        if (scope != null) {
+            return uri == null || uri.length() <= 0 ? Namespace.NO_NAMESPACE : scope.forURI(uri);
+        }
+
         Namespace namespace = super.getNamespaceForURI(uri);
 
         if (namespace == null) {
@@ -144,6 +262,99 @@ public class DefaultElement extends AbstractElement {
         return namespace;
     }
 
+    /**
+     * <p>
+     * Returns the namespaces in scope of this element, the namespace of the element, namespaces declared by it and the
+     * namespaces of its ancestors not overridden by them. The result is cached until namespaces are added or removed
+     * or elements are renamed or moved.
+     * </p>
+     *
+     * @return unmodifiable collection of namespaces by distinct prefixes, or null if some ancestor isn't a
+     * <code>DefaultElement</code>
+     */
+    public Collection<Namespace> getNamespacesInScope() {
+        final NamespaceScope scope = namespaceScope();
+        return scope != null ? scope.namespaces() : null;
+    }
+
+    /**
+     * @return the namespace scope or null if it cannot be cached because some ancestor isn't a <code>DefaultElement</code>
+     */
+    NamespaceScope namespaceScope() {
+        NamespaceScope scope = namespaceScope;
+
+        if (scope == null) {
+            final Element parent = getParent();
+            final NamespaceScope parentScope;
+
+            if (parent == null) {
+                parentScope = NamespaceScope.EMPTY;
+            } else if (parent instanceof DefaultElement) {
+                parentScope = ((DefaultElement) parent).namespaceScope();
+            } else {
+                return null;
+            }
+
+            if (parentScope == null) {
+                return null;
+            }
+
+            scope = NamespaceScope.of(parentScope, getNamespace(), safeContentList());
+            namespaceScope = scope;
+        }
+
+        return scope;
+    }
+
+    /**
+     * Forgets the cached namespace scopes of this element and of its descendants. Elements cache their scope only
+     * after their parent did, so content of elements without a cached scope is skipped.
+     */
+    private void invalidateNamespaceScopes() {
+        if (namespaceScope == null) {
+            return;
+        }
+
+        final TreeWalker walker = new TreeWalker(this);
+
+        while (walker.hasNext()) {
+            if (walker.next() != TreeWalker.START) {
+                continue;
+            }
+
+            final Node node = walker.getNode();
+
+            if (node instanceof DefaultElement && ((DefaultElement) node).namespaceScope != null) {
+                ((DefaultElement) node).namespaceScope = null;
+
+                if (((DefaultElement) node).isShared()) {
+                    // the shared content is in scope of the source
+                    walker.skipContent();
+                }
+            } else {
+                walker.skipContent();
+            }
+        }
+    }
+
+    @Override
+    protected void childAdded(Node node) {
+        if (node instanceof Namespace) {
+            invalidateNamespaceScopes();
+        }
+
+        super.childAdded(node);
+    }
+
+    @Override
+    protected void childRemoved(Node node) {
+        if (node instanceof Namespace) {
+            invalidateNamespaceScopes();
+        }
+
+        super.childRemoved(node);
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public void setContent(List<? extends Node> nodes) {
@@ -151,6 +362,7 @@ public class DefaultElement extends AbstractElement {
             final NodeList<Node> nodeList = (NodeList<Node>) nodes;
 
             if (nodeList.getParent() != this) {
+                beforeChange();
                 clearContentList();
 
                 if (nodeList.getParent() != null) {
@@ -185,7 +397,8 @@ public class DefaultElement extends AbstractElement {
 
     @Override
     public int nodeCount() {
-        return safeContentList().size();
+        final DefaultElement template = template();
+        return template != null ? template.nodeCount() : safeContentList().size();
     }
 
     @Override
@@ -204,6 +417,7 @@ public class DefaultElement extends AbstractElement {
             final NodeList<Attribute> attrList = (NodeList<Attribute>) attributes;
 
             if (attrList.getParent() != this) {
+                beforeChange();
                 clearAttributeList();
 
                 if (attrList.getParent() != null) {
@@ -238,29 +452,8 @@ public class DefaultElement extends AbstractElement {
 
     @Override
     public int attributeCount() {
-        return safeAttributeList().size();
-    }
-
-    @Override
-    public Attribute attribute(String name) {
-        for (Attribute attribute : safeAttributeList()) {
-            if (name.equals(attribute.getName())) {
-                return attribute;
-            }
-        }
-
-        return null;
-    }
-
-    @Override
-    public Attribute attribute(QName qName) {
-        for (Attribute attribute : safeAttributeList()) {
-            if (qName.equals(attribute.getQName())) {
-                return attribute;
-            }
-        }
-
-        return null;
+        final DefaultElement template = template();
+        return template != null ? template.attributeCount() : safeAttributeList().size();
     }
 
     @Override
@@ -302,24 +495,298 @@ public class DefaultElement extends AbstractElement {
 
     /**
      * <p>
-     * This returns a deep clone of this element. The new element is detached from its parent, and getParent() on the
-     * clone will return null.
+     * Returns a copy of this element detached from its parent. The copy shares the attributes and content of this
+     * element until either of them changes, see {@link Element#clone()}. Classes which keep their content differently
+     * or copy their own state by overriding this method get a deep copy.
      * </p>
      *
      * @return the clone of this element
      */
     @Override
     public DefaultElement clone() {
-        DefaultElement answer = (DefaultElement) super.clone();
+        return ADOPTS_COPIES.get(getClass()) ? share() : deepCopy();
+    }
+
+    /**
+     * @return true if this element still shares its attributes and content with another element
+     */
+    boolean isShared() {
+        return shared != null;
+    }
+
+    @Override
+    public boolean hasContent() {
+        final DefaultElement template = template();
+        return template != null ? template.hasContent() : super.hasContent();
+    }
+
+    @Override
+    public String getText() {
+        final DefaultElement template = template();
+        return template != null ? template.getText() : super.getText();
+    }
+
+    @Override
+    public String getStringValue() {
+        final DefaultElement template = template();
+        return template != null ? template.getStringValue() : super.getStringValue();
+    }
+
+    @Override
+    public void appendStringValue(StringBuilder buffer) {
+        final DefaultElement template = template();
+
+        if (template != null) {
+            template.appendStringValue(buffer);
+        } else {
+            super.appendStringValue(buffer);
+        }
+    }
+
+    @Override
+    public String attributeValue(String name) {
+        final DefaultElement template = template();
+        return template != null ? template.attributeValue(name) : super.attributeValue(name);
+    }
+
+    @Override
+    public String attributeValue(QName qName) {
+        final DefaultElement template = template();
+        return template != null ? template.attributeValue(qName) : super.attributeValue(qName);
+    }
+
+    @Override
+    public String attributeValue(String name, String defaultValue) {
+        final DefaultElement template = template();
+        return template != null ? template.attributeValue(name, defaultValue) : super.attributeValue(name, defaultValue);
+    }
+
+    @Override
+    public String attributeValue(QName qName, String defaultValue) {
+        final DefaultElement template = template();
+        return template != null ? template.attributeValue(qName, defaultValue) : super.attributeValue(qName, defaultValue);
+    }
+
+    @Override
+    public long structuralHash() {
+        final DefaultElement template = template();
+        return template != null ? template.structuralHash() : super.structuralHash();
+    }
+
+    @Override
+    long cachedStructuralHash() {
+        // not cached by the copy, its nodes created later don't know it
+        final DefaultElement template = template();
+        return template != null ? template.structuralHash() : super.cachedStructuralHash();
+    }
+
+    @Override
+    public String asXML() {
+        // the XML of a subtree doesn't depend on its ancestors
+        final DefaultElement template = template();
+        return template != null ? template.asXML() : super.asXML();
+    }
+
+    /**
+     * @return the element whose attributes and content this copy shares, null if it has its own
+     */
+    private DefaultElement template() {
+        final Template template = shared;
+        return template != null ? template.source : null;
+    }
+
+    private DefaultElement share() {
+        final DefaultElement answer = cloneWithoutContent();
+
+        if (answer != this) {
+            final Template template = shared;
+            answer.shared = template != null ? template : copies();
+        }
+
+        return answer;
+    }
+
+    /**
+     * Returns the template shared by copies of this element. Its structural hash is cached first, so changes of its
+     * descendants walk up to it, see {@link AbstractBranch#beforeChange()}.
+     */
+    private synchronized Template copies() {
+        if (copies == null) {
+            structuralHash();
+            copies = new Template(this);
+        }
+
+        return copies;
+    }
+
+    /**
+     * Gives the copies sharing the content of this element a copy of it, called before the content changes
+     */
+    synchronized void detachCopies() {
+        final Template template = copies;
+
+        if (template != null) {
+            copies = null;
+            template.source = deepCopy();
+        }
+    }
+
+    private DefaultElement deepCopy() {
+        final DefaultElement answer = cloneWithoutContent();
 
         if (answer != this) {
-            answer.attributes = attributes != null ? attributes.copy().attach(answer) : null;
-            answer.content = content != null ? content.copy().attach(answer) : null;
+            copyAttributes(answer);
+            copyContent(answer);
         }
 
         return answer;
     }
 
+    /**
+     * Copies attributes and content of the template, sharing the content of its child elements in turn. Copies read
+     * by several threads are copied once.
+     */
+    private synchronized void materialize() {
+        final Template template = shared;
+
+        if (template == null) {
+            return;
+        }
+
+        final DefaultElement source = template.source;
+        copyAttributes(source, this);
+
+        if (source.content != null) {
+            final NodeList<Node> sourceContent = source.content;
+            final DefaultNodeList<Node> list = new DefaultNodeList<>(null, sourceContent.size());
+
+            for (int i = 0, size = sourceContent.size(); i < size; i++) {
+                final Node node = sourceContent.get(i);
+                list.addNode(node instanceof DefaultElement && ADOPTS_COPIES.get(node.getClass())
+                        ? ((DefaultElement) node).share() : node.clone());
+            }
+
+            content = attachCopies(list, this);
+        }
+
+        // the content equals that of the template, so hashes cached by ancestors stay valid
+        cacheStructuralHash(source.structuralHash());
+        shared = null;
+    }
+
+    /**
+     * Creates a detached copy of this element without attributes and content. Subclasses copying their own state on
+     * cloning should override this method, {@link #clone()} uses it for every descendant element.
+     *
+     * @return the copy, or this element if it is read only
+     */
+    protected DefaultElement cloneWithoutContent() {
+        final DefaultElement answer = (DefaultElement) super.clone();
+
+        if (answer != this) {
+            answer.namespaceScope = null;
+            answer.ownerDocument = null;
+            answer.attributes = null;
+            answer.content = null;
+            answer.shared = null;
+            answer.copies = null;
+        }
+
+        return answer;
+    }
+
+    private void copyAttributes(DefaultElement copy) {
+        final DefaultElement template = template();
+        copyAttributes(template != null ? template : this, copy);
+    }
+
+    private static void copyAttributes(DefaultElement source, DefaultElement copy) {
+        if (source.attributes != null && !source.attributes.isEmpty()) {
+            copy.attributes = attachCopies(source.attributes.copy(), copy);
+        }
+    }
+
+    /**
+     * Copies the content of this element to its copy. Descendants are walked without recursion, content of each copied
+     * element is attached to it once it is complete, like it would be by a recursive clone.
+     */
+    private void copyContent(DefaultElement copy) {
+        final TreeWalker walker = new TreeWalker(this);
+        final Deque<DefaultElement> copies = new ArrayDeque<>();
+        final Deque<DefaultNodeList<Node>> lists = new ArrayDeque<>();
+
+        walker.next();
+        copies.push(copy);
+        lists.push(new DefaultNodeList<>(null, nodeCount()));
+
+        while (walker.hasNext()) {
+            final int event = walker.next();
+            final Node node = walker.getNode();
+
+            if (!(node instanceof DefaultElement)
+                    || walker.getDepth() > 0 && !ADOPTS_COPIES.get(node.getClass())) {
+                if (event == TreeWalker.START) {
+                    // other elements are cloned as a whole, so overrides of clone() copy their own state
+                    walker.skipContent();
+                    lists.peek().addNode(node.clone());
+                } else if (event == TreeWalker.NODE) {
+                    lists.peek().addNode(node.clone());
+                }
+            } else if (event == TreeWalker.START) {
+                final DefaultElement source = (DefaultElement) node;
+
+                if (source.shared != null) {
+                    // a copy still sharing its content is copied by sharing the same content
+                    walker.skipContent();
+                    lists.peek().addNode(source.share());
+                    continue;
+                }
+
+                final DefaultElement element = source.cloneWithoutContent();
+                copyAttributes(source, element);
+
+                lists.peek().addNode(element);
+                copies.push(element);
+                lists.push(new DefaultNodeList<>(null, source.nodeCount()));
+            } else {
+                final DefaultElement element = copies.pop();
+                final DefaultNodeList<Node> list = lists.pop();
+
+                element.content = ((DefaultElement) node).content != null ? attachCopies(list, element) : null;
+            }
+        }
+    }
+
+    /**
+     * Copies attributes and content to a new element. Copies of the descendants are attached to their parents
+     * directly if the new element keeps them like this class does.
+     */
+    @Override
+    protected Element copyTo(Element copy) {
+        if (!(copy instanceof DefaultElement) || copy.attributeCount() > 0 || copy.hasContent()
+                || !ADOPTS_COPIES.get(copy.getClass())) {
+            return super.copyTo(copy);
+        }
+
+        final DefaultElement element = (DefaultElement) copy;
+
+        copyAttributes(element);
+        copyContent(element);
+        return element;
+    }
+
+    /**
+     * Attaches a list of fresh copies to a copy of an element, without the hooks if the element allows it
+     */
+    @SuppressWarnings("unchecked")
+    private static <T extends Node> NodeList<T> attachCopies(NodeList<T> copies, DefaultElement element) {
+        if (copies instanceof DefaultNodeList && ADOPTS_COPIES.get(element.getClass())) {
+            return ((DefaultNodeList<T>) copies).adopt(element);
+        }
+
+        return copies.attach(element);
+    }
+
     @Override
     protected void addNewNode(Node node) {
         contentList().add(node);
@@ -338,6 +805,10 @@ public class DefaultElement extends AbstractElement {
 
     @Override
     protected NodeList<Node> contentList() {
+        if (shared != null) {
+            materialize();
+        }
+
         if (this.content == null) {
             this.content = createContentList();
         }
@@ -346,6 +817,10 @@ public class DefaultElement extends AbstractElement {
 
     @Override
     protected NodeList<Node> contentList(int size) {
+        if (shared != null) {
+            materialize();
+        }
+
         if (this.content == null) {
             this.content = createContentList(size);
         } else if (this.content instanceof DefaultNodeList<?>) {
@@ -356,6 +831,10 @@ public class DefaultElement extends AbstractElement {
 
     @Override
     protected NodeList<Node> safeContentList() {
+        if (shared != null) {
+            materialize();
+        }
+
         if (this.content == null) {
             return emptyNodeList();
         }
@@ -392,6 +871,10 @@ public class DefaultElement extends AbstractElement {
 
     @Override
     protected NodeList<Attribute> attributeList() {
+        if (shared != null) {
+            materialize();
+        }
+
         if (this.attributes == null) {
             this.attributes = createAttributeList();
         }
@@ -400,6 +883,10 @@ public class DefaultElement extends AbstractElement {
 
     @Override
     protected NodeList<Attribute> attributeList(int attributeCount) {
+        if (shared != null) {
+            materialize();
+        }
+
         if (this.attributes == null) {
             this.attributes = createAttributeList(attributeCount);
         } else if (this.attributes instanceof DefaultNodeList<?>) {
@@ -410,6 +897,10 @@ public class DefaultElement extends AbstractElement {
 
     @Override
     protected NodeList<Attribute> safeAttributeList() {
+        if (shared != null) {
+            materialize();
+        }
+
         if (this.attributes == null) {
             return emptyAttributeList();
         }
@@ -419,6 +910,10 @@ public class DefaultElement extends AbstractElement {
 
     @Override
     protected void clearAttributeList() {
+        if (shared != null) {
+            materialize();
+        }
+
         if (this.attributes != null) {
             this.attributes.clear();
         }
@@ -434,6 +929,19 @@ public class DefaultElement extends AbstractElement {
             }
         }
     }
+
+    /**
+     * Element shared by copies, replaced by a copy of it before it changes
+     */
+    private static final class Template implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        volatile DefaultElement source;
+
+        Template(DefaultElement source) {
+            this.source = source;
+        }
+    }
 }
 
 /*
@@ -56,12 +56,16 @@ public class DefaultEntity extends FlyweightEntity {
 
     @Override
     public void setName(String name) {
+        beforeChange();
         this.name = name;
+        invalidateStructuralHash();
     }
 
     @Override
     public void setText(String text) {
+        beforeChange();
         this.text = text;
+        invalidateStructuralHash();
     }
 
     @Override
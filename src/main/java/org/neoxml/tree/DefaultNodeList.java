@@ -7,10 +7,13 @@
 package org.neoxml.tree;
 
 import org.neoxml.Branch;
+import org.neoxml.Namespace;
 import org.neoxml.Node;
 import org.neoxml.NodeList;
+import org.neoxml.util.CompactList;
 import org.neoxml.util.HeadList;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
@@ -25,12 +28,23 @@ import java.util.function.Predicate;
  * @author <a href="mailto:james.strachan@metastuff.com">James Strachan </a>
  * @version $Revision: 1.14 $
  */
-public class DefaultNodeList<T extends Node> extends HeadList<T> implements NodeList<T> {
+public class DefaultNodeList<T extends Node> extends CompactList<T> implements NodeList<T> {
+    /**
+     * Lists with less nodes than this are searched linearly by {@link #indexOf(Object)}
+     */
+    static final int POSITIONS_THRESHOLD = 16;
+
     /**
      * The <code>AbstractBranch</code> instance which owns the content
      */
     private AbstractBranch branch;
 
+    /**
+     * Positions of the nodes by identity, built by {@link #indexOf(Object)} and valid while the list isn't modified.
+     * The table is immutable, so threads reading the list at once see either a complete table or none.
+     */
+    private transient volatile Positions positions;
+
     public DefaultNodeList(AbstractBranch branch) {
         super();
         this.branch = branch;
@@ -41,9 +55,13 @@ public class DefaultNodeList<T extends Node> extends HeadList<T> implements Node
         this.branch = branch;
     }
 
+    /**
+     * @deprecated nodes are no longer kept in a <code>HeadList</code>, use
+     * {@link #DefaultNodeList(AbstractBranch, List)} instead
+     */
+    @Deprecated
     protected DefaultNodeList(AbstractBranch branch, HeadList<? extends T> nodes) {
-        super(nodes);
-        this.branch = branch;
+        this(branch, (List<? extends T>) nodes);
     }
 
     protected DefaultNodeList(AbstractBranch branch, List<? extends T> nodes) {
@@ -91,6 +109,30 @@ public class DefaultNodeList<T extends Node> extends HeadList<T> implements Node
         return removeNode(index);
     }
 
+    /**
+     * Finds the position of a node in constant time once the positions of a long list are known, so walking the
+     * siblings of nodes doesn't scan the list for each of them. Nodes other than namespaces are equal only to
+     * themselves.
+     */
+    @Override
+    public int indexOf(Object node) {
+        if (size() < POSITIONS_THRESHOLD || !(node instanceof Node) || node instanceof Namespace) {
+            return super.indexOf(node);
+        }
+
+        Positions table = positions;
+
+        if (table == null || table.modCount != modCount()) {
+            table = new Positions(this);
+            positions = table;
+        }
+
+        final int index = table.indexOf(node);
+
+        // a node which isn't in the list may still equal some node of it
+        return index >= 0 ? index : super.indexOf(node);
+    }
+
     @Override
     public void clear() {
         clearNodes();
@@ -154,6 +196,29 @@ public class DefaultNodeList<T extends Node> extends HeadList<T> implements Node
         return this;
     }
 
+    /**
+     * Removes matching nodes in one pass over the list, then fires <code>childRemoved</code> for each of them in
+     * order.
+     */
+    @Override
+    public boolean removeIf(Predicate<? super T> cond) {
+        Objects.requireNonNull(cond);
+
+        if (branch == null) {
+            return super.removeIf(cond);
+        }
+
+        final List<T> removed = new ArrayList<>();
+        branch.beforeChange();
+        super.removeIf(node -> cond.test(node) && removed.add(node));
+
+        for (T node : removed) {
+            branch.childRemoved(node);
+        }
+
+        return !removed.isEmpty();
+    }
+
     @Override
     public NodeList<T> facade() {
         return new NodeListFacade<>(this);
@@ -189,7 +254,9 @@ public class DefaultNodeList<T extends Node> extends HeadList<T> implements Node
 
     @Override
     public DefaultNodeList<T> clone() {
-        return (DefaultNodeList<T>) super.clone();
+        final DefaultNodeList<T> answer = (DefaultNodeList<T>) super.clone();
+        answer.positions = null;
+        return answer;
     }
 
     @Override
@@ -202,6 +269,7 @@ public class DefaultNodeList<T extends Node> extends HeadList<T> implements Node
 
         if (branch != null) {
             branch.beforeChildAdd(node);
+            branch.beforeChange();
         }
 
         super.add(node);
@@ -216,6 +284,7 @@ public class DefaultNodeList<T extends Node> extends HeadList<T> implements Node
 
         if (branch != null) {
             branch.beforeChildAdd(node);
+            branch.beforeChange();
         }
 
         super.add(index, node);
@@ -230,9 +299,12 @@ public class DefaultNodeList<T extends Node> extends HeadList<T> implements Node
 
         if (branch != null) {
             branch.beforeChildAdd(node);
+            branch.beforeChange();
         }
 
         final T removed = super.set(index, node);
+        // set doesn't change modCount
+        positions = null;
 
         if (node != removed && branch != null) {
             if (removed != null) {
@@ -245,7 +317,16 @@ public class DefaultNodeList<T extends Node> extends HeadList<T> implements Node
     }
 
     boolean removeNode(Node node) {
-        if (super.remove(node)) {
+        // the positions are dropped by the removal, so they aren't built for it
+        final int index = super.indexOf(node);
+
+        if (index >= 0) {
+            if (branch != null) {
+                branch.beforeChange();
+            }
+
+            super.remove(index);
+
             if (branch != null) {
                 branch.childRemoved(node);
             }
@@ -256,6 +337,10 @@ public class DefaultNodeList<T extends Node> extends HeadList<T> implements Node
     }
 
     T removeNode(int index) {
+        if (branch != null) {
+            branch.beforeChange();
+        }
+
         final T removed = super.remove(index);
 
         if (removed != null && branch != null) {
@@ -268,6 +353,7 @@ public class DefaultNodeList<T extends Node> extends HeadList<T> implements Node
     void clearNodes() {
         // must be before super.clear()
         if (branch != null) {
+            branch.beforeChange();
             branch.contentRemoved();
         }
 
@@ -278,6 +364,80 @@ public class DefaultNodeList<T extends Node> extends HeadList<T> implements Node
         return modCount;
     }
 
+    /**
+     * Attaches a list of fresh copies to a copy of their element without firing the hooks; the copies have neither
+     * parent nor document yet, so setting the parent is all the hooks would do
+     *
+     * @param parent the copy of the element
+     * @return this list
+     */
+    DefaultNodeList<T> adopt(AbstractElement parent) {
+        this.branch = parent;
+        final AbstractDocument owner = parent.documentToNotify();
+
+        for (int i = 0, size = size(); i < size; i++) {
+            final T node = get(i);
+            node.setParent(parent);
+
+            if (owner != null) {
+                AbstractElement.adoptOwner(node, owner);
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * Open-addressed table of nodes hashed by identity with their first positions in a list
+     */
+    private static final class Positions {
+        final int modCount;
+        private final Object[] nodes;
+        private final int[] indexes;
+
+        Positions(DefaultNodeList<?> list) {
+            final int size = list.size();
+            // keep load factor at most 1/2
+            final int capacity = Integer.highestOneBit(size * 4 - 1);
+            final int mask = capacity - 1;
+
+            this.modCount = list.modCount();
+            this.nodes = new Object[capacity];
+            this.indexes = new int[capacity];
+
+            for (int i = 0; i < size; i++) {
+                final Object node = list.get(i);
+                int slot = hash(node) & mask;
+
+                while (nodes[slot] != null && nodes[slot] != node) {
+                    slot = (slot + 1) & mask;
+                }
+
+                if (nodes[slot] == null) {
+                    nodes[slot] = node;
+                    indexes[slot] = i;
+                }
+            }
+        }
+
+        int indexOf(Object node) {
+            final int mask = nodes.length - 1;
+
+            for (int slot = hash(node) & mask; nodes[slot] != null; slot = (slot + 1) & mask) {
+                if (nodes[slot] == node) {
+                    return indexes[slot];
+                }
+            }
+
+            return -1;
+        }
+
+        private static int hash(Object node) {
+            final int h = System.identityHashCode(node);
+            return h ^ (h >>> 16);
+        }
+    }
+
     private void attachBranch(AbstractBranch parent) {
         this.branch = parent;
 
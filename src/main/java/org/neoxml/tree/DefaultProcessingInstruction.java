@@ -67,24 +67,32 @@ public class DefaultProcessingInstruction extends org.neoxml.tree.FlyweightProce
 
     @Override
     public void setTarget(String target) {
+        beforeChange();
         this.target = target;
+        invalidateStructuralHash();
     }
 
     @Override
     public void setText(String text) {
+        beforeChange();
         this.text = text;
         this.values = parseValues(text);
+        invalidateStructuralHash();
     }
 
     @Override
     public void setValues(Map<String, String> values) {
+        beforeChange();
         this.values = values;
         this.text = toString(values);
+        invalidateStructuralHash();
     }
 
     @Override
     public void setValue(String name, String value) {
+        beforeChange();
         values.put(name, value);
+        invalidateStructuralHash();
     }
 
     @Override
@@ -45,7 +45,9 @@ public class DefaultText extends FlyweightText {
 
     @Override
     public void setText(String text) {
+        beforeChange();
         this.text = text;
+        invalidateStructuralHash();
     }
 
     @Override
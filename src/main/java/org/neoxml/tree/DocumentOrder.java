@@ -0,0 +1,270 @@
+package org.neoxml.tree;
+
+import org.neoxml.Branch;
+import org.neoxml.Document;
+import org.neoxml.Element;
+import org.neoxml.Node;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * <p>
+ * <code>DocumentOrder</code> numbers all nodes of a document in document order, so nodes can be compared and sorted
+ * without walking their ancestors and scanning siblings. Attributes of an element are numbered after the element and
+ * before its content. Each node also remembers the number of its last descendant, so ancestry is tested in constant
+ * time as well.
+ * </p>
+ * <p>
+ * The numbering of an {@link AbstractDocument} is built on first use and dropped when any node is added to or removed
+ * from the document, see {@link #of(Document)}.
+ * </p>
+ */
+public final class DocumentOrder implements Comparator<Node> {
+    private final Node[] nodes;
+    private final int[] positions;
+    private final int[] ends;
+    private final int mask;
+
+    private DocumentOrder(Node[] nodes, int[] positions, int[] ends, int mask) {
+        this.nodes = nodes;
+        this.positions = positions;
+        this.ends = ends;
+        this.mask = mask;
+    }
+
+    /**
+     * Returns the numbering of given document, it is cached by documents extending {@link AbstractDocument}
+     *
+     * @param document the document
+     * @return numbering of the document
+     */
+    public static DocumentOrder of(Document document) {
+        if (document instanceof AbstractDocument) {
+            return ((AbstractDocument) document).documentOrder();
+        }
+
+        return build(document);
+    }
+
+    /**
+     * Numbers given branch and all its descendants
+     *
+     * @param root the root of numbered nodes
+     * @return numbering of the nodes
+     */
+    public static DocumentOrder build(Branch root) {
+        final Numbering numbering = new Numbering();
+
+        Branch[] branches = new Branch[16];
+        int[] starts = new int[16];
+        int[] indexes = new int[16];
+        int depth = 1;
+
+        branches[0] = root;
+        starts[0] = numbering.add(root);
+
+        while (depth > 0) {
+            final int top = depth - 1;
+            final Branch branch = branches[top];
+
+            if (indexes[top] >= branch.nodeCount()) {
+                numbering.close(starts[top]);
+                branches[top] = null;
+                depth--;
+                continue;
+            }
+
+            final Node node = branch.node(indexes[top]++);
+            final int position = numbering.add(node);
+
+            if (node instanceof Element) {
+                if (depth == branches.length) {
+                    branches = Arrays.copyOf(branches, depth * 2);
+                    starts = Arrays.copyOf(starts, depth * 2);
+                    indexes = Arrays.copyOf(indexes, depth * 2);
+                }
+
+                branches[depth] = (Element) node;
+                starts[depth] = position;
+                indexes[depth] = 0;
+                depth++;
+            }
+        }
+
+        return numbering.toDocumentOrder();
+    }
+
+    /**
+     * Returns position of given node in document order
+     *
+     * @param node the node
+     * @return position of the node or -1 if the node is not numbered
+     */
+    public int position(Node node) {
+        final int slot = slot(node);
+        return slot >= 0 ? positions[slot] : -1;
+    }
+
+    /**
+     * Tests if the first node is an ancestor of the other one
+     *
+     * @param ancestor the supposed ancestor
+     * @param node     the node
+     * @return true if both nodes are numbered and ancestor contains the node
+     */
+    public boolean isAncestor(Node ancestor, Node node) {
+        final int slot = slot(ancestor);
+        final int position = position(node);
+
+        return slot >= 0 && position >= 0 && positions[slot] < position && position <= ends[slot];
+    }
+
+    /**
+     * Selects descendants of given node from a list of nodes sorted in document order
+     *
+     * @param ancestor the node whose descendants are selected
+     * @param nodes    numbered nodes in document order
+     * @param <T>      type of the nodes
+     * @return view of the nodes which are descendants of the ancestor
+     */
+    public <T extends Node> List<T> descendants(Node ancestor, List<T> nodes) {
+        final int slot = slot(ancestor);
+
+        if (slot < 0) {
+            return nodes.subList(0, 0);
+        }
+
+        final int from = search(nodes, positions[slot] + 1);
+        final int to = search(nodes, ends[slot] + 1);
+
+        return nodes.subList(from, to);
+    }
+
+    /**
+     * Compares nodes by document order, nodes which are not numbered follow all numbered ones
+     */
+    @Override
+    public int compare(Node n1, Node n2) {
+        return Integer.compareUnsigned(position(n1), position(n2));
+    }
+
+    /**
+     * Sorts given nodes in document order
+     *
+     * @param list nodes to sort
+     */
+    public void sort(List<? extends Node> list) {
+        list.sort(this);
+    }
+
+    /**
+     * @return index of the first node whose position is not lower than given one
+     */
+    private int search(List<? extends Node> nodes, int position) {
+        int low = 0;
+        int high = nodes.size();
+
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+
+            if (Integer.compareUnsigned(position(nodes.get(middle)), position) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    private int slot(Node node) {
+        if (node == null) {
+            return -1;
+        }
+
+        for (int slot = hash(node) & mask; ; slot = (slot + 1) & mask) {
+            final Node candidate = nodes[slot];
+
+            if (candidate == node) {
+                return slot;
+            } else if (candidate == null) {
+                return -1;
+            }
+        }
+    }
+
+    private static int hash(Node node) {
+        final int h = System.identityHashCode(node);
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Nodes in document order with positions of their last descendants
+     */
+    private static final class Numbering {
+        private Node[] order = new Node[64];
+        private int[] ends = new int[64];
+        private int size;
+
+        /**
+         * Adds the node and its attributes
+         *
+         * @return position of the node
+         */
+        int add(Node node) {
+            final int position = append(node);
+
+            if (node instanceof Element) {
+                final Element element = (Element) node;
+
+                for (int i = 0, count = element.attributeCount(); i < count; i++) {
+                    append(element.attribute(i));
+                }
+            }
+
+            return position;
+        }
+
+        /**
+         * Called when all descendants of the node at given position were added
+         */
+        void close(int position) {
+            ends[position] = size - 1;
+        }
+
+        DocumentOrder toDocumentOrder() {
+            final int capacity = Integer.highestOneBit(size * 2 - 1) << 1;
+            final int mask = capacity - 1;
+            final Node[] nodes = new Node[capacity];
+            final int[] positions = new int[capacity];
+            final int[] subtreeEnds = new int[capacity];
+
+            for (int i = 0; i < size; i++) {
+                int slot = hash(order[i]) & mask;
+
+                while (nodes[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+
+                nodes[slot] = order[i];
+                positions[slot] = i;
+                subtreeEnds[slot] = ends[i];
+            }
+
+            return new DocumentOrder(nodes, positions, subtreeEnds, mask);
+        }
+
+        private int append(Node node) {
+            if (size == order.length) {
+                order = Arrays.copyOf(order, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+            }
+
+            order[size] = node;
+            ends[size] = size;
+            return size++;
+        }
+    }
+}
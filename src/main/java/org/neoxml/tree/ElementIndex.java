@@ -0,0 +1,119 @@
+package org.neoxml.tree;
+
+import org.neoxml.Branch;
+import org.neoxml.Element;
+import org.neoxml.Node;
+import org.neoxml.QName;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ * <code>ElementIndex</code> maps qualified names to all descendant elements of a branch with that name. The elements
+ * of each name are kept in document order.
+ * </p>
+ * <p>
+ * The index is immutable, {@link AbstractDocument} builds it on first use and drops it when an element is added,
+ * removed or renamed anywhere in the document.
+ * </p>
+ */
+final class ElementIndex {
+    private final Map<QName, List<Element>> elements;
+
+    private ElementIndex(Map<QName, List<Element>> elements) {
+        this.elements = elements;
+    }
+
+    /**
+     * Indexes all descendant elements of given branch
+     *
+     * @param root the indexed branch
+     * @return index of the descendants
+     */
+    static ElementIndex build(Branch root) {
+        final Map<QName, List<Element>> elements = new HashMap<>();
+
+        forEachDescendant(root, element -> elements.computeIfAbsent(element.getQName(), qName -> new ArrayList<>())
+                .add(element));
+
+        for (Map.Entry<QName, List<Element>> entry : elements.entrySet()) {
+            final ArrayList<Element> list = (ArrayList<Element>) entry.getValue();
+            list.trimToSize();
+            entry.setValue(Collections.unmodifiableList(list));
+        }
+
+        return new ElementIndex(elements);
+    }
+
+    /**
+     * Collects descendant elements of given name without building an index
+     *
+     * @param root  the searched branch
+     * @param qName the name of elements
+     * @return elements with given name in document order
+     */
+    static List<Element> select(Branch root, QName qName) {
+        final List<Element> result = new ArrayList<>();
+
+        forEachDescendant(root, element -> {
+            if (qName.equals(element.getQName())) {
+                result.add(element);
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * Passes all descendant elements of given branch to the action in document order
+     */
+    static void forEachDescendant(Branch root, Consumer<Element> action) {
+        Branch[] branches = new Branch[16];
+        int[] indexes = new int[16];
+        int depth = 1;
+
+        branches[0] = root;
+
+        while (depth > 0) {
+            final int top = depth - 1;
+            final Branch branch = branches[top];
+
+            if (indexes[top] >= branch.nodeCount()) {
+                branches[top] = null;
+                depth--;
+                continue;
+            }
+
+            final Node node = branch.node(indexes[top]++);
+
+            if (node instanceof Element) {
+                final Element element = (Element) node;
+                action.accept(element);
+
+                if (depth == branches.length) {
+                    branches = Arrays.copyOf(branches, depth * 2);
+                    indexes = Arrays.copyOf(indexes, depth * 2);
+                }
+
+                branches[depth] = element;
+                indexes[depth] = 0;
+                depth++;
+            }
+        }
+    }
+
+    /**
+     * @param qName the name of elements
+     * @return unmodifiable list of elements with given name in document order
+     */
+    List<Element> get(QName qName) {
+        final List<Element> list = elements.get(qName);
+        return list != null ? list : Collections.emptyList();
+    }
+}
@@ -0,0 +1,120 @@
+package org.neoxml.tree;
+
+import org.neoxml.Namespace;
+import org.neoxml.Node;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * <code>NamespaceScope</code> holds the namespaces in scope of an element, mapped by their prefixes and by their URIs.
+ * It is immutable, an element which binds no new prefix shares the scope of its parent, otherwise the maps of the
+ * parent are copied and the bindings of the element are laid over them.
+ * </p>
+ * <p>
+ * Scopes are cached by elements. An element caches its scope only after its parent did, so a change which may affect
+ * scopes already computed, such as adding or removing a namespace, renaming an element or moving it, forgets the
+ * cached scopes of the changed element and of its descendants only.
+ * </p>
+ */
+final class NamespaceScope {
+    static final NamespaceScope EMPTY = new NamespaceScope(Collections.emptyMap(), Collections.emptyMap());
+
+    private final Map<String, Namespace> prefixes;
+    private final Map<String, Namespace> uris;
+
+    private NamespaceScope(Map<String, Namespace> prefixes, Map<String, Namespace> uris) {
+        this.prefixes = prefixes;
+        this.uris = uris;
+    }
+
+    /**
+     * Computes scope of an element
+     *
+     * @param parent    scope of the parent, {@link #EMPTY} for elements without parent
+     * @param namespace the namespace of the element
+     * @param content   the content of the element, namespace nodes are its declarations
+     * @return the scope, it is the parent scope if the element binds nothing new
+     */
+    static NamespaceScope of(NamespaceScope parent, Namespace namespace, List<Node> content) {
+        Map<String, Namespace> prefixes = null;
+        Map<String, Namespace> uris = null;
+
+        // the namespace of the element takes precedence over its declarations
+        final Map<String, Namespace> localPrefixes = new LinkedHashMap<>(4);
+        final Map<String, Namespace> localURIs = new LinkedHashMap<>(4);
+        bind(localPrefixes, localURIs, namespace);
+
+        for (int i = 0, size = content.size(); i < size; i++) {
+            final Node node = content.get(i);
+
+            if (node instanceof Namespace) {
+                bind(localPrefixes, localURIs, (Namespace) node);
+            }
+        }
+
+        for (Map.Entry<String, Namespace> entry : localPrefixes.entrySet()) {
+            if (parent.prefixes.get(entry.getKey()) != entry.getValue()) {
+                if (prefixes == null) {
+                    prefixes = new LinkedHashMap<>(parent.prefixes);
+                }
+
+                prefixes.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        for (Map.Entry<String, Namespace> entry : localURIs.entrySet()) {
+            if (parent.uris.get(entry.getKey()) != entry.getValue()) {
+                if (uris == null) {
+                    uris = new LinkedHashMap<>(parent.uris);
+                }
+
+                uris.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        if (prefixes == null && uris == null) {
+            return parent;
+        }
+
+        return new NamespaceScope(prefixes != null ? prefixes : parent.prefixes,
+                uris != null ? uris : parent.uris);
+    }
+
+    private static void bind(Map<String, Namespace> prefixes, Map<String, Namespace> uris, Namespace namespace) {
+        prefixes.putIfAbsent(namespace.getPrefix(), namespace);
+
+        final String uri = namespace.getURI();
+
+        if (uri != null && uri.length() > 0) {
+            uris.putIfAbsent(uri, namespace);
+        }
+    }
+
+    /**
+     * @param prefix the prefix
+     * @return namespace bound to the prefix or null
+     */
+    Namespace forPrefix(String prefix) {
+        return prefixes.get(prefix);
+    }
+
+    /**
+     * @param uri the namespace URI
+     * @return the nearest namespace with the URI or null
+     */
+    Namespace forURI(String uri) {
+        return uris.get(uri);
+    }
+
+    /**
+     * @return namespaces bound to prefixes
+     */
+    Collection<Namespace> namespaces() {
+        return Collections.unmodifiableCollection(prefixes.values());
+    }
+}
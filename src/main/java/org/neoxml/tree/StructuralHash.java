@@ -0,0 +1,152 @@
+package org.neoxml.tree;
+
+import org.neoxml.Attribute;
+import org.neoxml.Element;
+import org.neoxml.Entity;
+import org.neoxml.Namespace;
+import org.neoxml.Node;
+import org.neoxml.ProcessingInstruction;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * <code>StructuralHash</code> computes the 64-bit hashes returned by {@link Node#structuralHash()}. A hash combines
+ * the type of a node, its qualified name and namespace URI, its attributes in order and its text; a branch adds the
+ * hashes of its content in order, namespace declarations included. Strings are hashed by their characters, so hashes
+ * are stable across runs.
+ * </p>
+ */
+final class StructuralHash {
+    private static final long SEED = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+
+    private StructuralHash() {
+    }
+
+    /**
+     * Computes the hash of a subtree without recursion. Hashes of elements are cached, and subtrees of elements with a
+     * cached hash are not walked.
+     *
+     * @param root the root of the subtree
+     * @return the hash
+     */
+    static long of(AbstractBranch root) {
+        final TreeWalker walker = new TreeWalker(root);
+        long[] hashes = new long[16];
+        long result = 0;
+
+        while (walker.hasNext()) {
+            final int event = walker.next();
+            final Node node = walker.getNode();
+            final int depth = walker.getDepth();
+
+            if (event == TreeWalker.NODE) {
+                hashes[depth] = mix(hashes[depth], node.structuralHash());
+                continue;
+            }
+
+            final long cached = depth > 0 && node instanceof AbstractBranch
+                    ? ((AbstractBranch) node).cachedStructuralHash() : 0;
+
+            if (event == TreeWalker.START) {
+                if (depth + 1 == hashes.length) {
+                    hashes = Arrays.copyOf(hashes, hashes.length * 2);
+                }
+
+                if (cached != 0) {
+                    walker.skipContent();
+                } else {
+                    hashes[depth + 1] = header(node);
+                }
+
+                continue;
+            }
+
+            long hash = cached;
+
+            if (hash == 0) {
+                // 0 stands for a hash which is not known
+                hash = mix(hashes[depth + 1], PRIME);
+                hash = hash != 0 ? hash : PRIME;
+
+                if (node instanceof AbstractElement) {
+                    ((AbstractElement) node).cacheStructuralHash(hash);
+                }
+            }
+
+            if (depth > 0) {
+                hashes[depth] = mix(hashes[depth], hash);
+            } else {
+                result = hash;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return the hash of a node which is not a branch
+     */
+    static long leaf(Node node) {
+        long hash = mix(SEED, node.getNodeType());
+
+        if (node instanceof Attribute) {
+            final Attribute attribute = (Attribute) node;
+            hash = name(hash, attribute.getQualifiedName(), attribute.getNamespaceURI());
+            return mix(hash, hash(attribute.getValue()));
+        }
+
+        if (node instanceof Namespace) {
+            hash = mix(hash, hash(((Namespace) node).getPrefix()));
+            return mix(hash, hash(((Namespace) node).getURI()));
+        }
+
+        if (node instanceof ProcessingInstruction || node instanceof Entity) {
+            hash = mix(hash, hash(node.getName()));
+        }
+
+        return mix(hash, hash(node.getText()));
+    }
+
+    /**
+     * @return the hash of a branch without its content
+     */
+    private static long header(Node node) {
+        long hash = mix(SEED, node.getNodeType());
+
+        if (node instanceof Element) {
+            final Element element = (Element) node;
+            hash = name(hash, element.getQualifiedName(), element.getNamespaceURI());
+
+            for (int i = 0, size = element.attributeCount(); i < size; i++) {
+                final Attribute attribute = element.attribute(i);
+                hash = name(hash, attribute.getQualifiedName(), attribute.getNamespaceURI());
+                hash = mix(hash, hash(attribute.getValue()));
+            }
+        }
+
+        return hash;
+    }
+
+    private static long name(long hash, String qualifiedName, String namespaceURI) {
+        return mix(mix(hash, hash(qualifiedName)), hash(namespaceURI));
+    }
+
+    private static long hash(String text) {
+        long hash = SEED;
+
+        if (text != null) {
+            for (int i = 0, length = text.length(); i < length; i++) {
+                hash = (hash ^ text.charAt(i)) * PRIME;
+            }
+        }
+
+        return hash;
+    }
+
+    private static long mix(long hash, long value) {
+        final long mixed = (hash ^ value) * 0x9e3779b97f4a7c15L;
+        return mixed ^ (mixed >>> 29);
+    }
+}
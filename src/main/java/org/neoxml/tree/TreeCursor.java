@@ -0,0 +1,230 @@
+package org.neoxml.tree;
+
+import org.neoxml.Branch;
+import org.neoxml.Document;
+import org.neoxml.Element;
+import org.neoxml.Node;
+import org.neoxml.QName;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * <code>TreeCursor</code> is a mutable position in a tree. It moves between parents, children and siblings without
+ * allocating node lists, predicates or iterators; content is read by index and positions of the ancestors the cursor
+ * descended from are kept on a stack, so moving back up needs no lookup either. A single cursor can be reused for any
+ * number of walks by {@link #moveTo(Node)}.
+ * </p>
+ * <p>
+ * The parent of the root element is its document. Every move returns false and leaves the cursor where it was if
+ * there is no such node. Content of the ancestors must not change before the position of the cursor while it moves.
+ * </p>
+ */
+public final class TreeCursor {
+    private Node node;
+
+    /**
+     * Parent of the current node, null for a document or a detached node
+     */
+    private Branch parent;
+
+    /**
+     * Index of the current node in the content of its parent, -1 if it is not known yet
+     */
+    private int index;
+
+    /**
+     * Parents and indexes of the ancestors the cursor descended from
+     */
+    private Branch[] branches = new Branch[16];
+    private int[] indexes = new int[16];
+    private int top = -1;
+
+    public TreeCursor() {
+    }
+
+    public TreeCursor(Node node) {
+        moveTo(node);
+    }
+
+    /**
+     * Moves the cursor to given node
+     *
+     * @param node the node
+     * @return this cursor
+     */
+    public TreeCursor moveTo(Node node) {
+        Arrays.fill(branches, 0, top + 1, null);
+
+        this.node = node;
+        this.parent = node != null ? parentOf(node) : null;
+        this.index = -1;
+        this.top = -1;
+        return this;
+    }
+
+    /**
+     * @return the node at the cursor
+     */
+    public Node getNode() {
+        return node;
+    }
+
+    public boolean parent() {
+        if (parent == null) {
+            return false;
+        }
+
+        node = parent;
+
+        if (top >= 0) {
+            parent = branches[top];
+            index = indexes[top];
+            branches[top--] = null;
+        } else {
+            parent = parentOf(node);
+            index = -1;
+        }
+
+        return true;
+    }
+
+    public boolean firstChild() {
+        if (node instanceof Branch && ((Branch) node).nodeCount() > 0) {
+            descend((Branch) node, 0);
+            return true;
+        }
+
+        return false;
+    }
+
+    public boolean lastChild() {
+        if (node instanceof Branch) {
+            final int count = ((Branch) node).nodeCount();
+
+            if (count > 0) {
+                descend((Branch) node, count - 1);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    public boolean nextSibling() {
+        // attributes and namespaces of an element are not in its content
+        if (parent != null && index() >= 0) {
+            final int next = index + 1;
+
+            if (next < parent.nodeCount()) {
+                index = next;
+                node = parent.node(next);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    public boolean previousSibling() {
+        if (parent != null && index() >= 0) {
+            final int previous = index - 1;
+
+            if (previous >= 0) {
+                index = previous;
+                node = parent.node(previous);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Moves to the first child element of given name
+     *
+     * @param name the name of the element, or null for any element
+     * @return true if the cursor moved
+     */
+    public boolean firstChildElement(QName name) {
+        if (node instanceof Branch) {
+            final Branch branch = (Branch) node;
+            final int found = nextElement(branch, 0, name);
+
+            if (found >= 0) {
+                descend(branch, found);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Moves to the next sibling element of given name
+     *
+     * @param name the name of the element, or null for any element
+     * @return true if the cursor moved
+     */
+    public boolean nextSiblingElement(QName name) {
+        if (parent != null && index() >= 0) {
+            final int found = nextElement(parent, index + 1, name);
+
+            if (found >= 0) {
+                index = found;
+                node = parent.node(found);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void descend(Branch branch, int childIndex) {
+        if (++top == branches.length) {
+            branches = Arrays.copyOf(branches, top * 2);
+            indexes = Arrays.copyOf(indexes, top * 2);
+        }
+
+        branches[top] = parent;
+        indexes[top] = index;
+
+        parent = branch;
+        index = childIndex;
+        node = branch.node(childIndex);
+    }
+
+    private int index() {
+        if (index < 0) {
+            index = parent.indexOf(node);
+        }
+
+        return index;
+    }
+
+    private static int nextElement(Branch branch, int from, QName name) {
+        for (int i = from, size = branch.nodeCount(); i < size; i++) {
+            final Node child = branch.node(i);
+
+            if (child instanceof Element && (name == null || name.equals(((Element) child).getQName()))) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Parent as navigated by the cursor, the root element has the document as its parent
+     */
+    private static Branch parentOf(Node node) {
+        final Element element = node.getParent();
+
+        if (element != null) {
+            return element;
+        }
+
+        final Document document = node.getDocument();
+        return document != node ? document : null;
+    }
+}
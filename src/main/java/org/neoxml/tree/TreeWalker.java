@@ -0,0 +1,154 @@
+package org.neoxml.tree;
+
+import org.neoxml.Branch;
+import org.neoxml.Element;
+import org.neoxml.Node;
+
+/**
+ * <p>
+ * <code>TreeWalker</code> walks a subtree in document order without recursion. It moves a {@link TreeCursor}, which
+ * keeps ancestors of the current node and positions within their content on an explicit stack, so the depth of the
+ * tree costs heap rather than call stack. Elements are reported by {@link #START} and {@link #END} events, other
+ * nodes of the content by a single {@link #NODE} event. Attributes are not walked.
+ * </p>
+ * <p>
+ * Content is accessed by index, so nodes may be added or removed behind the current node of an ancestor while
+ * walking, but not before it.
+ * </p>
+ */
+public final class TreeWalker {
+    /**
+     * Event of entering a branch, its content follows unless {@link #skipContent()} is called
+     */
+    public static final int START = 1;
+
+    /**
+     * Event of leaving a branch
+     */
+    public static final int END = 2;
+
+    /**
+     * Event of a node which is not a branch
+     */
+    public static final int NODE = 3;
+
+    private final TreeCursor cursor = new TreeCursor();
+
+    private Branch root;
+    private int event;
+    private int depth;
+
+    /**
+     * False if the content of the started branch is skipped
+     */
+    private boolean descend;
+
+    /**
+     * True if the following siblings of the current node are skipped
+     */
+    private boolean skipSiblings;
+
+    public TreeWalker(Branch root) {
+        reset(root);
+    }
+
+    /**
+     * Starts walking another subtree, the cursor is reused
+     *
+     * @param root the root of the subtree
+     * @return this walker
+     */
+    public TreeWalker reset(Branch root) {
+        this.root = root;
+        this.event = 0;
+        this.depth = -1;
+        this.skipSiblings = false;
+        return this;
+    }
+
+    /**
+     * @return true if there is any event left
+     */
+    public boolean hasNext() {
+        return root != null && !(event == END && depth == 0);
+    }
+
+    /**
+     * Moves to the next node
+     *
+     * @return the event, {@link #START}, {@link #END} or {@link #NODE}
+     * @throws IllegalStateException if the walk is over
+     */
+    public int next() {
+        if (!hasNext()) {
+            throw new IllegalStateException("There are no more nodes to walk");
+        }
+
+        if (event == 0) {
+            cursor.moveTo(root);
+            depth = 0;
+            descend = true;
+            return event = START;
+        }
+
+        if (event == START) {
+            if (descend && cursor.firstChild()) {
+                depth++;
+                return started();
+            }
+
+            return event = END;
+        }
+
+        if (!skipSiblings && cursor.nextSibling()) {
+            return started();
+        }
+
+        skipSiblings = false;
+        cursor.parent();
+        depth--;
+        return event = END;
+    }
+
+    /**
+     * @return the node of the last event
+     */
+    public Node getNode() {
+        return cursor.getNode();
+    }
+
+    /**
+     * @return depth of the node of the last event, 0 for the root
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Skips the content of the branch just started, the next event is its end
+     */
+    public void skipContent() {
+        if (event == START) {
+            descend = false;
+        }
+    }
+
+    /**
+     * Skips the following siblings of the node of the last {@link #NODE} or {@link #END} event, the next event is the
+     * end of its parent
+     */
+    public void skipSiblings() {
+        if ((event == NODE || event == END) && depth > 0) {
+            skipSiblings = true;
+        }
+    }
+
+    private int started() {
+        if (cursor.getNode() instanceof Element) {
+            descend = true;
+            return event = START;
+        }
+
+        return event = NODE;
+    }
+}
@@ -0,0 +1,335 @@
+package org.neoxml.util;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Array backed list which stores its items directly in a single array, without any further wrapper.
+ * <p>
+ * Small lists grow one step at a time up to {@link #SMALL_CAPACITY} items (which is the usual number of children and
+ * attributes of an element), larger lists grow by half of their size.
+ * Array is allocated lazily, so an empty list costs just this object.
+ *
+ * @param <T> type of items
+ */
+public class CompactList<T> extends AbstractList<T> implements RandomAccess, Cloneable, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Capacity up to which the backing array grows exactly by the needed size
+     */
+    protected static final int SMALL_CAPACITY = 4;
+
+    private static final Object[] EMPTY_ELEMENTS = {};
+
+    private Object[] elements;
+    private int size;
+
+    public CompactList() {
+        super();
+        this.elements = EMPTY_ELEMENTS;
+    }
+
+    public CompactList(int initialCapacity) {
+        super();
+        this.elements = initialCapacity > 0 ? new Object[initialCapacity] : EMPTY_ELEMENTS;
+    }
+
+    protected CompactList(Collection<? extends T> items) {
+        super();
+        final Object[] array = items.toArray();
+        this.size = array.length;
+        this.elements = size > 0 ? Arrays.copyOf(array, size, Object[].class) : EMPTY_ELEMENTS;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        if (index >= size) {
+            throw indexOutOfBounds(index);
+        }
+        return (T) elements[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean add(T element) {
+        modCount++;
+
+        if (size == elements.length) {
+            grow(size + 1);
+        }
+
+        elements[size++] = element;
+        return true;
+    }
+
+    @Override
+    public void add(int index, T element) {
+        if (index > size || index < 0) {
+            throw indexOutOfBounds(index);
+        }
+
+        modCount++;
+
+        if (size == elements.length) {
+            grow(size + 1);
+        }
+
+        System.arraycopy(elements, index, elements, index + 1, size - index);
+        elements[index] = element;
+        size++;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T set(int index, T element) {
+        if (index >= size) {
+            throw indexOutOfBounds(index);
+        }
+
+        final T old = (T) elements[index];
+        elements[index] = element;
+        return old;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T remove(int index) {
+        if (index >= size) {
+            throw indexOutOfBounds(index);
+        }
+
+        modCount++;
+
+        final T old = (T) elements[index];
+        fastRemove(index);
+        return old;
+    }
+
+    @Override
+    public boolean remove(Object element) {
+        final int index = indexOf(element);
+
+        if (index >= 0) {
+            modCount++;
+            fastRemove(index);
+            return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public int indexOf(Object element) {
+        final Object[] array = elements;
+
+        for (int i = 0, n = size; i < n; i++) {
+            if (Objects.equals(element, array[i])) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object element) {
+        final Object[] array = elements;
+
+        for (int i = size - 1; i >= 0; i--) {
+            if (Objects.equals(element, array[i])) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    @Override
+    public boolean contains(Object element) {
+        return indexOf(element) >= 0;
+    }
+
+    @Override
+    public void clear() {
+        modCount++;
+        Arrays.fill(elements, 0, size, null);
+        size = 0;
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super T> filter) {
+        Objects.requireNonNull(filter);
+
+        final int expectedModCount = modCount;
+        final Object[] array = elements;
+        int newSize = 0;
+
+        for (int i = 0, n = size; i < n; i++) {
+            @SuppressWarnings("unchecked")
+            final T element = (T) array[i];
+
+            if (!filter.test(element)) {
+                array[newSize++] = element;
+            }
+        }
+
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+
+        if (newSize == size) {
+            return false;
+        }
+
+        Arrays.fill(array, newSize, size, null);
+        size = newSize;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(Consumer<? super T> action) {
+        Objects.requireNonNull(action);
+
+        final int expectedModCount = modCount;
+        final Object[] array = elements;
+
+        for (int i = 0, n = size; i < n && modCount == expectedModCount; i++) {
+            action.accept((T) array[i]);
+        }
+
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    @Override
+    public Object[] toArray() {
+        return Arrays.copyOf(elements, size);
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Itr();
+    }
+
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity > elements.length) {
+            elements = Arrays.copyOf(elements, minCapacity);
+        }
+    }
+
+    public void trimToSize() {
+        if (size < elements.length) {
+            elements = size > 0 ? Arrays.copyOf(elements, size) : EMPTY_ELEMENTS;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public CompactList<T> clone() {
+        try {
+            CompactList<T> answer = (CompactList<T>) super.clone();
+            answer.elements = size > 0 ? Arrays.copyOf(elements, size) : EMPTY_ELEMENTS;
+            answer.modCount = 0;
+            return answer;
+        } catch (CloneNotSupportedException e) {
+            // this shouldn't happen, since we are Cloneable
+            throw new InternalError();
+        }
+    }
+
+    private void grow(int minCapacity) {
+        final int oldCapacity = elements.length;
+        final int newCapacity;
+
+        if (oldCapacity < SMALL_CAPACITY) {
+            newCapacity = minCapacity;
+        } else {
+            newCapacity = Math.max(minCapacity, oldCapacity + (oldCapacity >> 1));
+        }
+
+        elements = Arrays.copyOf(elements, newCapacity);
+    }
+
+    private void fastRemove(int index) {
+        final int moved = size - index - 1;
+
+        if (moved > 0) {
+            System.arraycopy(elements, index + 1, elements, index, moved);
+        }
+
+        elements[--size] = null;
+    }
+
+    private IndexOutOfBoundsException indexOutOfBounds(int index) {
+        return new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+
+    private final class Itr implements Iterator<T> {
+        private int cursor;
+        private int lastReturned = -1;
+        private int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            return cursor < size;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            checkForComodification();
+
+            final int i = cursor;
+
+            if (i >= size) {
+                throw new NoSuchElementException();
+            }
+
+            cursor = i + 1;
+            return (T) elements[lastReturned = i];
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned < 0) {
+                throw new IllegalStateException();
+            }
+
+            checkForComodification();
+
+            CompactList.this.remove(lastReturned);
+            cursor = lastReturned;
+            lastReturned = -1;
+            expectedModCount = modCount;
+        }
+
+        private void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+}
@@ -0,0 +1,565 @@
+package org.neoxml.util;
+
+import org.neoxml.Attribute;
+import org.neoxml.Branch;
+import org.neoxml.Document;
+import org.neoxml.DocumentException;
+import org.neoxml.DocumentHelper;
+import org.neoxml.Element;
+import org.neoxml.ElementHandler;
+import org.neoxml.ElementPath;
+import org.neoxml.Entity;
+import org.neoxml.Namespace;
+import org.neoxml.Node;
+import org.neoxml.ProcessingInstruction;
+import org.neoxml.io.SAXReader;
+import org.xml.sax.InputSource;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * <code>NodeDiff</code> computes an edit script which turns one document into another, see {@link NodeEdit} for the
+ * operations and {@link NodePatch} for applying them.
+ * </p>
+ * <p>
+ * Subtrees are fingerprinted by {@link Node#structuralHash()}. Children of two branches are matched by equal
+ * fingerprints first, such subtrees are unchanged and are never looked into again. The remaining children are paired
+ * by node type and name in document order; paired elements are compared recursively, other paired nodes are updated.
+ * Children left unpaired are deleted or inserted, and matched children out of order are moved within their parent, as
+ * few of them as the longest subsequence kept in order allows. Moving a node to another parent is reported as a
+ * delete and an insert. Fingerprints cost a walk of the trees at most, and nothing for elements with a cached hash;
+ * the rest is <code>O(n log n)</code> in the number of children of a branch.
+ * </p>
+ * <p>
+ * Documents too large for two trees can be compared with {@link #diff(Document, SAXReader, InputSource)}, which
+ * streams the new document: children of its root element are matched one by one as they are parsed, and only those
+ * which changed are kept.
+ * </p>
+ */
+public final class NodeDiff {
+    private final List<NodeEdit> edits = new ArrayList<>();
+
+    /**
+     * Pairs of branches whose content is compared yet
+     */
+    private final Deque<Task> tasks = new ArrayDeque<>();
+
+    /**
+     * Root element of the streamed document and the diff of its content built while parsing
+     */
+    private Element streamedRoot;
+    private ContentDiff streamedContent;
+
+    private NodeDiff() {
+    }
+
+    /**
+     * Compares two documents
+     *
+     * @param oldDocument the document the edits apply to
+     * @param newDocument the document the edits produce
+     * @return the edit script
+     */
+    public static List<NodeEdit> diff(Document oldDocument, Document newDocument) {
+        final NodeDiff diff = new NodeDiff();
+        diff.tasks.push(new Task(oldDocument, newDocument, ""));
+        diff.run();
+        return diff.edits;
+    }
+
+    /**
+     * Compares a document to a document being parsed. Children of the new root element are released as soon as they
+     * are matched, so only the old document and the changed subtrees are held in memory. If the root elements differ
+     * in name the new document is kept whole.
+     *
+     * @param oldDocument the document the edits apply to
+     * @param reader      the reader parsing the new document
+     * @param newInput    the new document
+     * @return the edit script
+     * @throws DocumentException if the new document cannot be parsed
+     */
+    public static List<NodeEdit> diff(Document oldDocument, SAXReader reader, InputSource newInput)
+            throws DocumentException {
+        final NodeDiff diff = new NodeDiff();
+        final Document newDocument = reader.read(newInput, diff.new StreamingHandler(oldDocument.getRootElement()));
+
+        diff.tasks.push(new Task(oldDocument, newDocument, ""));
+        diff.run();
+        return diff.edits;
+    }
+
+    private void run() {
+        while (!tasks.isEmpty()) {
+            final Task task = tasks.pop();
+
+            if (task.newBranch == streamedRoot) {
+                streamedContent.finish(task.path);
+                streamedContent = null;
+            } else {
+                final ContentDiff content = new ContentDiff(task.oldBranch);
+
+                for (int i = 0, size = task.newBranch.nodeCount(); i < size; i++) {
+                    final Node node = task.newBranch.node(i);
+
+                    if (!(node instanceof Namespace)) {
+                        content.add(node);
+                    }
+                }
+
+                content.finish(task.path);
+            }
+        }
+    }
+
+    private void addEdit(NodeEdit.Type type, String path, String targetPath, Node node) {
+        edits.add(new NodeEdit(type, path, targetPath, node));
+    }
+
+    /**
+     * Nodes which can be paired for an update: elements of the same name, processing instructions of the same target,
+     * entities of the same name and other nodes of the same type
+     */
+    private static Object key(Node node) {
+        if (node instanceof Element) {
+            return ((Element) node).getQName();
+        }
+
+        if (node instanceof ProcessingInstruction) {
+            return "?" + node.getName();
+        }
+
+        if (node instanceof Entity) {
+            return "&" + node.getName();
+        }
+
+        return (int) node.getNodeType();
+    }
+
+    private static boolean sameHeader(Element oldElement, Element newElement) {
+        if (!oldElement.getQualifiedName().equals(newElement.getQualifiedName())
+                || oldElement.attributeCount() != newElement.attributeCount()) {
+            return false;
+        }
+
+        for (int i = 0, size = oldElement.attributeCount(); i < size; i++) {
+            final Attribute oldAttribute = oldElement.attribute(i);
+            final Attribute newAttribute = newElement.attribute(i);
+
+            if (!oldAttribute.getQName().equals(newAttribute.getQName())
+                    || !oldAttribute.getQualifiedName().equals(newAttribute.getQualifiedName())
+                    || !oldAttribute.getValue().equals(newAttribute.getValue())) {
+                return false;
+            }
+        }
+
+        final List<Namespace> oldNamespaces = oldElement.declaredNamespaces();
+        final List<Namespace> newNamespaces = newElement.declaredNamespaces();
+
+        if (oldNamespaces.size() != newNamespaces.size()) {
+            return false;
+        }
+
+        for (int i = 0, size = oldNamespaces.size(); i < size; i++) {
+            if (!oldNamespaces.get(i).equals(newNamespaces.get(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return a detached element with the name, attributes and namespace declarations of the element
+     */
+    private static Element header(Element element) {
+        final Element header = DocumentHelper.createElement(element.getQName());
+        header.setAttributes(element.attributes());
+
+        for (Namespace namespace : element.declaredNamespaces()) {
+            header.add(namespace);
+        }
+
+        return header;
+    }
+
+    private static Node detached(Node node) {
+        return node.getParent() != null || node.getDocument() != null ? node.clone() : node;
+    }
+
+    private static String step(String path, int index) {
+        return path + "/node()[" + (index + 1) + "]";
+    }
+
+    /**
+     * Matches the content of an old branch to nodes of a new one, which are added in order
+     */
+    private final class ContentDiff {
+        private final List<Node> oldNodes = new ArrayList<>();
+
+        /**
+         * First unmatched old node of each fingerprint, the next ones are chained by {@link #nextSame}
+         */
+        private final Map<Long, Integer> oldByFingerprint = new HashMap<>();
+        private final int[] nextSame;
+
+        /**
+         * Index of the old node matched to each new node, -1 for a new node
+         */
+        private int[] matches = new int[16];
+
+        /**
+         * New nodes which are not matched by their fingerprint, null for matched ones
+         */
+        private Node[] newNodes = new Node[16];
+        private int size;
+
+        ContentDiff(Branch oldBranch) {
+            for (int i = 0, count = oldBranch.nodeCount(); i < count; i++) {
+                final Node node = oldBranch.node(i);
+
+                if (!(node instanceof Namespace)) {
+                    oldNodes.add(node);
+                }
+            }
+
+            nextSame = new int[oldNodes.size()];
+
+            for (int i = oldNodes.size() - 1; i >= 0; i--) {
+                final Integer next = oldByFingerprint.put(oldNodes.get(i).structuralHash(), i);
+                nextSame[i] = next != null ? next : -1;
+            }
+        }
+
+        void add(Node node) {
+            if (size == matches.length) {
+                matches = Arrays.copyOf(matches, size * 2);
+                newNodes = Arrays.copyOf(newNodes, size * 2);
+            }
+
+            // the streamed root holds none of its content, it is paired by name
+            final long print = node != streamedRoot ? node.structuralHash() : 0;
+            final Integer match = node != streamedRoot ? oldByFingerprint.get(print) : null;
+
+            if (match != null) {
+                if (nextSame[match] >= 0) {
+                    oldByFingerprint.put(print, nextSame[match]);
+                } else {
+                    oldByFingerprint.remove(print);
+                }
+
+                matches[size++] = match;
+            } else {
+                matches[size] = -1;
+                newNodes[size++] = node;
+            }
+        }
+
+        void finish(String path) {
+            final int oldSize = oldNodes.size();
+            final boolean[] used = new boolean[oldSize];
+
+            for (int j = 0; j < size; j++) {
+                if (matches[j] >= 0) {
+                    used[matches[j]] = true;
+                }
+            }
+
+            pair(used);
+
+            // deleting from the end keeps positions of the nodes before
+            for (int i = oldSize - 1; i >= 0; i--) {
+                if (!used[i]) {
+                    addEdit(NodeEdit.Type.DELETE, step(path, i), null, null);
+                }
+            }
+
+            arrange(path, used);
+
+            // content of the children is compared once all of them are in place
+            final List<Task> children = new ArrayList<>();
+
+            for (int j = 0; j < size; j++) {
+                if (matches[j] >= 0 && newNodes[j] != null) {
+                    final Node oldNode = oldNodes.get(matches[j]);
+                    final Node newNode = newNodes[j];
+
+                    if (newNode instanceof Element) {
+                        if (!sameHeader((Element) oldNode, (Element) newNode)) {
+                            addEdit(NodeEdit.Type.UPDATE, step(path, j), null, header((Element) newNode));
+                        }
+
+                        children.add(new Task((Branch) oldNode, (Branch) newNode, step(path, j)));
+                    } else {
+                        addEdit(NodeEdit.Type.UPDATE, step(path, j), null, detached(newNode));
+                    }
+                }
+            }
+
+            for (int i = children.size() - 1; i >= 0; i--) {
+                tasks.push(children.get(i));
+            }
+        }
+
+        /**
+         * Pairs new nodes not matched by fingerprint to unused old nodes of the same key, in order
+         */
+        private void pair(boolean[] used) {
+            final Map<Object, Deque<Integer>> unused = new HashMap<>();
+
+            for (int i = 0; i < used.length; i++) {
+                if (!used[i]) {
+                    unused.computeIfAbsent(key(oldNodes.get(i)), k -> new ArrayDeque<>()).add(i);
+                }
+            }
+
+            if (unused.isEmpty()) {
+                return;
+            }
+
+            for (int j = 0; j < size; j++) {
+                if (matches[j] < 0) {
+                    final Deque<Integer> candidates = unused.get(key(newNodes[j]));
+
+                    if (candidates != null && !candidates.isEmpty()) {
+                        matches[j] = candidates.poll();
+                        used[matches[j]] = true;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Moves matched nodes and inserts new ones. Matched nodes in the longest subsequence which keeps the old order
+         * stay, every other node is placed right after the node preceding it in the new content. Positions at the time
+         * of each edit are counted by two trees of counts: one over the old order for the nodes not placed yet, one
+         * over the new order for the placed and staying nodes.
+         */
+        private void arrange(String path, boolean[] used) {
+            // positions of the used old nodes once the others are deleted
+            final int[] ranks = new int[used.length];
+            int kept = 0;
+
+            for (int i = 0; i < used.length; i++) {
+                ranks[i] = used[i] ? kept++ : -1;
+            }
+
+            final boolean[] staying = staying(ranks);
+            final Counts unplaced = new Counts(kept);
+            final Counts placed = new Counts(size);
+
+            // new position of the first staying node after each old rank, and rank of the last staying node before
+            // each new position
+            final int[] stayingAt = new int[kept];
+            final int[] nextStaying = new int[kept];
+            final int[] lastStaying = new int[size];
+            Arrays.fill(stayingAt, -1);
+
+            for (int j = 0, last = -1; j < size; j++) {
+                if (matches[j] >= 0) {
+                    if (staying[j]) {
+                        stayingAt[ranks[matches[j]]] = j;
+                        last = ranks[matches[j]];
+                        placed.add(j, 1);
+                    } else {
+                        unplaced.add(ranks[matches[j]], 1);
+                    }
+                }
+
+                lastStaying[j] = last;
+            }
+
+            for (int rank = kept - 1, next = size; rank >= 0; rank--) {
+                nextStaying[rank] = next;
+
+                if (stayingAt[rank] >= 0) {
+                    next = stayingAt[rank];
+                }
+            }
+
+            for (int j = 0; j < size; j++) {
+                if (staying[j]) {
+                    continue;
+                }
+
+                if (matches[j] >= 0) {
+                    final int rank = ranks[matches[j]];
+                    final int from = placed.sum(nextStaying[rank]) + unplaced.sum(rank);
+                    unplaced.add(rank, -1);
+
+                    final int to = target(j, placed, unplaced, lastStaying);
+
+                    if (from != to) {
+                        addEdit(NodeEdit.Type.MOVE, step(path, from), step(path, to), null);
+                    }
+                } else {
+                    addEdit(NodeEdit.Type.INSERT, step(path, target(j, placed, unplaced, lastStaying)), null,
+                            detached(newNodes[j]));
+                }
+
+                placed.add(j, 1);
+            }
+        }
+
+        /**
+         * @return position right after the node preceding the new node at given position
+         */
+        private int target(int j, Counts placed, Counts unplaced, int[] lastStaying) {
+            if (j == 0) {
+                return 0;
+            }
+
+            // nodes not placed yet precede the anchor if they precede the staying node it follows
+            final int rank = lastStaying[j - 1];
+            return placed.sum(j - 1) + (rank >= 0 ? unplaced.sum(rank) : 0) + 1;
+        }
+
+        /**
+         * @return new positions of the matched nodes in the longest subsequence of increasing old positions
+         */
+        private boolean[] staying(int[] ranks) {
+            final int[] tails = new int[size];
+            final int[] previous = new int[size];
+            int length = 0;
+
+            for (int j = 0; j < size; j++) {
+                if (matches[j] < 0) {
+                    continue;
+                }
+
+                final int rank = ranks[matches[j]];
+                int low = 0;
+                int high = length;
+
+                while (low < high) {
+                    final int middle = (low + high) >>> 1;
+
+                    if (ranks[matches[tails[middle]]] < rank) {
+                        low = middle + 1;
+                    } else {
+                        high = middle;
+                    }
+                }
+
+                previous[j] = low > 0 ? tails[low - 1] : -1;
+                tails[low] = j;
+
+                if (low == length) {
+                    length++;
+                }
+            }
+
+            final boolean[] staying = new boolean[size];
+
+            for (int j = length > 0 ? tails[length - 1] : -1; j >= 0; j = previous[j]) {
+                staying[j] = true;
+            }
+
+            return staying;
+        }
+    }
+
+    /**
+     * Binary indexed tree of counts
+     */
+    private static final class Counts {
+        private final int[] tree;
+
+        Counts(int size) {
+            tree = new int[size + 1];
+        }
+
+        void add(int index, int delta) {
+            for (int i = index + 1; i < tree.length; i += i & -i) {
+                tree[i] += delta;
+            }
+        }
+
+        /**
+         * @return sum of the counts before given index
+         */
+        int sum(int index) {
+            int sum = 0;
+
+            for (int i = index; i > 0; i -= i & -i) {
+                sum += tree[i];
+            }
+
+            return sum;
+        }
+    }
+
+    private static final class Task {
+        private final Branch oldBranch;
+        private final Branch newBranch;
+        private final String path;
+
+        Task(Branch oldBranch, Branch newBranch, String path) {
+            this.oldBranch = oldBranch;
+            this.newBranch = newBranch;
+            this.path = path;
+        }
+    }
+
+    /**
+     * Matches children of the new root element while it is parsed and releases them
+     */
+    private final class StreamingHandler implements ElementHandler {
+        private final Element oldRoot;
+
+        StreamingHandler(Element oldRoot) {
+            this.oldRoot = oldRoot;
+        }
+
+        @Override
+        public void onStart(ElementPath elementPath) {
+            final Element element = elementPath.getCurrent();
+            final int depth = elementPath.size();
+
+            if (depth == 1) {
+                if (oldRoot != null && oldRoot.getQName().equals(element.getQName())) {
+                    streamedRoot = element;
+                    streamedContent = new ContentDiff(oldRoot);
+                }
+            } else if (depth == 2 && streamedContent != null) {
+                addCompleted(elementPath.getElement(0), 1);
+            }
+        }
+
+        @Override
+        public void onEnd(ElementPath elementPath) {
+            final int depth = elementPath.size();
+
+            if (streamedContent != null && depth <= 2) {
+                addCompleted(elementPath.getElement(0), 0);
+            }
+        }
+
+        /**
+         * Matches complete children of the root element and releases them
+         *
+         * @param root the root element
+         * @param open number of last children which are not complete yet
+         */
+        private void addCompleted(Element root, int open) {
+            int index = 0;
+
+            while (root.nodeCount() - index > open) {
+                final Node node = root.node(index);
+
+                if (node instanceof Namespace) {
+                    index++;
+                } else {
+                    streamedContent.add(node);
+                    root.remove(node);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.neoxml.util;
+
+import org.neoxml.Node;
+
+/**
+ * <p>
+ * <code>NodeEdit</code> is a single operation of an edit script created by {@link NodeDiff} and applied by
+ * {@link NodePatch}. Nodes are addressed by positional paths like <code>/node()[1]/node()[3]</code>, each step is
+ * the 1-based position of a node in the content of its parent, not counting namespace declarations. A path is
+ * resolved against the document as it is when the edit is applied, so edits have to be applied in order.
+ * </p>
+ */
+public final class NodeEdit {
+    public enum Type {
+        /**
+         * The node is inserted so that it gets the path of the edit
+         */
+        INSERT,
+
+        /**
+         * The node at the path is removed
+         */
+        DELETE,
+
+        /**
+         * The node at the path is replaced by the node of the edit; an element keeps its content and gets just the
+         * name, attributes and namespace declarations of the node
+         */
+        UPDATE,
+
+        /**
+         * The node at the path is moved within its parent so that it gets the target path
+         */
+        MOVE
+    }
+
+    private final Type type;
+    private final String path;
+    private final String targetPath;
+    private final Node node;
+
+    NodeEdit(Type type, String path, String targetPath, Node node) {
+        this.type = type;
+        this.path = path;
+        this.targetPath = targetPath;
+        this.node = node;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return the path of the node after a {@link Type#MOVE}, null for other edits
+     */
+    public String getTargetPath() {
+        return targetPath;
+    }
+
+    /**
+     * @return the detached node to insert or to update from, null for {@link Type#DELETE} and {@link Type#MOVE}
+     */
+    public Node getNode() {
+        return node;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder(type.name()).append(' ').append(path);
+
+        if (targetPath != null) {
+            buffer.append(" -> ").append(targetPath);
+        }
+
+        if (node != null) {
+            buffer.append(' ').append(node.asXML());
+        }
+
+        return buffer.toString();
+    }
+}
@@ -0,0 +1,207 @@
+package org.neoxml.util;
+
+import org.neoxml.Branch;
+import org.neoxml.Document;
+import org.neoxml.Element;
+import org.neoxml.Namespace;
+import org.neoxml.Node;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * <code>NodePatch</code> applies an edit script created by {@link NodeDiff} to a document. Nodes of the script are
+ * copied, so one script can be applied to any number of documents.
+ * </p>
+ */
+public final class NodePatch {
+    private static final String STEP = "/node()[";
+
+    /**
+     * Number of namespace declarations at the start of the content of each branch seen, -1 if there are any further
+     */
+    private final Map<Branch, Integer> leadingNamespaces = new IdentityHashMap<>();
+
+    private NodePatch() {
+    }
+
+    /**
+     * Applies the edits in order
+     *
+     * @param document the document to change
+     * @param edits    the edit script
+     * @throws IllegalArgumentException if a path of an edit doesn't address a node of the document
+     */
+    public static void apply(Document document, List<NodeEdit> edits) {
+        final NodePatch patch = new NodePatch();
+
+        for (NodeEdit edit : edits) {
+            patch.applyEdit(document, edit);
+        }
+    }
+
+    public static void apply(Document document, NodeEdit edit) {
+        new NodePatch().applyEdit(document, edit);
+    }
+
+    private void applyEdit(Document document, NodeEdit edit) {
+        final String path = edit.getPath();
+        final int last = path.lastIndexOf(STEP);
+
+        if (last < 0) {
+            throw new IllegalArgumentException("Invalid path: " + path);
+        }
+
+        final Branch parent = branch(document, path, last);
+        final List<Node> content = parent.content();
+        final int index = position(path, last);
+
+        switch (edit.getType()) {
+            case INSERT:
+                content.add(contentIndex(parent, index, path, true), edit.getNode().clone());
+                break;
+            case DELETE:
+                content.remove(contentIndex(parent, index, path, false));
+                break;
+            case UPDATE:
+                update(parent, contentIndex(parent, index, path, false), edit.getNode());
+                break;
+            case MOVE:
+                final String targetPath = edit.getTargetPath();
+                final int targetLast = targetPath.lastIndexOf(STEP);
+
+                if (targetLast != last || !targetPath.regionMatches(0, path, 0, last)) {
+                    throw new IllegalArgumentException("Not a move within the parent: " + edit);
+                }
+
+                final Node node = content.remove(contentIndex(parent, index, path, false));
+                content.add(contentIndex(parent, position(targetPath, targetLast), targetPath, true), node);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown edit: " + edit);
+        }
+    }
+
+    private void update(Branch parent, int contentIndex, Node source) {
+        final Node node = parent.node(contentIndex);
+
+        if (!(node instanceof Element)) {
+            parent.content().set(contentIndex, source.clone());
+            return;
+        }
+
+        final Element element = (Element) node;
+        final Element header = (Element) source;
+        leadingNamespaces.remove(element);
+
+        if (!element.getQName().equals(header.getQName())
+                || !element.getQualifiedName().equals(header.getQualifiedName())) {
+            element.setQName(header.getQName());
+        }
+
+        element.setAttributes(header.attributes());
+
+        element.content().removeIf(child -> child instanceof Namespace);
+        int index = 0;
+
+        for (Namespace namespace : header.declaredNamespaces()) {
+            element.content().add(index++, namespace);
+        }
+    }
+
+    /**
+     * @return the branch addressed by the path up to given step
+     */
+    private Branch branch(Document document, String path, int end) {
+        Branch branch = document;
+        int start = 0;
+
+        while (start < end) {
+            if (!path.startsWith(STEP, start)) {
+                throw new IllegalArgumentException("Invalid path: " + path);
+            }
+
+            final Node node = branch.node(contentIndex(branch, position(path, start), path, false));
+
+            if (!(node instanceof Branch)) {
+                throw new IllegalArgumentException("No branch at " + path.substring(0, path.indexOf(']', start) + 1));
+            }
+
+            branch = (Branch) node;
+            start = path.indexOf(']', start) + 1;
+        }
+
+        return branch;
+    }
+
+    /**
+     * @return the 0-based position of the step starting at given index of the path
+     */
+    private static int position(String path, int start) {
+        final int end = path.indexOf(']', start);
+
+        try {
+            final int position = Integer.parseInt(path.substring(start + STEP.length(), end));
+
+            if (position > 0) {
+                return position - 1;
+            }
+        } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+            // reported below
+        }
+
+        throw new IllegalArgumentException("Invalid path: " + path);
+    }
+
+    /**
+     * Converts a position which doesn't count namespace declarations to an index of the content
+     *
+     * @param append true if the position may be right after the last node
+     */
+    private int contentIndex(Branch branch, int position, String path, boolean append) {
+        final int leading = leadingNamespaces.computeIfAbsent(branch, NodePatch::leadingNamespaces);
+
+        if (leading >= 0) {
+            final int index = leading + position;
+
+            if (index < branch.nodeCount() || append && index == branch.nodeCount()) {
+                return index;
+            }
+
+            throw new IllegalArgumentException("No node at " + path);
+        }
+
+        int remaining = position;
+
+        for (int i = 0, size = branch.nodeCount(); i < size; i++) {
+            if (!(branch.node(i) instanceof Namespace) && remaining-- == 0) {
+                return i;
+            }
+        }
+
+        if (append && remaining == 0) {
+            return branch.nodeCount();
+        }
+
+        throw new IllegalArgumentException("No node at " + path);
+    }
+
+    private static int leadingNamespaces(Branch branch) {
+        final int size = branch.nodeCount();
+        int leading = 0;
+
+        while (leading < size && branch.node(leading) instanceof Namespace) {
+            leading++;
+        }
+
+        for (int i = leading; i < size; i++) {
+            if (branch.node(i) instanceof Namespace) {
+                return -1;
+            }
+        }
+
+        return leading;
+    }
+}
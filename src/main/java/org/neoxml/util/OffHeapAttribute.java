@@ -0,0 +1,113 @@
+package org.neoxml.util;
+
+import org.neoxml.Element;
+import org.neoxml.QName;
+import org.neoxml.tree.AbstractAttribute;
+import org.neoxml.tree.DefaultAttribute;
+
+import java.util.Objects;
+
+/**
+ * <p>
+ * <code>OffHeapAttribute</code> is an <code>Attribute</code> whose value is kept in a {@link TextArena} outside of the Java heap and
+ * decoded on every call of {@link #getValue()}.
+ * </p>
+ * It is serialized as {@link DefaultAttribute}.
+ */
+public class OffHeapAttribute extends AbstractAttribute {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The <code>QName</code> for this attribute
+     */
+    private final QName qname;
+
+    /**
+     * The arena which holds the value
+     */
+    private final TextArena arena;
+
+    /**
+     * Reference to the value in the arena
+     */
+    private long reference;
+
+    /**
+     * Encoded length of the value, -1 if the value is kept in {@link #value}
+     */
+    private int length;
+
+    /**
+     * The value set after creation, kept on the heap so that replaced values don't fill the arena
+     */
+    private String value;
+
+    /**
+     * The parent of this node
+     */
+    private Element parent;
+
+    public OffHeapAttribute(TextArena arena, QName qname, String value) {
+        this.arena = arena;
+        this.qname = qname;
+        store(value);
+    }
+
+    @Override
+    public String getValue() {
+        return length != -1 ? arena.load(reference, length) : value;
+    }
+
+    @Override
+    public void setValue(String value) {
+        beforeChange();
+        final String oldValue = parent != null ? getValue() : null;
+        this.value = value;
+        this.reference = 0L;
+        this.length = -1;
+
+        if (parent != null && !Objects.equals(oldValue, value)) {
+            valueChanged(oldValue);
+        }
+    }
+
+    @Override
+    public QName getQName() {
+        return qname;
+    }
+
+    @Override
+    public Element getParent() {
+        return parent;
+    }
+
+    @Override
+    public void setParent(Element parent) {
+        this.parent = parent;
+    }
+
+    @Override
+    public boolean supportsParent() {
+        return true;
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return false;
+    }
+
+    protected Object writeReplace() {
+        return new DefaultAttribute(parent, qname, getValue());
+    }
+
+    private void store(String value) {
+        if (value == null) {
+            this.reference = 0L;
+            this.length = -1;
+        } else {
+            final int encodedLength = TextArena.length(value);
+            this.reference = arena.store(value, encodedLength);
+            this.length = encodedLength;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package org.neoxml.util;
+
+import org.neoxml.Element;
+import org.neoxml.tree.AbstractCDATA;
+import org.neoxml.tree.DefaultCDATA;
+
+/**
+ * <p>
+ * <code>OffHeapCDATA</code> is a <code>CDATA</code> node whose text is kept in a {@link TextArena} outside of the Java heap and
+ * decoded on every call of {@link #getText()}.
+ * </p>
+ * It is serialized as {@link DefaultCDATA}.
+ */
+public class OffHeapCDATA extends AbstractCDATA {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The arena which holds the text
+     */
+    private final TextArena arena;
+
+    /**
+     * Reference to the text in the arena
+     */
+    private long reference;
+
+    /**
+     * Encoded length of the text, -1 if the text is kept in {@link #text}
+     */
+    private int length;
+
+    /**
+     * The text set after creation, kept on the heap so that replaced texts don't fill the arena
+     */
+    private String text;
+
+    /**
+     * The parent of this node
+     */
+    private Element parent;
+
+    public OffHeapCDATA(TextArena arena, String text) {
+        this.arena = arena;
+        store(text);
+    }
+
+    @Override
+    public String getText() {
+        return length != -1 ? arena.load(reference, length) : text;
+    }
+
+    @Override
+    public void setText(String text) {
+        beforeChange();
+        this.text = text;
+        this.reference = 0L;
+        this.length = -1;
+        invalidateStructuralHash();
+    }
+
+    @Override
+    public Element getParent() {
+        return parent;
+    }
+
+    @Override
+    public void setParent(Element parent) {
+        this.parent = parent;
+    }
+
+    @Override
+    public boolean supportsParent() {
+        return true;
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return false;
+    }
+
+    protected Object writeReplace() {
+        return new DefaultCDATA(parent, getText());
+    }
+
+    private void store(String text) {
+        if (text == null) {
+            this.reference = 0L;
+            this.length = -1;
+        } else {
+            final int encodedLength = TextArena.length(text);
+            this.reference = arena.store(text, encodedLength);
+            this.length = encodedLength;
+        }
+    }
+}
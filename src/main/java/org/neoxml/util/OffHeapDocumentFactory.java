@@ -0,0 +1,73 @@
+package org.neoxml.util;
+
+import org.neoxml.Attribute;
+import org.neoxml.CDATA;
+import org.neoxml.DefaultDocumentFactory;
+import org.neoxml.Element;
+import org.neoxml.QName;
+import org.neoxml.Text;
+
+/**
+ * <p>
+ * <code>OffHeapDocumentFactory</code> creates documents whose text, CDATA and attribute values are stored in a
+ * {@link TextArena} outside of the Java heap, so heap usage of large documents does not depend on the volume of
+ * their text. Values are decoded to <code>String</code> only when they are requested.
+ * </p>
+ * <p>
+ * All documents built by one factory share its arena, which is released only when the factory and all of its nodes
+ * are garbage collected. So there is no singleton instance, use a factory per batch of documents
+ * (e.g. <code>new SAXReader(new OffHeapDocumentFactory())</code>) and drop it together with them.
+ * </p>
+ * <p>
+ * The arena only grows, so values set on nodes after they are created are kept on the heap instead. Documents which
+ * are changed a lot after parsing gain little from this factory.
+ * </p>
+ */
+public class OffHeapDocumentFactory extends DefaultDocumentFactory {
+    private static final long serialVersionUID = 1L;
+
+    private final transient TextArena arena;
+
+    public OffHeapDocumentFactory() {
+        this(new TextArena());
+    }
+
+    public OffHeapDocumentFactory(TextArena arena) {
+        super();
+        this.arena = arena;
+    }
+
+    /**
+     * @return the arena used to store texts of nodes created by this factory
+     */
+    public TextArena getArena() {
+        return arena;
+    }
+
+    // DefaultDocumentFactory methods
+    // -------------------------------------------------------------------------
+
+    @Override
+    public Attribute createAttribute(Element owner, QName qname, String value) {
+        return new OffHeapAttribute(arena, qname, value);
+    }
+
+    @Override
+    public CDATA createCDATA(String text) {
+        return new OffHeapCDATA(arena, text);
+    }
+
+    @Override
+    public Text createText(String text) {
+        if (text == null) {
+            throw new IllegalArgumentException("Adding text to an XML document must not be null");
+        }
+
+        return new OffHeapText(arena, text);
+    }
+
+    private Object writeReplace() {
+        // arena cannot be serialized, documents read back use the default factory
+        return new DefaultDocumentFactory();
+    }
+}
@@ -0,0 +1,152 @@
+package org.neoxml.util;
+
+import java.util.Arrays;
+
+/**
+ * Bounded pool used to share equal short strings, e.g. repeating text and attribute values of parsed documents.
+ * <p>
+ * The pool is a direct-mapped table: a string is looked up by the hash of its characters, so no object is allocated
+ * when the value is already pooled, and a colliding value simply replaces the previous one. Strings longer than
+ * the maximal length are never pooled.
+ * <p>
+ * This class is not thread safe, use one pool per parser.
+ */
+public class StringPool {
+    /**
+     * Default number of pooled strings
+     */
+    public static final int DEFAULT_SIZE = 4096;
+
+    /**
+     * Default maximal length of pooled strings
+     */
+    public static final int DEFAULT_MAX_LENGTH = 32;
+
+    private final String[] table;
+    private final int maxLength;
+
+    public StringPool() {
+        this(DEFAULT_SIZE, DEFAULT_MAX_LENGTH);
+    }
+
+    /**
+     * @param size      maximal number of pooled strings, rounded up to a power of two
+     * @param maxLength maximal length of pooled strings
+     */
+    public StringPool(int size, int maxLength) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive: " + size);
+        }
+
+        this.table = new String[Integer.highestOneBit(Math.max(1, size * 2 - 1))];
+        this.maxLength = maxLength;
+    }
+
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * Returns pooled string with given characters
+     *
+     * @param ch     array of characters
+     * @param start  offset of the first character
+     * @param length number of characters
+     * @return the pooled or a new string
+     */
+    public String intern(char[] ch, int start, int length) {
+        if (length > maxLength) {
+            return new String(ch, start, length);
+        }
+
+        int hash = 0;
+
+        for (int i = start, end = start + length; i < end; i++) {
+            hash = 31 * hash + ch[i];
+        }
+
+        final int slot = slot(hash);
+        final String pooled = table[slot];
+
+        if (pooled != null && regionEquals(pooled, ch, start, length)) {
+            return pooled;
+        }
+
+        return table[slot] = new String(ch, start, length);
+    }
+
+    /**
+     * Returns pooled string with given characters
+     *
+     * @param text characters of the string
+     * @return the pooled or a new string
+     */
+    public String intern(CharSequence text) {
+        final int length = text.length();
+
+        if (length > maxLength) {
+            return text.toString();
+        }
+
+        int hash = 0;
+
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+
+        final int slot = slot(hash);
+        final String pooled = table[slot];
+
+        if (pooled != null && pooled.contentEquals(text)) {
+            return pooled;
+        }
+
+        return table[slot] = text.toString();
+    }
+
+    /**
+     * Returns pooled string equal to the given one. Given string is pooled if there is none.
+     *
+     * @param value string to pool, may be null
+     * @return the pooled string or the given one
+     */
+    public String intern(String value) {
+        if (value == null || value.length() > maxLength) {
+            return value;
+        }
+
+        final int slot = slot(value.hashCode());
+        final String pooled = table[slot];
+
+        if (value.equals(pooled)) {
+            return pooled;
+        }
+
+        return table[slot] = value;
+    }
+
+    /**
+     * Removes all pooled strings
+     */
+    public void clear() {
+        Arrays.fill(table, null);
+    }
+
+    private int slot(int hash) {
+        return (hash ^ (hash >>> 16)) & (table.length - 1);
+    }
+
+    private static boolean regionEquals(String pooled, char[] ch, int start, int length) {
+        if (pooled.length() != length) {
+            return false;
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (pooled.charAt(i) != ch[start + i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
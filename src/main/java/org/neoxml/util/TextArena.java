@@ -0,0 +1,193 @@
+package org.neoxml.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Append-only store of strings kept outside of the Java heap in direct <code>ByteBuffer</code> chunks.
+ * <p>
+ * Strings which contain only Latin-1 characters are stored one byte per character, other strings are stored in UTF-8.
+ * A stored string is identified by a reference returned from {@link #store(String)} together with its encoded length
+ * returned by {@link #length(String)}; both are needed to {@link #load(long, int) load} it back.
+ * <p>
+ * Stored bytes are never released one by one, the whole arena is released by the garbage collector once neither the
+ * arena nor any node referencing it are reachable. Storing is synchronized, loading can be done concurrently.
+ */
+public class TextArena {
+    /**
+     * Default size of one off-heap chunk
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    private final int chunkSize;
+
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+
+    /**
+     * Index of chunk which is currently filled, -1 if there is none yet
+     */
+    private int currentChunk = -1;
+
+    public TextArena() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    public TextArena(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Computes encoded length of given text. Value is non-negative if the text is stored as Latin-1 (and it is then also
+     * equal to number of characters), otherwise it is the bitwise complement of UTF-8 length.
+     *
+     * @param text text to measure
+     * @return encoded length of the text
+     */
+    public static int length(String text) {
+        final int length = text.length();
+
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(i) > 0xFF) {
+                return ~utf8Length(text);
+            }
+        }
+
+        return length;
+    }
+
+    /**
+     * Stores given text in this arena
+     *
+     * @param text   text to store
+     * @param length encoded length of the text as returned by {@link #length(String)}
+     * @return reference to the stored text
+     */
+    public synchronized long store(String text, int length) {
+        if (length == 0) {
+            return 0L;
+        }
+
+        final byte[] bytes = length < 0 ? text.getBytes(StandardCharsets.UTF_8) : null;
+        final int size = bytes != null ? bytes.length : length;
+
+        final int chunk = chunkFor(size);
+        final ByteBuffer buffer = chunks[chunk];
+        final int offset = buffer.position();
+
+        if (bytes != null) {
+            buffer.put(bytes);
+        } else {
+            for (int i = 0; i < size; i++) {
+                buffer.put((byte) text.charAt(i));
+            }
+        }
+
+        return ((long) chunk << 32) | offset;
+    }
+
+    /**
+     * Stores given text in this arena
+     *
+     * @param text text to store
+     * @return reference to the stored text, it must be loaded with length returned by {@link #length(String)}
+     */
+    public long store(String text) {
+        return store(text, length(text));
+    }
+
+    /**
+     * Loads text stored in this arena
+     *
+     * @param reference reference returned by {@link #store(String, int)}
+     * @param length    encoded length of the text
+     * @return decoded text
+     */
+    public String load(long reference, int length) {
+        if (length == 0) {
+            return "";
+        }
+
+        final ByteBuffer buffer = chunks[(int) (reference >>> 32)];
+        final int offset = (int) reference;
+
+        if (length > 0) {
+            final char[] chars = new char[length];
+
+            for (int i = 0; i < length; i++) {
+                chars[i] = (char) (buffer.get(offset + i) & 0xFF);
+            }
+
+            return new String(chars);
+        }
+
+        final int size = ~length;
+        final byte[] bytes = new byte[size];
+
+        for (int i = 0; i < size; i++) {
+            bytes[i] = buffer.get(offset + i);
+        }
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return number of off-heap bytes allocated by this arena
+     */
+    public long capacity() {
+        long capacity = 0;
+
+        for (ByteBuffer chunk : chunks) {
+            capacity += chunk.capacity();
+        }
+
+        return capacity;
+    }
+
+    private int chunkFor(int size) {
+        if (size > chunkSize) {
+            // large texts get a dedicated chunk, current chunk stays in use
+            return addChunk(ByteBuffer.allocateDirect(size));
+        }
+
+        if (currentChunk < 0 || chunks[currentChunk].remaining() < size) {
+            currentChunk = addChunk(ByteBuffer.allocateDirect(chunkSize));
+        }
+
+        return currentChunk;
+    }
+
+    private int addChunk(ByteBuffer buffer) {
+        final ByteBuffer[] newChunks = Arrays.copyOf(chunks, chunks.length + 1);
+        newChunks[chunks.length] = buffer;
+        chunks = newChunks;
+        return chunks.length - 1;
+    }
+
+    private static int utf8Length(String text) {
+        int bytes = 0;
+
+        for (int i = 0, length = text.length(); i < length; i++) {
+            final char c = text.charAt(i);
+
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (!Character.isSurrogate(c)) {
+                bytes += 3;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                // malformed surrogates are encoded as '?'
+                bytes += 1;
+            }
+        }
+
+        return bytes;
+    }
+}
@@ -51,7 +51,12 @@ public class UserDataElement extends DefaultElement {
 
     @Override
     public UserDataElement clone() {
-        UserDataElement answer = (UserDataElement) super.clone();
+        return (UserDataElement) super.clone();
+    }
+
+    @Override
+    protected UserDataElement cloneWithoutContent() {
+        UserDataElement answer = (UserDataElement) super.cloneWithoutContent();
 
         if (answer != this) {
             answer.data = getCopyOfUserData();
@@ -12,19 +12,23 @@ import org.jaxen.NamespaceContext;
 import org.jaxen.SimpleNamespaceContext;
 import org.jaxen.VariableContext;
 import org.jaxen.XPath;
+import org.neoxml.Document;
 import org.neoxml.InvalidXPathException;
 import org.neoxml.Node;
 import org.neoxml.XPathException;
 import org.neoxml.tree.DefaultText;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -37,10 +41,44 @@ import java.util.stream.Collectors;
  * @author <a href="mailto:jstrachan@apache.org">James Strachan </a>
  */
 public class DefaultXPath implements org.neoxml.XPath, Serializable {
+    /**
+     * True for classes which override neither {@link #sort(List, Map)} nor {@link #removeDuplicates(List, Map)}, their
+     * lists are sorted without the map of compare values. Subclasses overriding any of these methods are called by
+     * {@link #sort(List, boolean)}.
+     */
+    private static final ClassValue<Boolean> SORTS_BY_KEYS = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            for (Class<?> c = type; c != DefaultXPath.class; c = c.getSuperclass()) {
+                if (declares(c, "sort") || declares(c, "removeDuplicates")) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        private boolean declares(Class<?> type, String name) {
+            try {
+                type.getDeclaredMethod(name, List.class, Map.class);
+                return true;
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+    };
+
     private final String text;
 
     private final XPath xpath;
 
+    /**
+     * Native plan of the expression, null if it has to be evaluated by Jaxen
+     */
+    private SimplePath simplePath;
+
+    private boolean customFunctions;
+
     private NamespaceContext namespaceContext;
 
     /**
@@ -52,6 +90,7 @@ public class DefaultXPath implements org.neoxml.XPath, Serializable {
     public DefaultXPath(String text) {
         this.text = text;
         this.xpath = parse(text);
+        this.simplePath = SimplePath.compile(text, null);
     }
 
     @Override
@@ -76,6 +115,9 @@ public class DefaultXPath implements org.neoxml.XPath, Serializable {
     }
 
     public void setFunctionContext(FunctionContext functionContext) {
+        // functions may be redefined, so leave everything to Jaxen
+        customFunctions = true;
+        simplePath = null;
         xpath.setFunctionContext(functionContext);
     }
 
@@ -91,6 +133,11 @@ public class DefaultXPath implements org.neoxml.XPath, Serializable {
     public void setNamespaceContext(NamespaceContext namespaceContext) {
         this.namespaceContext = namespaceContext;
         xpath.setNamespaceContext(namespaceContext);
+
+        if (!customFunctions) {
+            // prefixes can be resolved now
+            simplePath = SimplePath.compile(text, namespaceContext);
+        }
     }
 
     public VariableContext getVariableContext() {
@@ -103,6 +150,16 @@ public class DefaultXPath implements org.neoxml.XPath, Serializable {
 
     @Override
     public Object evaluate(Object context) {
+        final List<Node> nodes = selectSimplePath(context);
+
+        if (nodes != null) {
+            if (simplePath.isCount()) {
+                return (double) nodes.size();
+            }
+
+            return nodes.size() == 1 ? nodes.get(0) : nodes;
+        }
+
         try {
             setNSContext(context);
 
@@ -124,6 +181,12 @@ public class DefaultXPath implements org.neoxml.XPath, Serializable {
     @Override
     @SuppressWarnings("unchecked")
     public List<Node> selectNodes(Object context) {
+        final List<Node> nodes = selectSimplePath(context);
+
+        if (nodes != null && !simplePath.isCount()) {
+            return nodes;
+        }
+
         try {
             setNSContext(context);
 
@@ -164,6 +227,12 @@ public class DefaultXPath implements org.neoxml.XPath, Serializable {
 
     @Override
     public Node selectSingleNode(Object context) {
+        final List<Node> nodes = selectSimplePath(context);
+
+        if (nodes != null && !simplePath.isCount()) {
+            return nodes.isEmpty() ? null : nodes.get(0);
+        }
+
         try {
             setNSContext(context);
 
@@ -187,6 +256,18 @@ public class DefaultXPath implements org.neoxml.XPath, Serializable {
 
     @Override
     public String valueOf(Object context) {
+        final List<Node> nodes = selectSimplePath(context);
+
+        if (nodes != null) {
+            if (simplePath.isCount()) {
+                return Integer.toString(nodes.size());
+            } else if (nodes.isEmpty()) {
+                return "";
+            } else if (!(nodes.get(0) instanceof Document)) {
+                return nodes.get(0).getStringValue();
+            }
+        }
+
         try {
             setNSContext(context);
 
@@ -200,6 +281,12 @@ public class DefaultXPath implements org.neoxml.XPath, Serializable {
 
     @Override
     public Number numberValueOf(Object context) {
+        final List<Node> nodes = selectSimplePath(context);
+
+        if (nodes != null && simplePath.isCount()) {
+            return (double) nodes.size();
+        }
+
         try {
             setNSContext(context);
 
@@ -213,6 +300,12 @@ public class DefaultXPath implements org.neoxml.XPath, Serializable {
 
     @Override
     public boolean booleanValueOf(Object context) {
+        final List<Node> nodes = selectSimplePath(context);
+
+        if (nodes != null) {
+            return !nodes.isEmpty();
+        }
+
         try {
             setNSContext(context);
 
@@ -247,15 +340,14 @@ public class DefaultXPath implements org.neoxml.XPath, Serializable {
      *                 comparisions) will be removed from the List
      */
     @Override
+    @SuppressWarnings("unchecked")
     public void sort(List<? extends Node> list, boolean distinct) {
-        if ((list != null) && !list.isEmpty()) {
-            int size = list.size();
-            HashMap<Node, String> sortValues = new HashMap<>(size);
+        if ((list != null) && !list.isEmpty() && !SORTS_BY_KEYS.get(getClass())) {
+            final Map<Node, String> sortValues = new HashMap<>(list.size());
 
             for (Node node : list) {
                 if (node != null) {
-                    String expression = getCompareValue(node);
-                    sortValues.put(node, expression);
+                    sortValues.put(node, getCompareValue(node));
                 }
             }
 
@@ -264,6 +356,27 @@ public class DefaultXPath implements org.neoxml.XPath, Serializable {
             if (distinct) {
                 removeDuplicates(list, sortValues);
             }
+        } else if ((list != null) && !list.isEmpty()) {
+            final SortKey[] keys = new SortKey[list.size()];
+            int index = 0;
+
+            for (Node node : list) {
+                keys[index++] = new SortKey(node, node != null ? getCompareValue(node) : null);
+            }
+
+            Arrays.sort(keys);
+
+            final ListIterator<Node> iter = ((List<Node>) list).listIterator();
+
+            for (int i = 0; i < keys.length; i++) {
+                iter.next();
+
+                if (distinct && i > 0 && Objects.equals(keys[i].value, keys[i - 1].value)) {
+                    iter.remove();
+                } else {
+                    iter.set(keys[i].node);
+                }
+            }
         }
     }
 
@@ -350,6 +463,55 @@ public class DefaultXPath implements org.neoxml.XPath, Serializable {
         return valueOf(node);
     }
 
+    /**
+     * @return native plan of the expression or null if it has to be evaluated by Jaxen
+     */
+    SimplePath getSimplePath() {
+        return simplePath;
+    }
+
+    /**
+     * Selects nodes of the expression without Jaxen, if it is simple enough
+     *
+     * @param context the context node
+     * @return selected nodes or null if the expression has to be evaluated by Jaxen
+     */
+    private List<Node> selectSimplePath(Object context) {
+        if (simplePath != null && context instanceof Node) {
+            return simplePath.selectNodes((Node) context);
+        }
+
+        return null;
+    }
+
+    /**
+     * Node with its compare value, values are computed just once for sorting
+     */
+    private static final class SortKey implements Comparable<SortKey> {
+        private final Node node;
+        private final String value;
+
+        SortKey(Node node, String value) {
+            this.node = node;
+            this.value = value;
+        }
+
+        @Override
+        @SuppressWarnings("StringEquality")
+        public int compareTo(SortKey that) {
+            if (value == that.value) {
+                // also handles both values being null
+                return 0;
+            } else if (value == null) {
+                return 1;
+            } else if (that.value == null) {
+                return -1;
+            }
+
+            return value.compareTo(that.value);
+        }
+    }
+
     protected static XPath parse(String text) {
         try {
             return new NeoXmlXPath(text);
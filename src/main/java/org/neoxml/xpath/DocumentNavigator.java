@@ -4,6 +4,7 @@ import org.jaxen.DefaultNavigator;
 import org.jaxen.FunctionCallException;
 import org.jaxen.NamedAccessNavigator;
 import org.jaxen.Navigator;
+import org.jaxen.UnsupportedAxisException;
 import org.jaxen.XPath;
 import org.jaxen.dom4j.Dom4jXPath;
 import org.jaxen.saxpath.SAXPathException;
@@ -21,11 +22,15 @@ import org.neoxml.ProcessingInstruction;
 import org.neoxml.QName;
 import org.neoxml.Text;
 import org.neoxml.io.SAXReader;
+import org.neoxml.tree.DefaultElement;
+import org.neoxml.tree.TreeCursor;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 import static java.util.Collections.emptyIterator;
@@ -134,8 +139,7 @@ class DocumentNavigator extends DefaultNavigator implements NamedAccessNavigator
     @Override
     public Iterator<Node> getChildAxisIterator(Object contextNode) {
         if (contextNode instanceof Branch) {
-            Branch node = (Branch) contextNode;
-            return node.nodeIterator();
+            return new AxisIterator<>((Node) contextNode, AxisIterator.CHILD, null);
         }
 
         return emptyIterator();
@@ -155,8 +159,8 @@ class DocumentNavigator extends DefaultNavigator implements NamedAccessNavigator
     @SuppressWarnings("unchecked")
     public Iterator<Element> getChildAxisIterator(Object contextNode, String localName, String namespacePrefix, String namespaceURI) {
         if (contextNode instanceof Element) {
-            Element node = (Element) contextNode;
-            return node.elementIterator(QName.get(localName, namespacePrefix, namespaceURI));
+            return new AxisIterator<>((Node) contextNode, AxisIterator.CHILD,
+                    QName.get(localName, namespacePrefix, namespaceURI));
         }
 
         if (contextNode instanceof Document) {
@@ -195,6 +199,52 @@ class DocumentNavigator extends DefaultNavigator implements NamedAccessNavigator
         return new SingleObjectIterator(parent);
     }
 
+    @Override
+    public Iterator<Node> getFollowingSiblingAxisIterator(Object contextNode) {
+        if (siblingParent(contextNode) == null) {
+            return emptyIterator();
+        }
+
+        return new AxisIterator<>((Node) contextNode, AxisIterator.FOLLOWING_SIBLING, null);
+    }
+
+    @Override
+    public Iterator<Node> getPrecedingSiblingAxisIterator(Object contextNode) {
+        if (siblingParent(contextNode) == null) {
+            return emptyIterator();
+        }
+
+        return new AxisIterator<>((Node) contextNode, AxisIterator.PRECEDING_SIBLING, null);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Iterator<Node> getFollowingAxisIterator(Object contextNode) throws UnsupportedAxisException {
+        if (contextNode instanceof Attribute || contextNode instanceof Namespace) {
+            return super.getFollowingAxisIterator(contextNode);
+        }
+
+        if (siblingParent(contextNode) == null) {
+            return emptyIterator();
+        }
+
+        return new AxisIterator<>((Node) contextNode, AxisIterator.FOLLOWING, null);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Iterator<Node> getPrecedingAxisIterator(Object contextNode) throws UnsupportedAxisException {
+        if (contextNode instanceof Attribute || contextNode instanceof Namespace) {
+            return super.getPrecedingAxisIterator(contextNode);
+        }
+
+        if (siblingParent(contextNode) == null) {
+            return emptyIterator();
+        }
+
+        return new AxisIterator<>((Node) contextNode, AxisIterator.PRECEDING, null);
+    }
+
     @Override
     public Iterator<Attribute> getAttributeAxisIterator(Object contextNode) {
         if (!(contextNode instanceof Element)) {
@@ -243,24 +293,25 @@ class DocumentNavigator extends DefaultNavigator implements NamedAccessNavigator
         final Set<String> prefixes = new HashSet<>();
 
         Element element = (Element) contextNode;
+        final Collection<Namespace> inScope = element instanceof DefaultElement
+                ? ((DefaultElement) element).getNamespacesInScope() : null;
 
-        for (Element context = element; context != null; context = context.getParent()) {
-            final List<Namespace> declaredNS = new ArrayList<>(context.declaredNamespaces());
+        if (inScope != null) {
+            // declarations come from the cached scope, only namespaces of attributes are collected from ancestors
+            addNamespaces(element, inScope, prefixes, nsList);
 
-            declaredNS.add(context.getNamespace());
-
-            for (Attribute attr : context.attributes()) {
-                declaredNS.add(attr.getNamespace());
+            for (Element context = element; context != null; context = context.getParent()) {
+                for (int i = 0, size = context.attributeCount(); i < size; i++) {
+                    addNamespace(element, context.attribute(i).getNamespace(), prefixes, nsList);
+                }
             }
+        } else {
+            for (Element context = element; context != null; context = context.getParent()) {
+                addNamespaces(element, context.declaredNamespaces(), prefixes, nsList);
+                addNamespace(element, context.getNamespace(), prefixes, nsList);
 
-            for (Namespace namespace : declaredNS) {
-                if (namespace != Namespace.NO_NAMESPACE) {
-                    String prefix = namespace.getPrefix();
-
-                    if (!prefixes.contains(prefix)) {
-                        prefixes.add(prefix);
-                        nsList.add(namespace.asXPathResult(element));
-                    }
+                for (Attribute attr : context.attributes()) {
+                    addNamespace(element, attr.getNamespace(), prefixes, nsList);
                 }
             }
         }
@@ -270,6 +321,19 @@ class DocumentNavigator extends DefaultNavigator implements NamedAccessNavigator
         return nsList.iterator();
     }
 
+    private static void addNamespaces(Element element, Collection<Namespace> namespaces, Set<String> prefixes,
+                                      List<Node> nsList) {
+        for (Namespace namespace : namespaces) {
+            addNamespace(element, namespace, prefixes, nsList);
+        }
+    }
+
+    private static void addNamespace(Element element, Namespace namespace, Set<String> prefixes, List<Node> nsList) {
+        if (namespace != Namespace.NO_NAMESPACE && prefixes.add(namespace.getPrefix())) {
+            nsList.add(namespace.asXPathResult(element));
+        }
+    }
+
     @Override
     public Document getDocumentNode(Object contextNode) {
         if (contextNode instanceof Document) {
@@ -415,6 +479,149 @@ class DocumentNavigator extends DefaultNavigator implements NamedAccessNavigator
     }
 
 
+    /**
+     * Returns the branch containing given node among its content, so the node has siblings.
+     *
+     * @return the parent element, the document of a root level node or null
+     */
+    private static Branch siblingParent(Object contextNode) {
+        if (contextNode instanceof Attribute || contextNode instanceof Namespace || !(contextNode instanceof Node)) {
+            return null;
+        }
+
+        final Node node = (Node) contextNode;
+        final Element parent = node.getParent();
+
+        if (parent != null) {
+            return parent;
+        }
+
+        final Document document = node.getDocument();
+        return document != node ? document : null;
+    }
+
+    /**
+     * Iterates nodes of an axis by moving a cursor from the context node, nothing is allocated per node
+     */
+    private static final class AxisIterator<T extends Node> implements Iterator<T> {
+        static final int CHILD = 0;
+        static final int FOLLOWING_SIBLING = 1;
+        static final int PRECEDING_SIBLING = 2;
+        static final int FOLLOWING = 3;
+        static final int PRECEDING = 4;
+
+        private final TreeCursor cursor;
+        private final int axis;
+
+        /**
+         * Name of the child elements, null for all children
+         */
+        private final QName name;
+
+        /**
+         * Depth of the cursor relative to the context node and the least depth it reached, the preceding axis skips
+         * ancestors of the context node which are reached at a new least depth
+         */
+        private int depth;
+        private int minDepth;
+
+        private boolean hasNext;
+
+        AxisIterator(Node contextNode, int axis, QName name) {
+            this.cursor = new TreeCursor(contextNode);
+            this.axis = axis;
+            this.name = name;
+
+            switch (axis) {
+                case CHILD:
+                    hasNext = name != null ? cursor.firstChildElement(name) : cursor.firstChild();
+                    break;
+                case FOLLOWING:
+                    // descendants of the context node don't follow it
+                    hasNext = following(false);
+                    break;
+                default:
+                    hasNext = move();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return hasNext;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (!hasNext) {
+                throw new NoSuchElementException();
+            }
+
+            final T node = (T) cursor.getNode();
+            hasNext = move();
+            return node;
+        }
+
+        private boolean move() {
+            switch (axis) {
+                case CHILD:
+                    return name != null ? cursor.nextSiblingElement(name) : cursor.nextSibling();
+                case FOLLOWING_SIBLING:
+                    return cursor.nextSibling();
+                case PRECEDING_SIBLING:
+                    return cursor.previousSibling();
+                case FOLLOWING:
+                    return following(true);
+                default:
+                    return preceding();
+            }
+        }
+
+        /**
+         * Moves to the next node in document order which is not an ancestor
+         */
+        private boolean following(boolean descend) {
+            if (descend && cursor.firstChild()) {
+                return true;
+            }
+
+            do {
+                if (cursor.nextSibling()) {
+                    return true;
+                }
+            } while (cursor.parent());
+
+            return false;
+        }
+
+        /**
+         * Moves to the previous node in document order which is not an ancestor of the context node
+         */
+        private boolean preceding() {
+            while (true) {
+                if (cursor.previousSibling()) {
+                    // the last descendant of the previous sibling
+                    while (cursor.lastChild()) {
+                        depth++;
+                    }
+
+                    return true;
+                }
+
+                if (!cursor.parent()) {
+                    return false;
+                }
+
+                if (--depth >= minDepth) {
+                    // all descendants were returned
+                    return true;
+                }
+
+                minDepth = depth;
+            }
+        }
+    }
+
     /**
      * Singleton implementation.
      */
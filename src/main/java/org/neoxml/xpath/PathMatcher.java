@@ -0,0 +1,396 @@
+package org.neoxml.xpath;
+
+import org.neoxml.Element;
+import org.neoxml.QName;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>
+ * <code>PathMatcher</code> evaluates a {@link SimplePath} incrementally while elements are visited in document order,
+ * so the path can be matched during a single depth-first walk of a tree or while SAX events are parsed.
+ * </p>
+ * <p>
+ * Each visited node has a {@link Frame} which records, for every path of the union, which prefixes of the path select
+ * the node and which descendant steps are open above it. A child frame is computed from its parent frame and the name
+ * and attributes of the child only, positions are counted in the parent frame.
+ * </p>
+ */
+final class PathMatcher {
+    private static final int MAX_STEPS = 62;
+
+    private static final int ELEMENT = 0;
+    private static final int ATTRIBUTE = 1;
+    private static final int TEXT = 2;
+
+    /**
+     * Values of attributes of a visited element
+     */
+    @FunctionalInterface
+    interface AttributeValues {
+        /**
+         * @param qName the name of the attribute
+         * @return value of the attribute or null if the element doesn't have it
+         */
+        String attributeValue(QName qName);
+    }
+
+    private final Program[] programs;
+    private final int counterCount;
+    private final boolean absolute;
+
+    private PathMatcher(List<Program> programs) {
+        this.programs = programs.toArray(new Program[0]);
+
+        int counters = 0;
+        boolean anyAbsolute = false;
+
+        for (Program program : programs) {
+            program.counterOffset = counters;
+            counters += program.counterCount;
+            anyAbsolute |= program.absolute;
+        }
+
+        this.counterCount = counters;
+        this.absolute = anyAbsolute;
+    }
+
+    /**
+     * Creates matcher of given path
+     *
+     * @param path      the compiled path
+     * @param streaming true if elements are not available, so predicates on child elements cannot be evaluated
+     * @return the matcher or null if the path cannot be matched incrementally
+     */
+    static PathMatcher create(SimplePath path, boolean streaming) {
+        final List<Program> programs = new ArrayList<>(path.paths.length);
+
+        for (SimplePath.Path p : path.paths) {
+            final Program program = Program.compile(p, streaming);
+
+            if (program == null) {
+                return null;
+            }
+
+            programs.add(program);
+        }
+
+        return new PathMatcher(programs);
+    }
+
+    /**
+     * @return true if some path of the union is absolute
+     */
+    boolean isAbsolute() {
+        return absolute;
+    }
+
+    /**
+     * @return new frame for this matcher
+     */
+    Frame newFrame() {
+        return new Frame(programs.length, counterCount);
+    }
+
+    /**
+     * Initializes the frame of the context node, the walk starts there
+     *
+     * @param frame    the frame to initialize
+     * @param document true if the context node is the document
+     */
+    void start(Frame frame, boolean document) {
+        frame.reset();
+
+        for (int i = 0; i < programs.length; i++) {
+            final Program program = programs[i];
+
+            if (document || !program.absolute) {
+                frame.matched[i] = 1L;
+                frame.open[i] = 1L & program.descendantMask;
+            }
+        }
+    }
+
+    /**
+     * Computes frame of a child element
+     *
+     * @param parent     the frame of the parent
+     * @param frame      the frame of the child to compute
+     * @param qName      the name of the child
+     * @param attributes the attributes of the child
+     * @param element    the child or null if it is not available
+     */
+    void child(Frame parent, Frame frame, QName qName, AttributeValues attributes, Element element) {
+        frame.reset();
+
+        for (int i = 0; i < programs.length; i++) {
+            final Program program = programs[i];
+            final long candidates = (parent.matched[i] | parent.open[i]) & program.stepMask;
+            final long matched = candidates != 0
+                    ? program.match(candidates, parent.counters, qName, attributes, element) : 0L;
+
+            frame.matched[i] = matched;
+            frame.open[i] = parent.open[i] | (matched & program.descendantMask);
+        }
+    }
+
+    /**
+     * @return true if the node of given frame or some of its descendants may be selected
+     */
+    boolean isActive(Frame frame) {
+        for (int i = 0; i < programs.length; i++) {
+            if ((frame.matched[i] | frame.open[i]) != 0) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return true if the node of given frame is selected
+     */
+    boolean selects(Frame frame) {
+        for (int i = 0; i < programs.length; i++) {
+            final Program program = programs[i];
+
+            if (program.last == ELEMENT && (frame.matched[i] & program.finalBit) != 0) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return true if an attribute of the element of given frame is selected
+     */
+    boolean selectsAttribute(Frame frame, QName qName) {
+        for (int i = 0; i < programs.length; i++) {
+            final Program program = programs[i];
+
+            if (program.last == ATTRIBUTE && ((frame.matched[i] | frame.open[i]) & program.finalBit) != 0
+                    && (program.lastName == null || program.lastName.equals(qName))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return true if text children of the node of given frame are selected
+     */
+    boolean selectsText(Frame frame) {
+        for (int i = 0; i < programs.length; i++) {
+            final Program program = programs[i];
+
+            if (program.last == TEXT && ((frame.matched[i] | frame.open[i]) & program.finalBit) != 0) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return true if some path selects attributes
+     */
+    boolean hasAttributeSteps() {
+        for (Program program : programs) {
+            if (program.last == ATTRIBUTE) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Matching state of one visited node
+     */
+    static final class Frame {
+        /**
+         * Bit k is set if the first k element steps of the path select the node
+         */
+        final long[] matched;
+
+        /**
+         * Bit k is set if step k follows <code>//</code> and the first k steps select the node or its ancestor
+         */
+        final long[] open;
+
+        /**
+         * Counters of positional predicates, for children of the node
+         */
+        final int[] counters;
+
+        Frame(int programs, int counters) {
+            this.matched = new long[programs];
+            this.open = new long[programs];
+            this.counters = new int[counters];
+        }
+
+        void reset() {
+            Arrays.fill(matched, 0L);
+            Arrays.fill(open, 0L);
+
+            if (counters.length > 0) {
+                Arrays.fill(counters, 0);
+            }
+        }
+    }
+
+    /**
+     * One path of the union as element steps followed by the last step
+     */
+    private static final class Program {
+        private final boolean absolute;
+        private final QName[] names;
+        private final SimplePath.Predicate[][] predicates;
+
+        /**
+         * Slots of positional predicates in counters, -1 for other predicates
+         */
+        private final int[][] counterSlots;
+
+        private final int counterCount;
+        private final long stepMask;
+        private final long descendantMask;
+        private final long finalBit;
+        private final int last;
+        private final QName lastName;
+        private int counterOffset;
+
+        private Program(boolean absolute, List<SimplePath.Step> steps, List<Boolean> descendants, int last,
+                        QName lastName, boolean lastDescendant) {
+            final int count = steps.size();
+
+            this.absolute = absolute;
+            this.names = new QName[count];
+            this.predicates = new SimplePath.Predicate[count][];
+            this.counterSlots = new int[count][];
+
+            int counters = 0;
+            long descendant = 0;
+
+            for (int k = 0; k < count; k++) {
+                final SimplePath.Step step = steps.get(k);
+
+                names[k] = step.name;
+                predicates[k] = step.predicates;
+                counterSlots[k] = new int[step.predicates.length];
+
+                for (int p = 0; p < step.predicates.length; p++) {
+                    counterSlots[k][p] = step.predicates[p].position > 0 ? counters++ : -1;
+                }
+
+                if (descendants.get(k)) {
+                    descendant |= 1L << k;
+                }
+            }
+
+            if (lastDescendant) {
+                descendant |= 1L << count;
+            }
+
+            this.counterCount = counters;
+            this.stepMask = (1L << count) - 1;
+            this.descendantMask = descendant;
+            this.finalBit = 1L << count;
+            this.last = last;
+            this.lastName = lastName;
+        }
+
+        static Program compile(SimplePath.Path path, boolean streaming) {
+            final List<SimplePath.Step> steps = new ArrayList<>();
+            final List<Boolean> descendants = new ArrayList<>();
+            boolean descendant = false;
+
+            for (SimplePath.Step step : path.steps) {
+                switch (step.kind) {
+                    case SimplePath.SELF:
+                        break;
+                    case SimplePath.DESCENDANT_OR_SELF:
+                        descendant = true;
+                        break;
+                    case SimplePath.CHILD:
+                        if (streaming) {
+                            for (SimplePath.Predicate predicate : step.predicates) {
+                                if (predicate.elementName != null) {
+                                    return null;
+                                }
+                            }
+                        }
+
+                        steps.add(step);
+                        descendants.add(descendant);
+                        descendant = false;
+                        break;
+                    case SimplePath.ATTRIBUTE:
+                        return create(path, steps, descendants, ATTRIBUTE, step.name, descendant);
+                    case SimplePath.TEXT:
+                        return create(path, steps, descendants, TEXT, null, descendant);
+                    default:
+                        return null;
+                }
+            }
+
+            return create(path, steps, descendants, ELEMENT, null, false);
+        }
+
+        private static Program create(SimplePath.Path path, List<SimplePath.Step> steps, List<Boolean> descendants,
+                                      int last, QName lastName, boolean lastDescendant) {
+            if (steps.size() > MAX_STEPS) {
+                return null;
+            }
+
+            return new Program(path.absolute, steps, descendants, last, lastName, lastDescendant);
+        }
+
+        /**
+         * @return prefixes of the path which select the child
+         */
+        long match(long candidates, int[] counters, QName qName, AttributeValues attributes, Element element) {
+            long matched = 0;
+
+            while (candidates != 0) {
+                final int k = Long.numberOfTrailingZeros(candidates);
+                candidates &= candidates - 1;
+
+                if ((names[k] == null || names[k].equals(qName))
+                        && test(k, counters, attributes, element)) {
+                    matched |= 1L << (k + 1);
+                }
+            }
+
+            return matched;
+        }
+
+        private boolean test(int k, int[] counters, AttributeValues attributes, Element element) {
+            final SimplePath.Predicate[] stepPredicates = predicates[k];
+
+            for (int p = 0; p < stepPredicates.length; p++) {
+                final SimplePath.Predicate predicate = stepPredicates[p];
+
+                if (predicate.position > 0) {
+                    if (++counters[counterOffset + counterSlots[k][p]] != predicate.position) {
+                        return false;
+                    }
+                } else if (predicate.attributeName != null) {
+                    final String value = attributes.attributeValue(predicate.attributeName);
+
+                    if (value == null || (predicate.value != null && !predicate.value.equals(value))) {
+                        return false;
+                    }
+                } else if (element == null || !predicate.matches(element)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+}
@@ -0,0 +1,747 @@
+package org.neoxml.xpath;
+
+import org.jaxen.NamespaceContext;
+import org.neoxml.Attribute;
+import org.neoxml.Branch;
+import org.neoxml.CDATA;
+import org.neoxml.Document;
+import org.neoxml.Element;
+import org.neoxml.Namespace;
+import org.neoxml.Node;
+import org.neoxml.QName;
+import org.neoxml.Text;
+import org.neoxml.tree.AbstractDocument;
+import org.neoxml.tree.DocumentOrder;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <p>
+ * <code>SimplePath</code> is a traversal plan for the simple subset of XPath expressions which is evaluated directly
+ * on the neoxml tree, without the generic Jaxen navigation. Names are resolved to {@link QName}s once, when the
+ * expression is compiled.
+ * </p>
+ * <p>
+ * The subset consists of absolute or relative location paths whose steps are separated by <code>/</code> or
+ * <code>//</code>. A step is <code>.</code>, an element name test (<code>name</code>, <code>prefix:name</code> or
+ * <code>*</code>) optionally followed by predicates, or, as the last step only, an attribute name test
+ * (<code>@name</code> or <code>@*</code>) or <code>text()</code>. Predicates are positions (<code>[2]</code>),
+ * attribute tests (<code>[@id]</code>, <code>[@id='x']</code>) and child element value tests
+ * (<code>[name='x']</code>). Several paths can be joined into a union by <code>|</code>, which is sorted by
+ * {@link DocumentOrder}. The whole expression may also be wrapped in <code>count()</code>.
+ * </p>
+ * <p>
+ * Element steps following <code>//</code> are looked up in an attribute index of the document when they test
+ * attribute equality, see {@link Document#addAttributeIndex(String, QName, QName)}, or in its element index when it is
+ * enabled, see {@link AbstractDocument#setElementIndexEnabled(boolean)}.
+ * </p>
+ * <p>
+ * {@link #compile(String, NamespaceContext)} returns null for any other expression, which is then left to Jaxen.
+ * </p>
+ */
+class SimplePath implements Serializable {
+    private static final long serialVersionUID = 1;
+
+    static final int SELF = 0;
+    static final int CHILD = 1;
+    static final int DESCENDANT_OR_SELF = 2;
+    static final int ATTRIBUTE = 3;
+    static final int TEXT = 4;
+
+    private final boolean count;
+
+    /**
+     * Paths of the union, there is just one if the expression is not a union
+     */
+    final Path[] paths;
+
+    private SimplePath(boolean count, List<Path> paths) {
+        this.count = count;
+        this.paths = paths.toArray(new Path[0]);
+    }
+
+    /**
+     * Compiles given expression
+     *
+     * @param text             the XPath expression
+     * @param namespaceContext context used to resolve prefixes, may be null
+     * @return compiled path or null if the expression is not in the supported subset
+     */
+    static SimplePath compile(String text, NamespaceContext namespaceContext) {
+        return new Parser(text, namespaceContext).parse();
+    }
+
+    /**
+     * @return true if this is a <code>count()</code> of the path, false if this is the path itself
+     */
+    boolean isCount() {
+        return count;
+    }
+
+    /**
+     * Selects nodes of this path in document order
+     *
+     * @param context the context node
+     * @return selected nodes or null if the path cannot be evaluated from given context
+     */
+    List<Node> selectNodes(Node context) {
+        if (paths.length == 1) {
+            return paths[0].selectNodes(context);
+        }
+
+        final Document document = context.getDocument();
+
+        if (document == null) {
+            return null;
+        }
+
+        final List<Node> result = new ArrayList<>();
+        final Set<Node> distinct = identitySet();
+
+        for (Path path : paths) {
+            final List<Node> nodes = path.selectNodes(context);
+
+            if (nodes == null) {
+                return null;
+            }
+
+            for (Node node : nodes) {
+                if (distinct.add(node)) {
+                    result.add(node);
+                }
+            }
+        }
+
+        DocumentOrder.of(document).sort(result);
+        return result;
+    }
+
+    /**
+     * One location path
+     */
+    static final class Path implements Serializable {
+        private static final long serialVersionUID = 1;
+
+        final boolean absolute;
+        final Step[] steps;
+
+        Path(boolean absolute, List<Step> steps) {
+            this.absolute = absolute;
+            this.steps = steps.toArray(new Step[0]);
+        }
+
+        List<Node> selectNodes(Node context) {
+            Node start = context;
+
+            if (absolute) {
+                start = context.getDocument();
+
+                if (start == null) {
+                    return null;
+                }
+            }
+
+            List<Node> nodes = new ArrayList<>(1);
+            nodes.add(start);
+            // whether some of the nodes can be descendants of other ones
+            boolean nested = false;
+
+            for (int i = 0; i < steps.length; i++) {
+                final Step step = steps[i];
+
+                if (nodes.isEmpty()) {
+                    break;
+                }
+
+                switch (step.kind) {
+                    case CHILD:
+                    case TEXT:
+                        nodes = nested ? step.selectNestedChildren(nodes) : step.selectChildren(nodes);
+                        nested = nested && step.kind == CHILD;
+                        break;
+                    case DESCENDANT_OR_SELF:
+                        final List<Node> indexed = i + 1 < steps.length && nodes.size() == 1
+                                ? steps[i + 1].selectIndexedDescendants(nodes.get(0)) : null;
+
+                        if (indexed != null) {
+                            nodes = indexed;
+                            i++;
+                        } else {
+                            nodes = selectDescendants(nodes, nested);
+                        }
+
+                        nested = true;
+                        break;
+                    case ATTRIBUTE:
+                        nodes = step.selectAttributes(nodes);
+                        nested = false;
+                        break;
+                    default:
+                        break;
+                }
+            }
+
+            return nodes;
+        }
+    }
+
+    /**
+     * Selects branches of given nodes and all their descendant branches. Nodes which are already contained in the
+     * result are skipped, so the result remains in document order.
+     */
+    private static List<Node> selectDescendants(List<Node> nodes, boolean nested) {
+        final List<Node> result = new ArrayList<>();
+        final Set<Node> visited = nested ? identitySet() : null;
+
+        for (Node node : nodes) {
+            if (node instanceof Branch && (visited == null || !visited.contains(node))) {
+                addDescendants((Branch) node, result, visited);
+            }
+        }
+
+        return result;
+    }
+
+    private static void addDescendants(Branch branch, List<Node> result, Set<Node> visited) {
+        result.add(branch);
+
+        if (visited != null) {
+            visited.add(branch);
+        }
+
+        for (int i = 0, size = branch.nodeCount(); i < size; i++) {
+            final Node node = branch.node(i);
+
+            if (node instanceof Element) {
+                addDescendants((Element) node, result, visited);
+            }
+        }
+    }
+
+    private static Set<Node> identitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    /**
+     * One step of the path
+     */
+    static final class Step implements Serializable {
+        private static final long serialVersionUID = 1;
+
+        final int kind;
+
+        /**
+         * Name of selected elements or attributes, null selects all of them
+         */
+        final QName name;
+
+        final Predicate[] predicates;
+
+        Step(int kind, QName name, List<Predicate> predicates) {
+            this.kind = kind;
+            this.name = name;
+            this.predicates = predicates.toArray(new Predicate[0]);
+        }
+
+        /**
+         * Selects elements of this step among all descendants of given node using an attribute index or the element
+         * index of its document. It is applicable to element steps without positional predicates only.
+         *
+         * @return selected elements in document order or null if no index can be used
+         */
+        List<Node> selectIndexedDescendants(Node node) {
+            if (kind != CHILD || !(node instanceof Branch)) {
+                return null;
+            }
+
+            for (Predicate predicate : predicates) {
+                if (predicate.position > 0) {
+                    return null;
+                }
+            }
+
+            final Document document = node.getDocument();
+
+            if (!(document instanceof AbstractDocument)) {
+                return null;
+            }
+
+            List<Element> elements = lookupAttribute((AbstractDocument) document);
+
+            if (elements == null) {
+                if (name == null || !((AbstractDocument) document).isElementIndexEnabled()) {
+                    return null;
+                }
+
+                elements = document.elementsByQName(name);
+            }
+
+            if (node != document) {
+                elements = DocumentOrder.of(document).descendants(node, elements);
+            }
+
+            final List<Node> result = new ArrayList<>(elements.size());
+
+            for (Element element : elements) {
+                if (matches(element)) {
+                    result.add(element);
+                }
+            }
+
+            for (Predicate predicate : predicates) {
+                predicate.filter(result, 0);
+            }
+
+            return result;
+        }
+
+        /**
+         * @return candidates of an attribute equality predicate found in an attribute index, or null
+         */
+        private List<Element> lookupAttribute(AbstractDocument document) {
+            for (Predicate predicate : predicates) {
+                if (predicate.attributeName != null && predicate.value != null) {
+                    final List<Element> elements = document.lookup(predicate.attributeName, name, predicate.value);
+
+                    if (elements != null) {
+                        return elements;
+                    }
+                }
+            }
+
+            return null;
+        }
+
+        List<Node> selectChildren(List<Node> nodes) {
+            final List<Node> result = new ArrayList<>();
+
+            for (Node node : nodes) {
+                if (node instanceof Branch) {
+                    addChildren((Branch) node, result);
+                }
+            }
+
+            return result;
+        }
+
+        /**
+         * Selects children of nodes which can be nested. Children of each node are selected first, then they are
+         * collected in document order by walking subtrees of the nodes.
+         */
+        List<Node> selectNestedChildren(List<Node> nodes) {
+            final Set<Node> selected = identitySet();
+            final List<Node> children = new ArrayList<>();
+
+            for (Node node : nodes) {
+                if (node instanceof Branch) {
+                    addChildren((Branch) node, children);
+                    selected.addAll(children);
+                    children.clear();
+                }
+            }
+
+            final List<Node> result = new ArrayList<>(selected.size());
+            final Set<Node> visited = identitySet();
+
+            for (Node node : nodes) {
+                if (node instanceof Branch && !visited.contains(node)) {
+                    collect((Branch) node, selected, visited, result);
+                }
+            }
+
+            return result;
+        }
+
+        private static void collect(Branch branch, Set<Node> selected, Set<Node> visited, List<Node> result) {
+            visited.add(branch);
+
+            for (int i = 0, size = branch.nodeCount(); i < size; i++) {
+                final Node node = branch.node(i);
+
+                if (selected.contains(node)) {
+                    result.add(node);
+                }
+
+                if (node instanceof Element) {
+                    collect((Element) node, selected, visited, result);
+                }
+            }
+        }
+
+        List<Node> selectAttributes(List<Node> nodes) {
+            final List<Node> result = new ArrayList<>();
+
+            for (Node node : nodes) {
+                if (node instanceof Element) {
+                    final Element element = (Element) node;
+
+                    if (name != null) {
+                        final Attribute attribute = element.attribute(name);
+
+                        if (attribute != null) {
+                            result.add(attribute);
+                        }
+                    } else {
+                        for (int i = 0, size = element.attributeCount(); i < size; i++) {
+                            result.add(element.attribute(i));
+                        }
+                    }
+                }
+            }
+
+            return result;
+        }
+
+        private void addChildren(Branch branch, List<Node> result) {
+            final int first = result.size();
+
+            for (int i = 0, size = branch.nodeCount(); i < size; i++) {
+                final Node node = branch.node(i);
+
+                if (matches(node)) {
+                    result.add(node);
+                }
+            }
+
+            for (Predicate predicate : predicates) {
+                predicate.filter(result, first);
+            }
+        }
+
+        private boolean matches(Node node) {
+            if (kind == TEXT) {
+                return node instanceof Text || node instanceof CDATA;
+            }
+
+            if (node instanceof Element) {
+                return name == null || name.equals(((Element) node).getQName());
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * Predicate of an element step
+     */
+    static final class Predicate implements Serializable {
+        private static final long serialVersionUID = 1;
+
+        /**
+         * Position of selected element, 0 if the predicate is not positional
+         */
+        final int position;
+
+        final QName attributeName;
+        final QName elementName;
+
+        /**
+         * Required string value, null if only presence of the attribute is tested
+         */
+        final String value;
+
+        Predicate(int position, QName attributeName, QName elementName, String value) {
+            this.position = position;
+            this.attributeName = attributeName;
+            this.elementName = elementName;
+            this.value = value;
+        }
+
+        /**
+         * Filters nodes of one parent, starting at given index of the list
+         */
+        void filter(List<Node> nodes, int first) {
+            if (position > 0) {
+                final int index = first + position - 1;
+                final Node node = index < nodes.size() ? nodes.get(index) : null;
+
+                nodes.subList(first, nodes.size()).clear();
+
+                if (node != null) {
+                    nodes.add(node);
+                }
+            } else {
+                nodes.subList(first, nodes.size()).removeIf(node -> !matches((Element) node));
+            }
+        }
+
+        boolean matches(Element element) {
+            if (attributeName != null) {
+                final Attribute attribute = element.attribute(attributeName);
+                return attribute != null && (value == null || value.equals(attribute.getValue()));
+            }
+
+            for (int i = 0, size = element.nodeCount(); i < size; i++) {
+                final Node node = element.node(i);
+
+                if (node instanceof Element && elementName.equals(((Element) node).getQName())
+                        && value.equals(node.getStringValue())) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * Parser of the supported subset, it gives up on anything else
+     */
+    private static final class Parser {
+        private final String text;
+        private final NamespaceContext namespaceContext;
+        private int pos;
+
+        Parser(String text, NamespaceContext namespaceContext) {
+            this.text = text;
+            this.namespaceContext = namespaceContext;
+        }
+
+        SimplePath parse() {
+            boolean count = false;
+            String path = text;
+
+            if (text.startsWith("count(") && text.endsWith(")")) {
+                count = true;
+                pos = "count(".length();
+                path = text.substring(0, text.length() - 1);
+            }
+
+            final List<Path> paths = new ArrayList<>();
+
+            do {
+                final Path result = parsePath(path);
+
+                if (result == null) {
+                    return null;
+                }
+
+                paths.add(result);
+            } while (path.startsWith("|", pos++));
+
+            return pos == path.length() + 1 ? new SimplePath(count, paths) : null;
+        }
+
+        private Path parsePath(String path) {
+            final boolean absolute = path.startsWith("/", pos);
+            final List<Step> steps = new ArrayList<>();
+
+            if (!absolute) {
+                // relative path starts with a step
+                if (!parseStep(path, steps)) {
+                    return null;
+                }
+            }
+
+            while (pos < path.length() && path.charAt(pos) != '|') {
+                if (!steps.isEmpty() && isLast(steps.get(steps.size() - 1))) {
+                    return null;
+                }
+
+                if (path.startsWith("//", pos)) {
+                    pos += 2;
+                    steps.add(new Step(DESCENDANT_OR_SELF, null, Collections.emptyList()));
+
+                    if (path.startsWith(".", pos)) {
+                        return null;
+                    }
+                } else if (path.charAt(pos) == '/') {
+                    pos++;
+                } else {
+                    return null;
+                }
+
+                if (!parseStep(path, steps)) {
+                    return null;
+                }
+            }
+
+            return steps.isEmpty() ? null : new Path(absolute, steps);
+        }
+
+        private static boolean isLast(Step step) {
+            return step.kind == ATTRIBUTE || step.kind == TEXT;
+        }
+
+        private boolean parseStep(String path, List<Step> steps) {
+            if (path.startsWith("text()", pos)) {
+                pos += "text()".length();
+                steps.add(new Step(TEXT, null, Collections.emptyList()));
+                return true;
+            }
+
+            if (path.startsWith("..", pos)) {
+                return false;
+            }
+
+            if (path.startsWith(".", pos)) {
+                pos++;
+                steps.add(new Step(SELF, null, Collections.emptyList()));
+                return true;
+            }
+
+            final boolean attribute = path.startsWith("@", pos);
+
+            if (attribute) {
+                pos++;
+            }
+
+            QName name = null;
+
+            if (path.startsWith("*", pos)) {
+                pos++;
+            } else {
+                name = parseQName(path);
+
+                if (name == null) {
+                    return false;
+                }
+            }
+
+            if (attribute) {
+                steps.add(new Step(ATTRIBUTE, name, Collections.emptyList()));
+                return true;
+            }
+
+            final List<Predicate> predicates = new ArrayList<>();
+
+            while (path.startsWith("[", pos)) {
+                pos++;
+
+                final Predicate predicate = parsePredicate(path);
+
+                if (predicate == null || !path.startsWith("]", pos)) {
+                    return false;
+                }
+
+                pos++;
+                predicates.add(predicate);
+            }
+
+            steps.add(new Step(CHILD, name, predicates));
+            return true;
+        }
+
+        private Predicate parsePredicate(String path) {
+            final int start = pos;
+
+            while (pos < path.length() && path.charAt(pos) >= '0' && path.charAt(pos) <= '9') {
+                pos++;
+            }
+
+            if (pos > start) {
+                if (pos - start > 9) {
+                    return null;
+                }
+
+                final int position = Integer.parseInt(path.substring(start, pos));
+                return position > 0 ? new Predicate(position, null, null, null) : null;
+            }
+
+            final boolean attribute = path.startsWith("@", pos);
+
+            if (attribute) {
+                pos++;
+            }
+
+            final QName name = parseQName(path);
+
+            if (name == null) {
+                return null;
+            }
+
+            String value = null;
+
+            if (path.startsWith("=", pos)) {
+                pos++;
+                value = parseLiteral(path);
+
+                if (value == null) {
+                    return null;
+                }
+            } else if (!attribute) {
+                return null;
+            }
+
+            return attribute ? new Predicate(0, name, null, value) : new Predicate(0, null, name, value);
+        }
+
+        private String parseLiteral(String path) {
+            if (pos >= path.length()) {
+                return null;
+            }
+
+            final char quote = path.charAt(pos);
+
+            if (quote != '\'' && quote != '"') {
+                return null;
+            }
+
+            final int end = path.indexOf(quote, pos + 1);
+
+            if (end < 0) {
+                return null;
+            }
+
+            final String literal = path.substring(pos + 1, end);
+            pos = end + 1;
+            return literal;
+        }
+
+        private QName parseQName(String path) {
+            String prefix = null;
+            String localName = parseNCName(path);
+
+            if (localName != null && path.startsWith(":", pos)) {
+                pos++;
+                prefix = localName;
+                localName = parseNCName(path);
+            }
+
+            if (localName == null || path.startsWith("(", pos)) {
+                // node tests and function calls are not supported
+                return null;
+            }
+
+            if (prefix == null) {
+                return QName.get(localName, Namespace.NO_NAMESPACE);
+            }
+
+            final String uri = namespaceContext != null ? namespaceContext.translateNamespacePrefixToUri(prefix) : null;
+
+            if (uri == null) {
+                // prefix can be resolved only during evaluation
+                return null;
+            }
+
+            return QName.get(localName, prefix, uri);
+        }
+
+        private String parseNCName(String path) {
+            final int start = pos;
+
+            if (pos < path.length() && isNameStart(path.charAt(pos))) {
+                pos++;
+
+                while (pos < path.length() && isNamePart(path.charAt(pos))) {
+                    pos++;
+                }
+            }
+
+            return pos > start ? path.substring(start, pos) : null;
+        }
+
+        private static boolean isNameStart(char c) {
+            return Character.isLetter(c) || c == '_';
+        }
+
+        private static boolean isNamePart(char c) {
+            return Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.';
+        }
+    }
+}
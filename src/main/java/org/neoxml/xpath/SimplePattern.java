@@ -0,0 +1,255 @@
+package org.neoxml.xpath;
+
+import org.neoxml.Attribute;
+import org.neoxml.CDATA;
+import org.neoxml.Document;
+import org.neoxml.Element;
+import org.neoxml.Node;
+import org.neoxml.Text;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * <code>SimplePattern</code> matches XSLT patterns of the {@link SimplePath} subset directly on the neoxml tree,
+ * without building a Jaxen context for every node. A pattern is matched bottom-up: the last step is tested against
+ * the node, then the preceding steps against its parent or, after <code>//</code>, above its ancestors.
+ * </p>
+ * <p>
+ * Names are compared by their local parts and predicates test attributes and child elements, the same way as Jaxen
+ * patterns do. Positional predicates are not supported, {@link #compile(String)} returns null for such patterns.
+ * </p>
+ */
+final class SimplePattern {
+    /**
+     * Alternatives of the union, there is just one if the pattern is not a union
+     */
+    private final Alternative[] alternatives;
+
+    private SimplePattern(Alternative[] alternatives) {
+        this.alternatives = alternatives;
+    }
+
+    /**
+     * Compiles given pattern
+     *
+     * @param text the XSLT pattern
+     * @return compiled pattern or null if the pattern is not in the supported subset
+     */
+    static SimplePattern compile(String text) {
+        final SimplePath path = SimplePath.compile(text, null);
+
+        if (path == null || path.isCount()) {
+            return null;
+        }
+
+        final Alternative[] alternatives = new Alternative[path.paths.length];
+
+        for (int i = 0; i < alternatives.length; i++) {
+            alternatives[i] = Alternative.compile(path.paths[i]);
+
+            if (alternatives[i] == null) {
+                return null;
+            }
+        }
+
+        return new SimplePattern(alternatives);
+    }
+
+    /**
+     * @return number of alternatives of the union
+     */
+    int size() {
+        return alternatives.length;
+    }
+
+    /**
+     * @param from the first alternative
+     * @param to   the end of the range, exclusive
+     * @return pattern of the alternatives in given range
+     */
+    SimplePattern subPattern(int from, int to) {
+        return new SimplePattern(Arrays.copyOfRange(alternatives, from, to));
+    }
+
+    /**
+     * @return the local name of elements or attributes matched by all alternatives, or null if they match various names
+     */
+    String getMatchesNodeName() {
+        String name = null;
+
+        for (Alternative alternative : alternatives) {
+            final int last = alternative.kinds.length - 1;
+            final String lastName = alternative.kinds[last] != SimplePath.TEXT ? alternative.names[last] : null;
+
+            if (lastName == null || (name != null && !name.equals(lastName))) {
+                return null;
+            }
+
+            name = lastName;
+        }
+
+        return name;
+    }
+
+    boolean matches(Node node) {
+        for (Alternative alternative : alternatives) {
+            if (alternative.matches(node, alternative.kinds.length - 1)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Parent as navigated by patterns, the root element has the document as its parent
+     */
+    private static Node parentNode(Node node) {
+        final Node parent = node.getParent();
+
+        if (parent != null) {
+            return parent;
+        }
+
+        final Document document = node.getDocument();
+        return document != node ? document : null;
+    }
+
+    /**
+     * One path of the union, its steps are tested from the last one
+     */
+    private static final class Alternative {
+        private final boolean absolute;
+        private final int[] kinds;
+        private final String[] names;
+        private final SimplePath.Predicate[][] predicates;
+
+        /**
+         * True for steps following <code>//</code>, they are matched by an ancestor of the node matched by the
+         * following step rather than by its parent
+         */
+        private final boolean[] ancestors;
+
+        private Alternative(boolean absolute, int size) {
+            this.absolute = absolute;
+            this.kinds = new int[size];
+            this.names = new String[size];
+            this.predicates = new SimplePath.Predicate[size][];
+            this.ancestors = new boolean[size];
+        }
+
+        static Alternative compile(SimplePath.Path path) {
+            int size = 0;
+
+            for (SimplePath.Step step : path.steps) {
+                if (step.kind == SimplePath.SELF) {
+                    return null;
+                }
+
+                if (step.kind != SimplePath.DESCENDANT_OR_SELF) {
+                    size++;
+                }
+            }
+
+            final Alternative alternative = new Alternative(path.absolute, size);
+            boolean ancestor = false;
+            int k = 0;
+
+            for (SimplePath.Step step : path.steps) {
+                if (step.kind == SimplePath.DESCENDANT_OR_SELF) {
+                    ancestor = true;
+                    continue;
+                }
+
+                for (SimplePath.Predicate predicate : step.predicates) {
+                    if (predicate.position > 0) {
+                        return null;
+                    }
+                }
+
+                alternative.kinds[k] = step.kind;
+                alternative.names[k] = step.name != null ? step.name.getName() : null;
+                alternative.predicates[k] = step.predicates;
+                alternative.ancestors[k] = ancestor;
+                ancestor = false;
+                k++;
+            }
+
+            return alternative;
+        }
+
+        /**
+         * @return true if the node is matched by the steps up to given one
+         */
+        boolean matches(Node node, int step) {
+            for (int k = step; ; k--) {
+                if (!test(node, k)) {
+                    return false;
+                }
+
+                final Node parent = parentNode(node);
+
+                if (k == 0 && !absolute) {
+                    return true;
+                }
+
+                if (ancestors[k]) {
+                    return matchesAbove(parent, k - 1);
+                }
+
+                if (k == 0) {
+                    return parent instanceof Document;
+                }
+
+                if (parent == null) {
+                    return false;
+                }
+
+                node = parent;
+            }
+        }
+
+        /**
+         * Matches the steps up to given one above an ancestor. Jaxen reads <code>a//b</code> as <code>b</code> having
+         * an ancestor whose parent is <code>a</code>, and <code>//b</code> as <code>b</code> having an ancestor whose
+         * parent is the document, so does this matcher.
+         *
+         * @param parent the parent of the node matched by the following step
+         * @param step   the last step to match, -1 for the document of an absolute path
+         */
+        private boolean matchesAbove(Node parent, int step) {
+            for (Node ancestor = parent; ancestor != null && !(ancestor instanceof Document);
+                 ancestor = parentNode(ancestor)) {
+                final Node above = parentNode(ancestor);
+
+                if (step < 0 ? above instanceof Document : above != null && matches(above, step)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        private boolean test(Node node, int k) {
+            switch (kinds[k]) {
+                case SimplePath.TEXT:
+                    return node instanceof Text || node instanceof CDATA;
+                case SimplePath.ATTRIBUTE:
+                    return node instanceof Attribute && (names[k] == null || names[k].equals(node.getName()));
+                default:
+                    if (!(node instanceof Element) || (names[k] != null && !names[k].equals(node.getName()))) {
+                        return false;
+                    }
+
+                    for (SimplePath.Predicate predicate : predicates[k]) {
+                        if (!predicate.matches((Element) node)) {
+                            return false;
+                        }
+                    }
+
+                    return true;
+            }
+        }
+    }
+}
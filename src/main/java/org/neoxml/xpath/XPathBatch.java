@@ -0,0 +1,285 @@
+package org.neoxml.xpath;
+
+import org.neoxml.Attribute;
+import org.neoxml.Branch;
+import org.neoxml.CDATA;
+import org.neoxml.Document;
+import org.neoxml.Element;
+import org.neoxml.Node;
+import org.neoxml.Text;
+import org.neoxml.XPath;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>
+ * <code>XPathBatch</code> evaluates several XPath expressions against the same context. Expressions in the subset
+ * evaluated natively by {@link DefaultXPath} (location paths with child, descendant and attribute steps and simple
+ * predicates, their unions and counts) are all matched during a single depth-first walk of the context, so the cost
+ * of the batch stays close to the cost of one traversal. Other expressions are evaluated one by one.
+ * </p>
+ * <p>
+ * Results are the same as if each expression was evaluated separately.
+ * </p>
+ */
+public class XPathBatch {
+    private final XPath[] xpaths;
+
+    /**
+     * Plans the matchers were created for, they are recreated when an expression changes its plan
+     */
+    private final SimplePath[] plans;
+
+    private final PathMatcher[] matchers;
+
+    /**
+     * Creates batch of given expressions
+     *
+     * @param xpaths the expressions
+     */
+    public XPathBatch(List<? extends XPath> xpaths) {
+        this.xpaths = xpaths.toArray(new XPath[0]);
+        this.plans = new SimplePath[this.xpaths.length];
+        this.matchers = new PathMatcher[this.xpaths.length];
+    }
+
+    /**
+     * @return number of expressions in this batch
+     */
+    public int size() {
+        return xpaths.length;
+    }
+
+    /**
+     * @return the expressions of this batch
+     */
+    public List<XPath> getXPaths() {
+        return Collections.unmodifiableList(Arrays.asList(xpaths));
+    }
+
+    /**
+     * Evaluates all expressions, see {@link XPath#evaluate(Object)}
+     *
+     * @param context the context node or list of nodes
+     * @return results of the expressions in the order of the expressions
+     */
+    public List<Object> evaluate(Object context) {
+        final List<List<Node>> selected = select(context);
+        final List<Object> results = new ArrayList<>(xpaths.length);
+
+        for (int i = 0; i < xpaths.length; i++) {
+            final List<Node> nodes = selected.get(i);
+
+            if (nodes == null) {
+                results.add(xpaths[i].evaluate(context));
+            } else if (plans[i].isCount()) {
+                results.add((double) nodes.size());
+            } else {
+                results.add(nodes.size() == 1 ? nodes.get(0) : nodes);
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Selects nodes of all expressions, see {@link XPath#selectNodes(Object)}
+     *
+     * @param context the context node or list of nodes
+     * @return selected nodes of the expressions in the order of the expressions
+     */
+    public List<List<Node>> selectNodes(Object context) {
+        final List<List<Node>> selected = select(context);
+        final List<List<Node>> results = new ArrayList<>(xpaths.length);
+
+        for (int i = 0; i < xpaths.length; i++) {
+            final List<Node> nodes = selected.get(i);
+            results.add(nodes == null || plans[i].isCount() ? xpaths[i].selectNodes(context) : nodes);
+        }
+
+        return results;
+    }
+
+    /**
+     * Selects nodes of all expressions which can be matched during the walk
+     *
+     * @return selected nodes by expressions, null for expressions which have to be evaluated separately
+     */
+    private List<List<Node>> select(Object context) {
+        final List<List<Node>> results = new ArrayList<>(Collections.nCopies(xpaths.length, null));
+
+        if (!(context instanceof Branch)) {
+            return results;
+        }
+
+        final Branch root = (Branch) context;
+        final boolean document = root instanceof Document;
+        final List<Walker> walkers = new ArrayList<>();
+
+        for (int i = 0; i < xpaths.length; i++) {
+            final PathMatcher matcher = matcher(i);
+
+            if (matcher != null && (document || !matcher.isAbsolute())) {
+                final List<Node> nodes = new ArrayList<>();
+                results.set(i, nodes);
+                walkers.add(new Walker(matcher, nodes));
+            }
+        }
+
+        if (!walkers.isEmpty()) {
+            walk(root, walkers.toArray(new Walker[0]));
+        }
+
+        return results;
+    }
+
+    private PathMatcher matcher(int index) {
+        final XPath xpath = xpaths[index];
+        final SimplePath plan = xpath instanceof DefaultXPath ? ((DefaultXPath) xpath).getSimplePath() : null;
+
+        if (plan != plans[index]) {
+            matchers[index] = plan != null ? PathMatcher.create(plan, false) : null;
+            plans[index] = plan;
+        }
+
+        return matchers[index];
+    }
+
+    private static void walk(Branch root, Walker[] walkers) {
+        Branch[] branches = new Branch[16];
+        int[] indexes = new int[16];
+        int depth = 0;
+
+        for (Walker walker : walkers) {
+            walker.start(root);
+        }
+
+        branches[0] = root;
+
+        while (depth >= 0) {
+            final Branch branch = branches[depth];
+
+            if (indexes[depth] >= branch.nodeCount()) {
+                branches[depth] = null;
+                depth--;
+                continue;
+            }
+
+            final Node node = branch.node(indexes[depth]++);
+
+            if (node instanceof Element) {
+                final Element element = (Element) node;
+                boolean active = false;
+
+                for (Walker walker : walkers) {
+                    active |= walker.element(element, depth);
+                }
+
+                if (active && element.nodeCount() > 0) {
+                    depth++;
+
+                    if (depth == branches.length) {
+                        branches = Arrays.copyOf(branches, depth * 2);
+                        indexes = Arrays.copyOf(indexes, depth * 2);
+                    }
+
+                    branches[depth] = element;
+                    indexes[depth] = 0;
+                }
+            } else if (node instanceof Text || node instanceof CDATA) {
+                for (Walker walker : walkers) {
+                    walker.text(node, depth);
+                }
+            }
+        }
+    }
+
+    /**
+     * Matches one expression during the walk
+     */
+    private static final class Walker {
+        private final PathMatcher matcher;
+        private final boolean attributes;
+        private final List<Node> result;
+        private PathMatcher.Frame[] frames = new PathMatcher.Frame[16];
+
+        Walker(PathMatcher matcher, List<Node> result) {
+            this.matcher = matcher;
+            this.attributes = matcher.hasAttributeSteps();
+            this.result = result;
+        }
+
+        void start(Branch root) {
+            final PathMatcher.Frame frame = frame(0);
+            matcher.start(frame, root instanceof Document);
+
+            if (matcher.selects(frame)) {
+                result.add(root);
+            }
+
+            if (root instanceof Element) {
+                addAttributes((Element) root, frame);
+            }
+        }
+
+        /**
+         * Visits element whose parent is at given depth
+         *
+         * @return true if descendants of the element may be selected
+         */
+        boolean element(Element element, int depth) {
+            final PathMatcher.Frame parent = frames[depth];
+            final PathMatcher.Frame frame = frame(depth + 1);
+
+            if (!matcher.isActive(parent)) {
+                frame.reset();
+                return false;
+            }
+
+            matcher.child(parent, frame, element.getQName(), element::attributeValue, element);
+
+            if (matcher.selects(frame)) {
+                result.add(element);
+            }
+
+            addAttributes(element, frame);
+            return matcher.isActive(frame);
+        }
+
+        /**
+         * Visits text whose parent is at given depth
+         */
+        void text(Node text, int depth) {
+            if (matcher.selectsText(frames[depth])) {
+                result.add(text);
+            }
+        }
+
+        private void addAttributes(Element element, PathMatcher.Frame frame) {
+            if (attributes) {
+                for (int i = 0, size = element.attributeCount(); i < size; i++) {
+                    final Attribute attribute = element.attribute(i);
+
+                    if (matcher.selectsAttribute(frame, attribute.getQName())) {
+                        result.add(attribute);
+                    }
+                }
+            }
+        }
+
+        private PathMatcher.Frame frame(int depth) {
+            if (depth == frames.length) {
+                frames = Arrays.copyOf(frames, depth * 2);
+            }
+
+            if (frames[depth] == null) {
+                frames[depth] = matcher.newFrame();
+            }
+
+            return frames[depth];
+        }
+    }
+}
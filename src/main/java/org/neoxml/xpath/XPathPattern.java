@@ -27,6 +27,10 @@ import java.util.ArrayList;
  * <p>
  * <code>XPathPattern</code> is an implementation of Pattern which uses an XPath xpath.
  * </p>
+ * <p>
+ * Patterns of the simple subset (names, <code>/</code> and <code>//</code> separated steps, attribute and child element
+ * predicates) are matched directly on the tree by {@link SimplePattern}, others are evaluated by Jaxen.
+ * </p>
  *
  * @author <a href="mailto:jstrachan@apache.org">James Strachan </a>
  * @version $Revision: 1.18 $
@@ -36,17 +40,30 @@ public class XPathPattern implements org.neoxml.rule.Pattern {
 
     private final Pattern pattern;
 
-    private final Context context;
+    /**
+     * Support shared by Jaxen contexts, a context is created for each match so patterns can be used concurrently
+     */
+    private final ContextSupport contextSupport;
+
+    /**
+     * Matcher used instead of Jaxen, null if the pattern is not in its subset
+     */
+    private final SimplePattern simplePattern;
 
     public XPathPattern(Pattern pattern) {
+        this(pattern, null);
+    }
+
+    private XPathPattern(Pattern pattern, SimplePattern simplePattern) {
         this.pattern = pattern;
         this.text = pattern.getText();
-        this.context = new Context(getContextSupport());
+        this.contextSupport = getContextSupport();
+        this.simplePattern = simplePattern;
     }
 
     public XPathPattern(String text) {
         this.text = text;
-        this.context = new Context(getContextSupport());
+        this.contextSupport = getContextSupport();
 
         try {
             this.pattern = PatternParser.parse(text);
@@ -55,13 +72,20 @@ public class XPathPattern implements org.neoxml.rule.Pattern {
         } catch (RuntimeException e) {
             throw new InvalidXPathException(text);
         }
+
+        this.simplePattern = SimplePattern.compile(text);
     }
 
     @Override
     public boolean matches(Node node) {
+        if (simplePattern != null) {
+            return simplePattern.matches(node);
+        }
+
         try {
             ArrayList<Node> list = new ArrayList<>(1);
             list.add(node);
+            Context context = new Context(contextSupport);
             context.setNodeSet(list);
 
             return pattern.matches(node, context);
@@ -88,9 +112,17 @@ public class XPathPattern implements org.neoxml.rule.Pattern {
         if (patterns != null) {
             int size = patterns.length;
             XPathPattern[] answer = new XPathPattern[size];
+            final SimplePattern simple = simplePattern != null && simplePattern.size() == alternativeCount(pattern)
+                    ? simplePattern : null;
+            int alternative = 0;
 
             for (int i = 0; i < size; i++) {
-                answer[i] = new XPathPattern(patterns[i]);
+                // Jaxen nests unions, so a part may cover several alternatives of the simple pattern
+                final int count = alternativeCount(patterns[i]);
+                final SimplePattern part = simple != null ? simple.subPattern(alternative, alternative + count) : null;
+
+                answer[i] = new XPathPattern(patterns[i], part);
+                alternative += count;
             }
 
             return answer;
@@ -107,11 +139,17 @@ public class XPathPattern implements org.neoxml.rule.Pattern {
 
     @Override
     public String getMatchesNodeName() {
-        return pattern.getMatchesNodeName();
+        final String name = pattern.getMatchesNodeName();
+
+        if (name == null && simplePattern != null) {
+            return simplePattern.getMatchesNodeName();
+        }
+
+        return name;
     }
 
     public void setVariableContext(VariableContext variableContext) {
-        context.getContextSupport().setVariableContext(variableContext);
+        contextSupport.setVariableContext(variableContext);
     }
 
     @Override
@@ -119,6 +157,22 @@ public class XPathPattern implements org.neoxml.rule.Pattern {
         return "[XPathPattern: text: " + text + " Pattern: " + pattern + "]";
     }
 
+    private static int alternativeCount(Pattern pattern) {
+        final Pattern[] patterns = pattern.getUnionPatterns();
+
+        if (patterns == null) {
+            return 1;
+        }
+
+        int count = 0;
+
+        for (Pattern part : patterns) {
+            count += alternativeCount(part);
+        }
+
+        return count;
+    }
+
     protected ContextSupport getContextSupport() {
         return new ContextSupport(new SimpleNamespaceContext(), XPathFunctionContext.getInstance(),
                                   new SimpleVariableContext(), DocumentNavigator.getInstance());
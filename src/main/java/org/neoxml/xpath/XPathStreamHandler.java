@@ -0,0 +1,497 @@
+package org.neoxml.xpath;
+
+import org.jaxen.NamespaceContext;
+import org.jaxen.SimpleNamespaceContext;
+import org.neoxml.DocumentException;
+import org.neoxml.InvalidXPathException;
+import org.neoxml.QName;
+import org.neoxml.io.SAXReader;
+import org.neoxml.tree.NamespaceStack;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ * <code>XPathStreamHandler</code> evaluates XPath expressions on SAX events without building a document. It supports
+ * forward-only location paths: child and descendant element steps with attribute and position predicates, followed by
+ * an optional attribute or <code>text()</code> step, and unions of such paths.
+ * </p>
+ * <p>
+ * String values of the selected nodes are passed to the listener of the expression as soon as they are known, values
+ * of attributes when their element starts and values of elements when they end. Expressions added by
+ * {@link #addFirst(String, Consumer)} stop after their first value, parsing is stopped early once all expressions are
+ * satisfied.
+ * </p>
+ * <p>
+ * The handler can be passed to any namespace aware <code>XMLReader</code>, or used by
+ * {@link #parse(XMLReader, InputSource)} and {@link #read(SAXReader, InputSource)} which also handle the early stop.
+ * </p>
+ */
+public class XPathStreamHandler extends DefaultHandler implements LexicalHandler {
+    private final NamespaceContext namespaceContext;
+    private final List<Query> queries = new ArrayList<>();
+    private final NamespaceStack namespaceStack = new NamespaceStack();
+
+    /**
+     * Characters of selected elements which are not complete yet
+     */
+    private final StringBuilder text = new StringBuilder();
+
+    /**
+     * Number of selected elements which are not complete yet
+     */
+    private int captures;
+
+    /**
+     * Depth of the current node, the document is at depth 0
+     */
+    private int depth;
+
+    /**
+     * Depth of the element whose content cannot be selected, 0 if there is none
+     */
+    private int skipDepth;
+
+    /**
+     * Number of expressions still waiting for their first value, -1 if some expression wants all values
+     */
+    private int remaining = -1;
+
+    public XPathStreamHandler() {
+        this(null);
+    }
+
+    /**
+     * @param namespaceURIs prefixes used by the expressions mapped to namespace URIs, may be null
+     */
+    public XPathStreamHandler(Map<String, String> namespaceURIs) {
+        this.namespaceContext = namespaceURIs != null ? new SimpleNamespaceContext(namespaceURIs) : null;
+    }
+
+    /**
+     * Adds an expression whose all values are passed to the listener
+     *
+     * @param xpath    the expression
+     * @param listener receives string values of the selected nodes
+     * @return this handler
+     * @throws InvalidXPathException if the expression cannot be evaluated on a stream
+     */
+    public XPathStreamHandler add(String xpath, Consumer<String> listener) {
+        queries.add(new Query(compile(xpath), listener, false));
+        return this;
+    }
+
+    /**
+     * Adds an expression whose first value only is passed to the listener
+     *
+     * @param xpath    the expression
+     * @param listener receives string value of the first selected node
+     * @return this handler
+     * @throws InvalidXPathException if the expression cannot be evaluated on a stream
+     */
+    public XPathStreamHandler addFirst(String xpath, Consumer<String> listener) {
+        queries.add(new Query(compile(xpath), listener, true));
+        return this;
+    }
+
+    /**
+     * @return true if all expressions were added by {@link #addFirst(String, Consumer)} and all got their value
+     */
+    public boolean isSatisfied() {
+        return remaining == 0;
+    }
+
+    /**
+     * Parses the input by given reader, parsing stops when all expressions are satisfied
+     *
+     * @param reader the reader, it is switched to namespace aware mode and gets this handler as its lexical handler if
+     *               it supports one
+     * @param in     the input
+     * @throws SAXException if parsing fails
+     * @throws IOException  if reading fails
+     */
+    public void parse(XMLReader reader, InputSource in) throws SAXException, IOException {
+        reader.setFeature("http://xml.org/sax/features/namespaces", true);
+        reader.setContentHandler(this);
+
+        try {
+            reader.setProperty("http://xml.org/sax/properties/lexical-handler", this);
+        } catch (SAXNotRecognizedException | SAXNotSupportedException e) {
+            // comments don't separate text nodes then
+        }
+
+        try {
+            reader.parse(in);
+        } catch (Satisfied e) {
+            // all values were found
+        }
+    }
+
+    /**
+     * Parses the input using parser settings of given reader, parsing stops when all expressions are satisfied
+     *
+     * @param reader the reader
+     * @param in     the input
+     * @throws DocumentException if parsing fails
+     */
+    public void read(SAXReader reader, InputSource in) throws DocumentException {
+        try {
+            reader.parse(in, this);
+        } catch (DocumentException e) {
+            if (!(e.getCause() instanceof Satisfied)) {
+                throw e;
+            }
+        }
+    }
+
+    private PathMatcher compile(String xpath) {
+        final SimplePath path = SimplePath.compile(xpath, namespaceContext);
+        final PathMatcher matcher = path != null && !path.isCount() ? PathMatcher.create(path, true) : null;
+
+        if (matcher == null) {
+            throw new InvalidXPathException(xpath, "is not supported by streaming evaluation");
+        }
+
+        return matcher;
+    }
+
+    // ContentHandler interface
+    // -------------------------------------------------------------------------
+
+    @Override
+    public void startDocument() throws SAXException {
+        namespaceStack.clear();
+        text.setLength(0);
+        captures = 0;
+        depth = 0;
+        skipDepth = 0;
+        remaining = queries.isEmpty() ? -1 : 0;
+
+        for (Query query : queries) {
+            query.start();
+
+            if (!query.first) {
+                remaining = -1;
+            } else if (remaining >= 0) {
+                remaining++;
+            }
+        }
+    }
+
+    @Override
+    public void endDocument() throws SAXException {
+        flushText();
+    }
+
+    @Override
+    public void startPrefixMapping(String prefix, String uri) throws SAXException {
+        namespaceStack.push(prefix, uri);
+    }
+
+    @Override
+    public void endPrefixMapping(String prefix) throws SAXException {
+        namespaceStack.pop(prefix);
+    }
+
+    @Override
+    public void startElement(String namespaceURI, String localName, String qualifiedName, Attributes attributes)
+            throws SAXException {
+        depth++;
+
+        if (skipDepth > 0) {
+            return;
+        }
+
+        flushText();
+
+        final QName qName = namespaceStack.getQName(namespaceURI, localName, qualifiedName);
+        final PathMatcher.AttributeValues values = name -> attributes.getValue(name.getNamespaceURI(), name.getName());
+        boolean active = captures > 0;
+
+        for (Query query : queries) {
+            active |= query.element(qName, values, attributes);
+        }
+
+        if (!active) {
+            skipDepth = depth;
+        }
+
+        checkSatisfied();
+    }
+
+    @Override
+    public void endElement(String namespaceURI, String localName, String qName) throws SAXException {
+        if (skipDepth > 0) {
+            if (depth != skipDepth) {
+                depth--;
+                return;
+            }
+
+            skipDepth = 0;
+        }
+
+        flushText();
+
+        for (Query query : queries) {
+            query.end();
+        }
+
+        if (captures == 0) {
+            text.setLength(0);
+        }
+
+        depth--;
+        checkSatisfied();
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) throws SAXException {
+        if (skipDepth > 0) {
+            return;
+        }
+
+        if (captures > 0) {
+            text.append(ch, start, length);
+        }
+
+        for (Query query : queries) {
+            query.characters(ch, start, length);
+        }
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+        characters(ch, start, length);
+    }
+
+    // LexicalHandler interface
+    // -------------------------------------------------------------------------
+
+    @Override
+    public void startDTD(String name, String publicId, String systemId) {
+    }
+
+    @Override
+    public void endDTD() {
+    }
+
+    @Override
+    public void startEntity(String name) {
+    }
+
+    @Override
+    public void endEntity(String name) {
+    }
+
+    @Override
+    public void startCDATA() {
+    }
+
+    @Override
+    public void endCDATA() {
+    }
+
+    @Override
+    public void comment(char[] ch, int start, int length) throws SAXException {
+        if (skipDepth == 0) {
+            // comments separate text nodes
+            flushText();
+            checkSatisfied();
+        }
+    }
+
+    // Implementation methods
+    // -------------------------------------------------------------------------
+
+    private void flushText() {
+        for (Query query : queries) {
+            query.flushText();
+        }
+    }
+
+    private void checkSatisfied() throws SAXException {
+        if (isSatisfied()) {
+            throw new Satisfied();
+        }
+    }
+
+    /**
+     * Thrown to stop parsing when all expressions are satisfied
+     */
+    private static final class Satisfied extends SAXException {
+        private static final long serialVersionUID = 1;
+
+        Satisfied() {
+            super("All expressions are satisfied");
+        }
+    }
+
+    /**
+     * One expression with its matching state
+     */
+    private final class Query {
+        private final PathMatcher matcher;
+        private final Consumer<String> listener;
+        private final boolean first;
+        private final boolean attributes;
+        private PathMatcher.Frame[] frames = new PathMatcher.Frame[16];
+
+        /**
+         * Depths of selected elements which are not complete yet with their first characters in the text
+         */
+        private int[] captureDepths = new int[8];
+        private int[] captureStarts = new int[8];
+        private int captureCount;
+
+        /**
+         * Text of selected text nodes, null if the current node doesn't select its text children
+         */
+        private StringBuilder pendingText;
+
+        private boolean done;
+
+        Query(PathMatcher matcher, Consumer<String> listener, boolean first) {
+            this.matcher = matcher;
+            this.listener = listener;
+            this.first = first;
+            this.attributes = matcher.hasAttributeSteps();
+        }
+
+        void start() {
+            done = false;
+            captureCount = 0;
+            pendingText = null;
+            matcher.start(frame(0), true);
+            selectText(frames[0]);
+        }
+
+        /**
+         * @return true if the element or its descendants may be selected
+         */
+        boolean element(QName qName, PathMatcher.AttributeValues values, Attributes saxAttributes) {
+            final PathMatcher.Frame parent = frames[depth - 1];
+            final PathMatcher.Frame frame = frame(depth);
+
+            if (done || !matcher.isActive(parent)) {
+                frame.reset();
+                pendingText = null;
+                return false;
+            }
+
+            matcher.child(parent, frame, qName, values, null);
+
+            if (matcher.selects(frame)) {
+                capture();
+            }
+
+            if (attributes) {
+                for (int i = 0, size = saxAttributes.getLength(); i < size && !done; i++) {
+                    final QName attributeName = namespaceStack.getAttributeQName(saxAttributes.getURI(i),
+                            saxAttributes.getLocalName(i), saxAttributes.getQName(i));
+
+                    if (matcher.selectsAttribute(frame, attributeName)) {
+                        fire(saxAttributes.getValue(i));
+                    }
+                }
+            }
+
+            selectText(frame);
+            return !done && matcher.isActive(frame);
+        }
+
+        void end() {
+            if (captureCount > 0 && captureDepths[captureCount - 1] == depth) {
+                captureCount--;
+                captures--;
+
+                if (!done) {
+                    fire(text.substring(captureStarts[captureCount]));
+                }
+            }
+
+            if (depth > 1) {
+                selectText(frames[depth - 1]);
+            } else {
+                pendingText = null;
+            }
+        }
+
+        void characters(char[] ch, int start, int length) {
+            if (pendingText != null) {
+                pendingText.append(ch, start, length);
+            }
+        }
+
+        void flushText() {
+            if (pendingText != null && pendingText.length() > 0) {
+                fire(pendingText.toString());
+                pendingText.setLength(0);
+            }
+        }
+
+        private void selectText(PathMatcher.Frame frame) {
+            if (!done && matcher.selectsText(frame)) {
+                if (pendingText == null) {
+                    pendingText = new StringBuilder();
+                }
+            } else {
+                pendingText = null;
+            }
+        }
+
+        private void capture() {
+            if (captureCount == captureDepths.length) {
+                captureDepths = Arrays.copyOf(captureDepths, captureCount * 2);
+                captureStarts = Arrays.copyOf(captureStarts, captureCount * 2);
+            }
+
+            captureDepths[captureCount] = depth;
+            captureStarts[captureCount] = text.length();
+            captureCount++;
+            captures++;
+        }
+
+        private void fire(String value) {
+            if (done) {
+                return;
+            }
+
+            listener.accept(value);
+
+            if (first) {
+                done = true;
+
+                if (remaining > 0) {
+                    remaining--;
+                }
+
+                pendingText = null;
+            }
+        }
+
+        private PathMatcher.Frame frame(int index) {
+            if (index == frames.length) {
+                frames = Arrays.copyOf(frames, index * 2);
+            }
+
+            if (frames[index] == null) {
+                frames[index] = matcher.newFrame();
+            }
+
+            return frames[index];
+        }
+    }
+}
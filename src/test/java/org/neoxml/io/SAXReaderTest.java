@@ -12,6 +12,7 @@ import org.neoxml.Document;
 import org.neoxml.DocumentHelper;
 import org.neoxml.Element;
 import org.neoxml.Node;
+import org.neoxml.util.StringPool;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -20,6 +21,8 @@ import java.io.StringWriter;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 /**
  * A test harness to test the content API in DOM4J
@@ -107,6 +110,27 @@ public class SAXReaderTest extends AbstractTestCase {
         log.info(doc.asXML());
         assertEquals("<!-- <head> & <body> -->", eg.getText());
     }
+
+    @Test
+    public void testValuePool() throws Exception {
+        String xml = "<items><item type=\"book\">new</item><item type=\"book\">new</item>"
+                + "<item type=\"a very long attribute value exceeding limit\">new</item>"
+                + "<item type=\"a very long attribute value exceeding limit\">new</item></items>";
+
+        SAXReader reader = new SAXReader();
+        reader.setValuePool(new StringPool(64, 16));
+
+        List<Element> items = reader.read(new StringReader(xml)).getRootElement().elements();
+        assertEquals(4, items.size());
+        assertSame(items.get(0).attributeValue("type"), items.get(1).attributeValue("type"));
+        assertSame(items.get(0).getText(), items.get(1).getText());
+        assertSame(items.get(0).getText(), items.get(3).getText());
+        assertNotSame(items.get(2).attributeValue("type"), items.get(3).attributeValue("type"));
+        assertEquals(items.get(2).attributeValue("type"), items.get(3).attributeValue("type"));
+
+        items = new SAXReader().read(new StringReader(xml)).getRootElement().elements();
+        assertNotSame(items.get(0).attributeValue("type"), items.get(1).attributeValue("type"));
+    }
 }
 
 /*
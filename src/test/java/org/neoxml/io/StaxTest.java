@@ -8,16 +8,25 @@ package org.neoxml.io;
 
 import org.junit.Test;
 import org.neoxml.AbstractTestCase;
+import org.neoxml.CDATA;
 import org.neoxml.Document;
+import org.neoxml.DocumentHelper;
+import org.neoxml.Element;
+import org.neoxml.Namespace;
 
 import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.StringReader;
 import java.io.StringWriter;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 /**
  * Tests STAX->neoxml functionality.
@@ -61,6 +70,58 @@ public class StaxTest extends AbstractTestCase {
         assertEquals("Unexpected xml declaration", expected, xmlDecl);
         log.info(output);
     }
+
+    @Test
+    public void testStreamReader() throws Exception {
+        STAXStreamReader streamReader = new STAXStreamReader();
+        String[] files = {"/src/test/xml/test.xml", "/src/test/xml/namespaces.xml", "/src/test/xml/cdata.xml",
+                "/src/test/xml/testPI.xml", "/src/test/xml/russArticle.xml"};
+
+        for (String name : files) {
+            File file = getFile(name);
+            Document expected = new SAXReader().read(file);
+            Document doc;
+
+            try (FileInputStream in = new FileInputStream(file)) {
+                doc = streamReader.readDocument(in);
+            }
+
+            assertEquals(name, expected.asXML(), doc.asXML());
+            assertEquals(name, expected.getXMLEncoding(), doc.getXMLEncoding());
+        }
+    }
+
+    @Test
+    public void testInputFactories() throws Exception {
+        String xml = "<a>x<![CDATA[<y>]]>z</a>";
+        Document doc = new STAXEventReader().readDocument(new StringReader(xml));
+        assertEquals("x<y>z", doc.getRootElement().getText());
+        assertEquals(0, doc.getRootElement().content().stream().filter(CDATA.class::isInstance).count());
+
+        STAXStreamReader streamReader = new STAXStreamReader();
+        assertNull(streamReader.getXMLInputFactory());
+        assertEquals(1, streamReader.readDocument(new StringReader(xml)).getRootElement().content().stream()
+                .filter(CDATA.class::isInstance).count());
+
+        XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+        streamReader.setXMLInputFactory(inputFactory);
+        assertSame(inputFactory, streamReader.getXMLInputFactory());
+    }
+
+    @Test
+    public void testStreamReaderFragment() throws Exception {
+        String xml = "<a xmlns:p='urn:p'><p:b p:x='1'>text<!--c--><c/>more</p:b><d/></a>";
+        XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(xml));
+        reader.nextTag();
+        reader.nextTag();
+
+        Element b = new STAXStreamReader().readElement(reader);
+        assertNull(b.getParent());
+        assertEquals("<p:b xmlns:p=\"urn:p\" p:x=\"1\">text<!--c--><c/>more</p:b>", b.asXML());
+        assertSame(DocumentHelper.createQName("b", Namespace.get("p", "urn:p")), b.getQName());
+        assertEquals(XMLStreamConstants.END_ELEMENT, reader.getEventType());
+        assertEquals("d", reader.nextTag() == XMLStreamConstants.START_ELEMENT ? reader.getLocalName() : null);
+    }
 }
 
 /*
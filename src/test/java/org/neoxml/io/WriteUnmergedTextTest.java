@@ -9,10 +9,12 @@ package org.neoxml.io;
 import org.junit.Test;
 import org.neoxml.AbstractTestCase;
 import org.neoxml.Document;
+import org.neoxml.Element;
 
 import java.io.StringReader;
 import java.io.StringWriter;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -135,6 +137,24 @@ public class WriteUnmergedTextTest extends AbstractTestCase {
         assertTrue("Output text contains \"&amp;\"", outText.lastIndexOf("&amp;") >= 0);
         assertTrue("Output text contains \"&lt;\"", outText.lastIndexOf("&lt;") >= 0);
     }
+
+    @Test
+    public void testTextChunks() throws Exception {
+        String inputText = "<TEXT>Test using &lt; &amp; &gt;<![CDATA[ cdata ]]>text</TEXT>";
+
+        SAXReader reader = new SAXReader();
+        Element text = reader.read(new StringReader(inputText)).getRootElement();
+
+        assertEquals(3, text.nodeCount());
+        assertEquals("Test using < & >", text.node(0).getText());
+        assertEquals("text", text.node(2).getText());
+
+        reader.setPreserveTextChunks(true);
+        text = reader.read(new StringReader(inputText)).getRootElement();
+
+        assertTrue("Chunks are preserved", text.nodeCount() > 3);
+        assertEquals("Test using < & > cdata text", text.getText());
+    }
 }
 
 /*
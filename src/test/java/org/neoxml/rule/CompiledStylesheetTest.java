@@ -0,0 +1,103 @@
+package org.neoxml.rule;
+
+import org.junit.Test;
+import org.neoxml.AbstractTestCase;
+import org.neoxml.Document;
+import org.neoxml.DocumentHelper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class CompiledStylesheetTest extends AbstractTestCase {
+    private static final String XML = "<root><author name=\"a\" location=\"UK\"><url>u1</url></author>"
+            + "<author name=\"b\" location=\"US\"><url>u2</url></author><title>t</title></root>";
+
+    private static final String[] TEMPLATES = {
+            "author", "@name", "root/author", "author[@location='UK']", "root//url", "text()", "url|title",
+    };
+
+    @Test
+    public void testSameRulesAsStylesheet() throws Exception {
+        Document document = DocumentHelper.parseText(XML);
+        List<String> expected = new ArrayList<>();
+        List<String> actual = new ArrayList<>();
+
+        Stylesheet stylesheet = new Stylesheet();
+        addTemplates(stylesheet, expected, stylesheet::applyTemplates);
+        stylesheet.run(document);
+
+        Stylesheet other = new Stylesheet();
+        CompiledStylesheet[] compiled = new CompiledStylesheet[1];
+        addTemplates(other, actual, node -> compiled[0].applyTemplates(node));
+        compiled[0] = other.compile();
+        compiled[0].run(document);
+
+        assertFalse(actual.isEmpty());
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testIndependentOfStylesheet() throws Exception {
+        Document document = DocumentHelper.parseText(XML);
+        List<String> fired = new ArrayList<>();
+        Stylesheet stylesheet = new Stylesheet();
+        stylesheet.addRule(new Rule(DocumentHelper.createPattern("url"), node -> fired.add(node.getText())));
+
+        CompiledStylesheet compiled = stylesheet.compile();
+        stylesheet.clear();
+
+        compiled.run(document);
+        assertEquals(2, fired.size());
+
+        fired.clear();
+        compiled.run(document, "missing");
+        assertEquals(0, fired.size());
+    }
+
+    @Test
+    public void testConcurrentRuns() throws Exception {
+        Document document = DocumentHelper.parseText(XML);
+        Stylesheet stylesheet = new Stylesheet();
+        List<String> fired = Collections.synchronizedList(new ArrayList<>());
+        stylesheet.setValueOfAction(node -> fired.add(node.getText()));
+        stylesheet.addRule(new Rule(DocumentHelper.createPattern("author[@location='UK']"), node -> { }));
+
+        CompiledStylesheet compiled = stylesheet.compile();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < 100; i++) {
+                futures.add(executor.submit(() -> {
+                    compiled.run(document);
+                    return null;
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // name and location of the second author, text of its url and of the title
+        assertEquals(100 * 4, fired.size());
+    }
+
+    private static void addTemplates(Stylesheet stylesheet, List<String> fired, Action applyTemplates) {
+        for (String template : TEMPLATES) {
+            stylesheet.addRule(new Rule(DocumentHelper.createPattern(template), node -> {
+                fired.add(template + ":" + node.getName());
+                applyTemplates.run(node);
+            }));
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.neoxml.rule;
+
+import org.junit.Test;
+import org.neoxml.AbstractTestCase;
+import org.neoxml.DocumentHelper;
+import org.neoxml.Element;
+import org.neoxml.io.SAXReader;
+import org.xml.sax.InputSource;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+public class StreamingStylesheetTest extends AbstractTestCase {
+    private static final String XML = "<!--head--><root xmlns:x=\"urn:x\" version=\"1\">"
+            + "<record id=\"1\"><name>first</name><x:note>n</x:note></record>text"
+            + "<record id=\"2\" skip=\"true\"><name>second</name></record><!--between-->"
+            + "<group><record id=\"3\"><name>third</name></record></group><?pi data?>"
+            + "</root><!--tail-->";
+
+    @Test
+    public void testSameRulesAsInMemory() throws Exception {
+        List<String> expected = new ArrayList<>();
+        Stylesheet stylesheet = createStylesheet(expected);
+        stylesheet.run(DocumentHelper.parseText(XML));
+
+        List<String> actual = new ArrayList<>();
+        createStylesheet(actual).run(new SAXReader(), new InputSource(new StringReader(XML)));
+
+        assertFalse(actual.isEmpty());
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testReleasedRecords() throws Exception {
+        List<Integer> siblings = new ArrayList<>();
+        Stylesheet stylesheet = new Stylesheet();
+        stylesheet.addRule(new Rule(DocumentHelper.createPattern("record"), node -> {
+            Element record = (Element) node;
+
+            assertNotNull(record.element("name"));
+            assertSame(record, record.getParent().elements().get(record.getParent().elements().size() - 1));
+            siblings.add(record.getParent().nodeCount());
+        }));
+
+        stylesheet.run(new SAXReader(), new InputSource(new StringReader(XML)));
+
+        // namespace declaration of the root and the record itself
+        assertEquals(3, siblings.size());
+        assertEquals(2, (int) siblings.get(0));
+        assertEquals(2, (int) siblings.get(1));
+        assertEquals(1, (int) siblings.get(2));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testActionException() throws Exception {
+        Stylesheet stylesheet = new Stylesheet();
+        stylesheet.addRule(new Rule(DocumentHelper.createPattern("name"), node -> {
+            throw new IllegalStateException("failed");
+        }));
+
+        stylesheet.run(new SAXReader(), new InputSource(new StringReader(XML)));
+    }
+
+    private static Stylesheet createStylesheet(List<String> fired) {
+        Stylesheet stylesheet = new Stylesheet();
+        stylesheet.setValueOfAction(node -> fired.add("value:" + node.getText()));
+
+        addRule(stylesheet, "record", fired, true);
+        addRule(stylesheet, "record[@skip]", fired, false);
+        addRule(stylesheet, "@id", fired, false);
+        addRule(stylesheet, "group/record/name", fired, false);
+        addRule(stylesheet, "comment()", fired, false);
+        addRule(stylesheet, "processing-instruction()", fired, false);
+        return stylesheet;
+    }
+
+    private static void addRule(Stylesheet stylesheet, String pattern, List<String> fired, boolean applyTemplates) {
+        stylesheet.addRule(new Rule(DocumentHelper.createPattern(pattern), node -> {
+            fired.add(pattern + ":" + node.getName() + ":" + node.getText());
+
+            if (applyTemplates) {
+                stylesheet.applyTemplates(node);
+            }
+        }));
+    }
+}
@@ -0,0 +1,129 @@
+package org.neoxml.tree;
+
+import org.junit.Test;
+import org.neoxml.AbstractTestCase;
+import org.neoxml.Document;
+import org.neoxml.DocumentHelper;
+import org.neoxml.Element;
+import org.neoxml.QName;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class AttributeIndexTest extends AbstractTestCase {
+    private static final String XML = "<orders>"
+            + "<order id=\"1\" status=\"OPEN\"/><order id=\"2\" status=\"CLOSED\"/>"
+            + "<group><order id=\"3\" status=\"OPEN\"><item status=\"OPEN\"/></order></group>"
+            + "</orders>";
+
+    private static final QName STATUS = QName.get("status");
+    private static final QName ORDER = QName.get("order");
+
+    @Test
+    public void testLookup() throws Exception {
+        Document document = DocumentHelper.parseText(XML);
+        document.addAttributeIndex("status", STATUS, ORDER);
+        document.addAttributeIndex("any", STATUS, null);
+
+        assertEquals(document.selectNodes("//order[@status='OPEN']"), document.lookup("status", "OPEN"));
+        assertEquals(document.selectNodes("//*[@status='OPEN']"), document.lookup("any", "OPEN"));
+        assertEquals(1, document.lookup("status", "CLOSED").size());
+        assertTrue(document.lookup("status", "missing").isEmpty());
+
+        assertTrue(document.removeAttributeIndex("any"));
+        assertFalse(document.removeAttributeIndex("any"));
+
+        try {
+            document.lookup("any", "OPEN");
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+
+        throw new AssertionError("lookup of unknown index should fail");
+    }
+
+    @Test
+    public void testMaintenance() throws Exception {
+        Document document = DocumentHelper.parseText(XML);
+        document.addAttributeIndex("status", STATUS, ORDER);
+
+        Element root = document.getRootElement();
+        Element first = root.element("order");
+        Element third = (Element) document.selectSingleNode("//group/order");
+
+        assertEquals(2, document.lookup("status", "OPEN").size());
+
+        first.attribute("status").setValue("CLOSED");
+        assertSame(third, document.lookup("status", "OPEN").get(0));
+        assertEquals(2, document.lookup("status", "CLOSED").size());
+
+        first.addAttribute("status", "OPEN");
+        assertEquals(document.selectNodes("//order[@status='OPEN']"), document.lookup("status", "OPEN"));
+
+        first.remove(first.attribute("status"));
+        assertEquals(1, document.lookup("status", "OPEN").size());
+
+        Element added = DocumentHelper.createElement("order");
+        added.addAttribute("status", "OPEN");
+        added.addElement("order").addAttribute("status", "OPEN");
+        root.elements().add(0, added);
+        assertEquals(document.selectNodes("//order[@status='OPEN']"), document.lookup("status", "OPEN"));
+
+        root.remove(added);
+        assertEquals(1, document.lookup("status", "OPEN").size());
+
+        third.setName("renamed");
+        assertTrue(document.lookup("status", "OPEN").isEmpty());
+
+        Document clone = (Document) document.clone();
+        assertEquals(1, clone.lookup("status", "CLOSED").size());
+        assertSame(clone, clone.lookup("status", "CLOSED").get(0).getDocument());
+    }
+
+    @Test
+    public void testMovedBetweenDocuments() throws Exception {
+        Document source = DocumentHelper.parseText(XML);
+        Document target = DocumentHelper.parseText("<orders/>");
+        source.addAttributeIndex("status", STATUS, ORDER);
+        target.addAttributeIndex("status", STATUS, ORDER);
+
+        Element group = source.getRootElement().element("group");
+        Element order = group.element("order");
+        group.detach();
+        assertEquals(1, source.lookup("status", "OPEN").size());
+
+        // changes of a removed element no longer reach the document
+        order.attribute("status").setValue("CLOSED");
+        assertEquals(1, source.lookup("status", "CLOSED").size());
+
+        target.getRootElement().add(group);
+        assertSame(order, target.lookup("status", "CLOSED").get(0));
+
+        order.attribute("status").setValue("OPEN");
+        order.addElement("order").addAttribute("status", "OPEN");
+        assertEquals(target.selectNodes("//order[@status='OPEN']"), target.lookup("status", "OPEN"));
+        assertEquals(1, source.lookup("status", "OPEN").size());
+
+        Document clone = (Document) target.clone();
+        Element cloned = (Element) clone.selectSingleNode("//group/order");
+        cloned.attribute("status").setValue("CLOSED");
+        assertEquals(1, clone.lookup("status", "CLOSED").size());
+        assertTrue(target.lookup("status", "CLOSED").isEmpty());
+    }
+
+    @Test
+    public void testXPath() throws Exception {
+        Document document = DocumentHelper.parseText(XML);
+        List<?> expected = document.selectNodes("//order[@status='OPEN']");
+        List<?> expectedAny = document.selectNodes("//*[@status='OPEN']/@id");
+
+        document.addAttributeIndex("status", STATUS, null);
+        assertEquals(expected, document.selectNodes("//order[@status='OPEN']"));
+        assertEquals(expectedAny, document.selectNodes("//*[@status='OPEN']/@id"));
+        assertEquals(1, document.getRootElement().element("group").selectNodes(".//order[@status='OPEN']").size());
+    }
+}
@@ -8,17 +8,31 @@ package org.neoxml.tree;
 
 import org.junit.Test;
 import org.neoxml.AbstractTestCase;
+import org.neoxml.Attribute;
 import org.neoxml.DefaultDocumentFactory;
 import org.neoxml.Document;
 import org.neoxml.DocumentHelper;
 import org.neoxml.Element;
 import org.neoxml.Node;
+import org.neoxml.QName;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /**
  * JUnit tests for <code>DefaultElement</code>.
@@ -64,6 +78,23 @@ public class DefaultElementTest extends AbstractTestCase {
         assertEquals("xpath value incorrect", "This should work", xpathText);
     }
 
+    @Test
+    public void testAppendStringValue() throws Exception {
+        Document doc = DocumentHelper.parseText(
+                "<root>a<!--skipped--><b>b<c>c</c><?pi skipped?></b><![CDATA[d]]><e/>f</root>");
+        Element root = doc.getRootElement();
+
+        assertEquals("abcdf", root.getStringValue());
+        assertEquals("abcdf", doc.getStringValue());
+        assertEquals("bc", root.element("b").getStringValue());
+
+        StringBuilder buffer = new StringBuilder("prefix:");
+        root.element("b").appendStringValue(buffer);
+        doc.appendStringValue(buffer);
+        root.node(1).appendStringValue(buffer);
+        assertEquals("prefix:bcabcdfskipped", buffer.toString());
+    }
+
     @Test
     public void testBug894878() {
         Element foo = DefaultDocumentFactory.getInstance().createElement("foo");
@@ -132,6 +163,275 @@ public class DefaultElementTest extends AbstractTestCase {
         ns = c.additionalNamespaces();
         assertEquals(0, ns.size());
     }
+
+    @Test
+    public void testManyAttributes() throws Exception {
+        StringBuilder xml = new StringBuilder("<root xmlns:x=\"urn:x\"");
+
+        for (int i = 0; i < 100; i++) {
+            xml.append(" a").append(i).append("=\"").append(i).append('"');
+        }
+
+        xml.append(" x:a5=\"x5\"/>");
+
+        Element root = DocumentHelper.parseText(xml.toString()).getRootElement();
+        assertEquals(101, root.attributeCount());
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(String.valueOf(i), root.attributeValue("a" + i));
+            assertEquals(String.valueOf(i), root.attributeValue(QName.get("a" + i)));
+        }
+
+        // lookup by local name returns the first attribute of given name
+        assertEquals("5", root.attributeValue("a5"));
+        assertEquals("x5", root.attributeValue(QName.get("a5", "x", "urn:x")));
+        assertNull(root.attribute("missing"));
+
+        Attribute a50 = root.attribute("a50");
+        assertTrue(root.remove(a50));
+        assertNull(root.attribute("a50"));
+        assertNull(a50.getParent());
+        assertEquals("51", root.attributeValue("a51"));
+
+        root.addAttribute("a50", "fifty");
+        assertEquals("fifty", root.attributeValue("a50"));
+        assertSame(root.attribute(100), root.attribute("a50"));
+
+        root.addAttribute("a10", null);
+        assertNull(root.attribute("a10"));
+        assertEquals(100, root.attributeCount());
+
+        Element copy = root.createCopy();
+        assertEquals("fifty", copy.attributeValue("a50"));
+        assertEquals(copy, copy.attribute("a99").getParent());
+    }
+
+    @Test
+    public void testElementsByName() throws Exception {
+        Element root = DocumentHelper.parseText("<root xmlns:x=\"urn:x\"><a n=\"1\"/>text<x:a n=\"2\"/><b/>"
+                + "<a n=\"3\"/></root>").getRootElement();
+        QName a = QName.get("a");
+        StringBuilder found = new StringBuilder();
+
+        assertEquals("1", root.element(a).attributeValue("n"));
+        assertEquals("2", root.element(QName.get("a", "x", "urn:x")).attributeValue("n"));
+        assertEquals("b", root.element("b").getName());
+        assertNull(root.element(QName.get("b", "x", "urn:x")));
+
+        root.forEachElement(a, element -> found.append(element.attributeValue("n")));
+        assertEquals("13", found.toString());
+
+        found.setLength(0);
+        root.forEachElement(null, element -> found.append(element.getName()));
+        assertEquals("aaba", found.toString());
+
+        assertEquals("/root/a[2]", root.elements(a).get(1).getUniquePath());
+        assertEquals("/root/b", root.element("b").getUniquePath());
+
+        Iterator<Element> iterator = root.elementIterator("a");
+        assertEquals("1", iterator.next().attributeValue("n"));
+        assertEquals("2", iterator.next().attributeValue("n"));
+        iterator.remove();
+        assertEquals("3", iterator.next().attributeValue("n"));
+        assertFalse(iterator.hasNext());
+        assertEquals(2, root.elements(a).size());
+        assertNull(root.element(QName.get("a", "x", "urn:x")));
+    }
+
+    @Test
+    public void testCopiesAreAttached() throws Exception {
+        Element root = DocumentHelper.parseText("<root xmlns:x=\"urn:x\" n=\"1\"><x:a m=\"2\">text<b/></x:a>"
+                + "<!--c--></root>").getRootElement();
+
+        for (Element copy : new Element[]{(Element) root.clone(), root.createCopy(), root.createCopy("other")}) {
+            Element a = copy.element(QName.get("a", "x", "urn:x"));
+
+            assertNull(copy.getParent());
+            assertNull(copy.getDocument());
+            assertSame(copy, copy.attribute("n").getParent());
+            assertSame(copy, a.getParent());
+            assertSame(a, a.attribute("m").getParent());
+            assertSame(a, a.node(0).getParent());
+            assertSame(a, a.element("b").getParent());
+            assertSame(root.element(QName.get("a", "x", "urn:x")).getQName(), a.getQName());
+            assertEquals("urn:x", a.getNamespaceForPrefix("x").getURI());
+            assertEquals(root.element(QName.get("a", "x", "urn:x")).structuralHash(), a.structuralHash());
+
+            a.element("b").addAttribute("c", "3");
+            assertNull(root.element(QName.get("a", "x", "urn:x")).element("b").attribute("c"));
+        }
+
+        assertEquals(root.asXML(), root.clone().asXML());
+        assertEquals(root.structuralHash(), root.createCopy().structuralHash());
+    }
+
+    @Test
+    public void testSharedCopies() throws Exception {
+        String xml = "<root xmlns:x=\"urn:x\" n=\"1\"><x:a m=\"2\">text<b/></x:a><c><d>other</d></c></root>";
+        Document document = DocumentHelper.parseText(xml);
+        DefaultElement root = (DefaultElement) document.getRootElement();
+        DefaultElement copy = root.clone();
+
+        assertTrue(copy.isShared());
+        assertNull(copy.getParent());
+
+        Document copyDocument = DocumentHelper.createDocument(copy);
+        DefaultElement a = (DefaultElement) copy.element(QName.get("a", "x", "urn:x"));
+        DefaultElement c = (DefaultElement) copy.element("c");
+
+        assertFalse(copy.isShared());
+        assertTrue(a.isShared());
+        assertTrue(c.isShared());
+        assertSame(copy, copy.attribute("n").getParent());
+        assertSame(copy, a.getParent());
+        assertSame(copyDocument, a.getDocument());
+        assertEquals("urn:x", a.getNamespaceForPrefix("x").getURI());
+
+        a.addAttribute("m", "3");
+        a.element("b").setText("changed");
+
+        assertFalse(a.isShared());
+        assertTrue(c.isShared());
+
+        // copies of a shared copy share the same content
+        DefaultElement other = c.clone();
+        assertTrue(other.isShared());
+        assertSame(a, a.element("b").getParent());
+        assertSame(copyDocument, a.element("b").getDocument());
+        assertEquals(xml, root.asXML());
+        assertEquals("<root xmlns:x=\"urn:x\" n=\"1\"><x:a m=\"3\">text<b>changed</b></x:a><c><d>other</d></c></root>",
+                copy.asXML());
+
+        assertEquals(c.asXML(), other.asXML());
+        assertEquals(root.element("c").structuralHash(), other.structuralHash());
+
+        copy.element("c").element("d").detach();
+        assertEquals("<c><d>other</d></c>", other.asXML());
+        assertEquals("<c/>", copy.element("c").asXML());
+        assertEquals(xml, root.asXML());
+    }
+
+    @Test
+    public void testSharedCopyReads() throws Exception {
+        String xml = "<root n=\"1\">text<a><b>nested</b></a></root>";
+        DefaultElement root = (DefaultElement) DocumentHelper.parseText(xml).getRootElement();
+        DefaultElement copy = root.clone();
+        Element parent = DocumentHelper.createElement("parent");
+        parent.add(copy);
+
+        // reads returning no nodes don't copy the shared content
+        assertEquals(2, copy.nodeCount());
+        assertEquals(1, copy.attributeCount());
+        assertEquals("1", copy.attributeValue("n"));
+        assertEquals("text", copy.getText());
+        assertEquals("textnested", parent.getStringValue());
+        assertEquals(xml, copy.asXML());
+        long hash = parent.structuralHash();
+        assertEquals(root.structuralHash(), copy.structuralHash());
+        assertTrue(copy.isShared());
+
+        copy.element("a").element("b").setText("changed");
+        assertFalse(copy.isShared());
+        assertNotEquals(hash, parent.structuralHash());
+        assertEquals("textchanged", parent.getStringValue());
+        assertEquals(xml, root.asXML());
+    }
+
+    @Test
+    public void testOriginalChangedAfterCopying() throws Exception {
+        String xml = "<root n=\"1\"><a m=\"2\">text<b>deep</b></a><c/></root>";
+        DefaultElement root = (DefaultElement) DocumentHelper.parseText(xml).getRootElement();
+        DefaultElement copy = root.clone();
+        DefaultElement read = root.clone();
+        assertSame(read, read.element("a").getParent());
+
+        root.element("a").element("b").setText("changed");
+        root.element("a").attribute("m").setValue("3");
+        root.element("a").setName("renamed");
+        root.element("c").addElement("d");
+        root.remove(root.attribute("n"));
+
+        String changed = "<root><renamed m=\"3\">text<b>changed</b></renamed><c><d/></c></root>";
+        assertEquals(changed, root.asXML());
+        assertEquals(xml, copy.asXML());
+        assertEquals(xml, read.asXML());
+        assertEquals("deep", copy.element("a").elementText("b"));
+
+        DefaultElement later = root.clone();
+        root.element("renamed").element("b").setText("again");
+        assertEquals(changed, later.asXML());
+        assertEquals(xml, copy.asXML());
+    }
+
+    @Test
+    public void testCopyReadByThreads() throws Exception {
+        Element root = DocumentHelper.createElement("root");
+
+        for (int i = 0; i < 100; i++) {
+            root.addElement("a").addElement("b").addText("text" + i);
+        }
+
+        Element copy = root.clone();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            Callable<List<Node>> read = () -> copy.selectNodes("a/b");
+            List<Future<List<Node>>> results = executor.invokeAll(Collections.nCopies(4, read));
+            List<Node> expected = results.get(0).get();
+            assertEquals(100, expected.size());
+
+            for (Future<List<Node>> result : results) {
+                List<Node> nodes = result.get();
+
+                for (int i = 0; i < expected.size(); i++) {
+                    assertSame(expected.get(i), nodes.get(i));
+                    assertSame(copy, nodes.get(i).getParent().getParent());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCopiesCallCloneOverrides() throws Exception {
+        Element root = DocumentHelper.parseText("<root><a/></root>").getRootElement();
+        TaggedElement tagged = new TaggedElement("tagged");
+        tagged.tags.add("original");
+        tagged.addElement("child");
+        root.element("a").add(tagged);
+        assertEquals("<tagged><child/></tagged>", tagged.clone().asXML());
+
+        for (Element copy : new Element[]{root.createCopy(), (Element) root.clone(),
+                ((DefaultElement) root).clone()}) {
+            TaggedElement copied = (TaggedElement) copy.element("a").element("tagged");
+            assertNotSame(tagged, copied);
+            assertNotSame(tagged.tags, copied.tags);
+            assertEquals(tagged.tags, copied.tags);
+            assertEquals(1, copied.nodeCount());
+            assertSame(copied, copied.element("child").getParent());
+        }
+    }
+
+    /**
+     * Element copying its own state by overriding clone()
+     */
+    private static final class TaggedElement extends DefaultElement {
+        private static final long serialVersionUID = 1L;
+
+        private List<String> tags = new ArrayList<>();
+
+        TaggedElement(String name) {
+            super(name);
+        }
+
+        @Override
+        public TaggedElement clone() {
+            TaggedElement answer = (TaggedElement) super.clone();
+            answer.tags = new ArrayList<>(tags);
+            return answer;
+        }
+    }
 }
 
 /*
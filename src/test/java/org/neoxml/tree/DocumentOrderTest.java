@@ -0,0 +1,84 @@
+package org.neoxml.tree;
+
+import org.junit.Test;
+import org.neoxml.AbstractTestCase;
+import org.neoxml.Attribute;
+import org.neoxml.Document;
+import org.neoxml.DocumentHelper;
+import org.neoxml.Element;
+import org.neoxml.Node;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DocumentOrderTest extends AbstractTestCase {
+    private static final String XML = "<!--first--><root a=\"1\" b=\"2\"><x id=\"x\">text<y/><z><y/></z></x><!--c--><w/></root>";
+
+    @Test
+    public void testPositions() throws Exception {
+        Document document = DocumentHelper.parseText(XML);
+        List<Node> nodes = document.selectNodes("//node()");
+        DocumentOrder order = DocumentOrder.of(document);
+
+        assertEquals(0, order.position(document));
+
+        int position = 0;
+
+        for (Node node : nodes) {
+            assertEquals(node.toString(), ++position, order.position(node));
+
+            if (node instanceof Element) {
+                // attributes follow their element
+                for (Attribute attribute : ((Element) node).attributes()) {
+                    assertEquals(attribute.toString(), ++position, order.position(attribute));
+                }
+            }
+        }
+
+        List<Node> shuffled = new ArrayList<>(nodes);
+        Collections.reverse(shuffled);
+        order.sort(shuffled);
+        assertEquals(nodes, shuffled);
+
+        Element x = (Element) document.selectSingleNode("//x");
+        assertTrue(order.isAncestor(document.getRootElement(), x));
+        assertTrue(order.isAncestor(x, document.selectSingleNode("//z/y")));
+        assertTrue(order.isAncestor(x, x.attribute("id")));
+        assertFalse(order.isAncestor(x, document.selectSingleNode("//w")));
+        assertFalse(order.isAncestor(x, x));
+        assertEquals(-1, order.position(DocumentHelper.createElement("detached")));
+    }
+
+    @Test
+    public void testInvalidation() throws Exception {
+        Document document = DocumentHelper.parseText(XML);
+        DocumentOrder order = DocumentOrder.of(document);
+        assertSame(order, DocumentOrder.of(document));
+
+        Element z = (Element) document.selectSingleNode("//z");
+        Element added = z.addElement("added");
+
+        DocumentOrder newOrder = DocumentOrder.of(document);
+        assertNotSame(order, newOrder);
+        assertEquals(-1, order.position(added));
+        assertTrue(newOrder.position(added) > newOrder.position(z));
+
+        z.addAttribute("attr", "value");
+        assertNotSame(newOrder, DocumentOrder.of(document));
+
+        newOrder = DocumentOrder.of(document);
+        z.remove(added);
+        assertNotSame(newOrder, DocumentOrder.of(document));
+        assertEquals(-1, DocumentOrder.of(document).position(added));
+
+        Document clone = (Document) document.clone();
+        assertEquals(-1, DocumentOrder.of(clone).position(z));
+    }
+}
@@ -0,0 +1,91 @@
+package org.neoxml.tree;
+
+import org.junit.Test;
+import org.neoxml.AbstractTestCase;
+import org.neoxml.Document;
+import org.neoxml.DocumentHelper;
+import org.neoxml.Element;
+import org.neoxml.Node;
+import org.neoxml.QName;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ElementIndexTest extends AbstractTestCase {
+    private static final String XML = "<root><a id=\"1\"><b/><a id=\"2\"><b/></a></a><c><a id=\"3\"/></c></root>";
+
+    private static final QName A = QName.get("a");
+    private static final QName B = QName.get("b");
+
+    @Test
+    public void testElementsByQName() throws Exception {
+        AbstractDocument document = (AbstractDocument) DocumentHelper.parseText(XML);
+        List<Node> expected = document.selectNodes("//a");
+
+        assertEquals(expected, document.elementsByQName(A));
+
+        document.setElementIndexEnabled(true);
+        assertEquals(expected, document.elementsByQName(A));
+        assertSame(document.elementsByQName(A), document.elementsByQName(A));
+        assertEquals(2, document.elementsByQName(B).size());
+        assertTrue(document.elementsByQName(QName.get("missing")).isEmpty());
+        assertEquals(1, document.elementsByQName(QName.get("root")).size());
+    }
+
+    @Test
+    public void testInvalidation() throws Exception {
+        AbstractDocument document = (AbstractDocument) DocumentHelper.parseText(XML);
+        document.setElementIndexEnabled(true);
+
+        List<Element> list = document.elementsByQName(A);
+        Element c = document.getRootElement().element("c");
+
+        c.addAttribute("attr", "value");
+        c.addText("text");
+        assertSame(list, document.elementsByQName(A));
+
+        Element added = c.addElement("a");
+        assertNotSame(list, document.elementsByQName(A));
+        assertEquals(document.selectNodes("//a"), document.elementsByQName(A));
+        assertSame(added, document.elementsByQName(A).get(3));
+
+        c.remove(added);
+        assertEquals(3, document.elementsByQName(A).size());
+
+        added.setName("b");
+        assertEquals(3, document.elementsByQName(A).size());
+
+        c.element("a").setName("b");
+        assertEquals(2, document.elementsByQName(A).size());
+        assertEquals(3, document.elementsByQName(B).size());
+
+        Document clone = (Document) document.clone();
+        assertEquals(2, clone.elementsByQName(A).size());
+        assertNotSame(document.elementsByQName(A).get(0), clone.elementsByQName(A).get(0));
+    }
+
+    @Test
+    public void testChangesBeforeIndexIsBuilt() throws Exception {
+        AbstractDocument document = (AbstractDocument) DocumentHelper.parseText(XML);
+        document.setElementIndexEnabled(true);
+
+        Element root = document.getRootElement();
+        Element nested = root.element("c").addElement("d").addElement("e");
+        Element removed = root.element("a");
+        root.remove(removed);
+        assertEquals(1, document.elementsByQName(A).size());
+
+        nested.setName("a");
+        assertEquals(document.selectNodes("//a"), document.elementsByQName(A));
+        assertSame(nested, document.elementsByQName(A).get(1));
+
+        removed.element("b").setName("a");
+        root.add(removed);
+        assertEquals(document.selectNodes("//a"), document.elementsByQName(A));
+        assertEquals(5, document.elementsByQName(A).size());
+    }
+}
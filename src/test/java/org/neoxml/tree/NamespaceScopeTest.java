@@ -0,0 +1,118 @@
+package org.neoxml.tree;
+
+import org.junit.Test;
+import org.neoxml.AbstractTestCase;
+import org.neoxml.Document;
+import org.neoxml.DocumentHelper;
+import org.neoxml.Element;
+import org.neoxml.Namespace;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class NamespaceScopeTest extends AbstractTestCase {
+    private static final String XML = "<a:root xmlns:a=\"urn:a\" xmlns:b=\"urn:b\"><child><b:item xmlns:a=\"urn:other\">"
+            + "<leaf/></b:item></child></a:root>";
+
+    @Test
+    public void testLookup() throws Exception {
+        Document document = DocumentHelper.parseText(XML);
+        Element child = document.getRootElement().element("child");
+        Element item = (Element) child.elements().get(0);
+        Element leaf = (Element) item.elements().get(0);
+
+        assertEquals("urn:a", child.getNamespaceForPrefix("a").getURI());
+        assertEquals("urn:other", leaf.getNamespaceForPrefix("a").getURI());
+        assertEquals("urn:b", leaf.getNamespaceForPrefix("b").getURI());
+        assertSame(Namespace.XML_NAMESPACE, leaf.getNamespaceForPrefix("xml"));
+        assertSame(Namespace.NO_NAMESPACE, leaf.getNamespaceForPrefix(""));
+        assertNull(leaf.getNamespaceForPrefix("c"));
+
+        assertEquals("a", leaf.getNamespaceForURI("urn:a").getPrefix());
+        assertEquals("a", leaf.getNamespaceForURI("urn:other").getPrefix());
+        assertSame(Namespace.NO_NAMESPACE, leaf.getNamespaceForURI(""));
+        assertNull(leaf.getNamespaceForURI("urn:c"));
+    }
+
+    @Test
+    public void testSharing() throws Exception {
+        Document document = DocumentHelper.parseText(XML);
+        DefaultElement child = (DefaultElement) document.getRootElement().element("child");
+        DefaultElement root = (DefaultElement) child.getParent();
+        DefaultElement item = (DefaultElement) child.elements().get(0);
+        DefaultElement leaf = (DefaultElement) item.elements().get(0);
+
+        assertSame(root.namespaceScope(), root.namespaceScope());
+        assertSame(item.namespaceScope(), leaf.namespaceScope());
+        assertEquals(3, leaf.getNamespacesInScope().size());
+    }
+
+    @Test
+    public void testInvalidation() throws Exception {
+        Document document = DocumentHelper.parseText(XML);
+        Element root = document.getRootElement();
+        Element child = root.element("child");
+        Element leaf = (Element) ((Element) child.elements().get(0)).elements().get(0);
+
+        assertNull(leaf.getNamespaceForPrefix("c"));
+
+        Namespace c = Namespace.get("c", "urn:c");
+        root.add(c);
+        assertSame(c, leaf.getNamespaceForPrefix("c"));
+        assertSame(c, leaf.getNamespaceForURI("urn:c"));
+
+        root.remove(c);
+        assertNull(leaf.getNamespaceForPrefix("c"));
+
+        child.setQName(DocumentHelper.createQName("child", Namespace.get("c", "urn:c")));
+        assertEquals("urn:c", leaf.getNamespaceForPrefix("c").getURI());
+
+        Element other = DocumentHelper.createElement(DocumentHelper.createQName("other", Namespace.get("d", "urn:d")));
+        leaf.detach();
+        other.add(leaf);
+        assertEquals("urn:d", leaf.getNamespaceForPrefix("d").getURI());
+        assertNull(leaf.getNamespaceForPrefix("a"));
+    }
+
+    @Test
+    public void testInvalidationIsLocal() throws Exception {
+        Document document = DocumentHelper.parseText("<root xmlns:a=\"urn:a\"><x><leaf/></x><y><leaf/></y></root>");
+        Document other = DocumentHelper.parseText(XML);
+        DefaultElement x = (DefaultElement) document.getRootElement().element("x");
+        DefaultElement y = (DefaultElement) document.getRootElement().element("y");
+        DefaultElement xLeaf = (DefaultElement) x.element("leaf");
+        DefaultElement yLeaf = (DefaultElement) y.element("leaf");
+        NamespaceScope xScope = xLeaf.namespaceScope();
+        NamespaceScope yScope = yLeaf.namespaceScope();
+
+        // changes of other documents and other subtrees keep the cached scopes
+        other.getRootElement().add(Namespace.get("c", "urn:c"));
+        other.getRootElement().element("child").detach();
+        y.add(Namespace.get("c", "urn:c"));
+        assertSame(xScope, xLeaf.namespaceScope());
+        assertEquals("urn:c", yLeaf.getNamespaceForPrefix("c").getURI());
+        assertNotSame(yScope, yLeaf.namespaceScope());
+
+        document.getRootElement().add(Namespace.get("d", "urn:d"));
+        assertEquals("urn:d", xLeaf.getNamespaceForPrefix("d").getURI());
+    }
+
+    @Test
+    public void testNamespaceAxis() throws Exception {
+        Document document = DocumentHelper.parseText(XML);
+        Element leaf = (Element) document.selectSingleNode("//leaf");
+        List<?> namespaces = leaf.selectNodes("namespace::*");
+
+        // a, b and xml
+        assertEquals(3, namespaces.size());
+        assertEquals("urn:other", leaf.valueOf("namespace::a"));
+
+        Element clone = (Element) leaf.clone();
+        assertNull(clone.getNamespaceForPrefix("a"));
+        assertEquals(1, clone.selectNodes("namespace::*").size());
+    }
+}
@@ -0,0 +1,83 @@
+package org.neoxml.tree;
+
+import org.junit.Test;
+import org.neoxml.AbstractTestCase;
+import org.neoxml.Attribute;
+import org.neoxml.Document;
+import org.neoxml.DocumentHelper;
+import org.neoxml.Element;
+import org.neoxml.QName;
+import org.neoxml.Text;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class StructuralHashTest extends AbstractTestCase {
+    private static final String XML = "<a xmlns:p='urn:p' x='1'><p:b y='2'>text</p:b><!--c--><?pi data?><d/></a>";
+
+    @Test
+    public void testEqualContent() throws Exception {
+        Document document = DocumentHelper.parseText(XML);
+        Document other = DocumentHelper.parseText(XML);
+
+        assertEquals(document.structuralHash(), other.structuralHash());
+        assertEquals(document.structuralHash(), document.clone().structuralHash());
+        assertEquals(document.getRootElement().structuralHash(), other.getRootElement().createCopy().structuralHash());
+
+        // position and parent don't count
+        Element d = document.getRootElement().element("d");
+        assertEquals(DocumentHelper.createElement("d").structuralHash(), d.structuralHash());
+    }
+
+    @Test
+    public void testDifferentContent() throws Exception {
+        long hash = DocumentHelper.parseText(XML).structuralHash();
+        String[] others = {
+                "<a xmlns:p='urn:p' x='2'><p:b y='2'>text</p:b><!--c--><?pi data?><d/></a>",
+                "<a xmlns:p='urn:p' x='1'><p:b y='2'>other</p:b><!--c--><?pi data?><d/></a>",
+                "<a xmlns:q='urn:p' x='1'><q:b y='2'>text</q:b><!--c--><?pi data?><d/></a>",
+                "<a xmlns:p='urn:p' x='1'><p:b y='2'>text</p:b><?pi data?><!--c--><d/></a>",
+                "<a xmlns:p='urn:p' x='1'><p:b y='2'>text</p:b><!--c--><?pi data?><d><e/></d></a>",
+                "<a xmlns:p='urn:p' x='1'><p:b y='2'><![CDATA[text]]></p:b><!--c--><?pi data?><d/></a>",
+        };
+
+        for (String xml : others) {
+            assertNotEquals(xml, hash, DocumentHelper.parseText(xml).structuralHash());
+        }
+    }
+
+    @Test
+    public void testInvalidatedOnChange() throws Exception {
+        Document document = DocumentHelper.parseText(XML);
+        Element root = document.getRootElement();
+        Element b = (Element) root.elements().get(0);
+        long hash = document.structuralHash();
+        long rootHash = root.structuralHash();
+
+        Attribute y = b.attribute("y");
+        y.setValue("3");
+        assertNotEquals(rootHash, root.structuralHash());
+        y.setValue("2");
+        assertEquals(rootHash, root.structuralHash());
+
+        Text text = (Text) b.node(0);
+        text.setText("changed");
+        assertNotEquals(hash, document.structuralHash());
+        text.setText("text");
+        assertEquals(hash, document.structuralHash());
+
+        Element e = root.element("d").addElement("e");
+        assertNotEquals(hash, document.structuralHash());
+        e.addAttribute("z", "1");
+        e.detach();
+        assertEquals(hash, document.structuralHash());
+
+        b.setQName(QName.get("b", "q", "urn:p"));
+        assertNotEquals(hash, document.structuralHash());
+        b.setQName(QName.get("b", "p", "urn:p"));
+        assertEquals(hash, document.structuralHash());
+
+        root.remove(root.attribute("x"));
+        assertNotEquals(rootHash, root.structuralHash());
+    }
+}
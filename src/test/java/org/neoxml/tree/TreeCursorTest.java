@@ -0,0 +1,90 @@
+package org.neoxml.tree;
+
+import org.junit.Test;
+import org.neoxml.AbstractTestCase;
+import org.neoxml.Document;
+import org.neoxml.DocumentHelper;
+import org.neoxml.Element;
+import org.neoxml.QName;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TreeCursorTest extends AbstractTestCase {
+    private static final String XML = "<!--c--><root xmlns:x=\"urn:x\" a=\"1\">text<item n=\"1\"/><x:item n=\"2\"/>"
+            + "<other/><item n=\"3\"><leaf/></item></root>";
+
+    @Test
+    public void testMoves() throws Exception {
+        Document document = DocumentHelper.parseText(XML);
+        Element root = document.getRootElement();
+        TreeCursor cursor = new TreeCursor(document);
+
+        assertFalse(cursor.parent());
+        assertFalse(cursor.nextSibling());
+        assertSame(document, cursor.getNode());
+
+        assertTrue(cursor.firstChild());
+        assertEquals("c", cursor.getNode().getText());
+        assertFalse(cursor.firstChild());
+        assertTrue(cursor.nextSibling());
+        assertSame(root, cursor.getNode());
+        assertFalse(cursor.nextSibling());
+
+        assertTrue(cursor.lastChild());
+        assertEquals("3", ((Element) cursor.getNode()).attributeValue("n"));
+        assertTrue(cursor.previousSibling());
+        assertEquals("other", cursor.getNode().getName());
+
+        assertTrue(cursor.parent());
+        assertSame(root, cursor.getNode());
+        assertTrue(cursor.parent());
+        assertSame(document, cursor.getNode());
+    }
+
+    @Test
+    public void testElementsByName() throws Exception {
+        Document document = DocumentHelper.parseText(XML);
+        Element root = document.getRootElement();
+        QName item = QName.get("item");
+        StringBuilder found = new StringBuilder();
+
+        TreeCursor cursor = new TreeCursor(root);
+
+        for (boolean moved = cursor.firstChildElement(item); moved; moved = cursor.nextSiblingElement(item)) {
+            found.append(((Element) cursor.getNode()).attributeValue("n"));
+        }
+
+        // x:item is in another namespace, the cursor stays on the last item
+        assertEquals("13", found.toString());
+        assertFalse(cursor.firstChildElement(item));
+        assertTrue(cursor.firstChildElement(null));
+        assertEquals("leaf", cursor.getNode().getName());
+    }
+
+    @Test
+    public void testMoveTo() throws Exception {
+        Document document = DocumentHelper.parseText(XML);
+        Element root = document.getRootElement();
+        Element other = root.element("other");
+        TreeCursor cursor = new TreeCursor();
+
+        // position in the content is looked up
+        cursor.moveTo(other);
+        assertTrue(cursor.previousSibling());
+        assertEquals("2", ((Element) cursor.getNode()).attributeValue("n"));
+        assertTrue(cursor.parent());
+        assertSame(root, cursor.getNode());
+        assertTrue(cursor.previousSibling());
+        assertEquals("c", cursor.getNode().getText());
+
+        // attributes have a parent but no siblings
+        cursor.moveTo(root.attribute("a"));
+        assertFalse(cursor.nextSibling());
+        assertFalse(cursor.previousSibling());
+        assertTrue(cursor.parent());
+        assertSame(root, cursor.getNode());
+    }
+}
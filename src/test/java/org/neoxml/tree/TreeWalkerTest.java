@@ -0,0 +1,190 @@
+package org.neoxml.tree;
+
+import org.junit.Test;
+import org.neoxml.AbstractTestCase;
+import org.neoxml.Attribute;
+import org.neoxml.Branch;
+import org.neoxml.Document;
+import org.neoxml.DocumentHelper;
+import org.neoxml.Element;
+import org.neoxml.Node;
+import org.neoxml.Visitor;
+import org.neoxml.rule.Rule;
+import org.neoxml.rule.Stylesheet;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TreeWalkerTest extends AbstractTestCase {
+    private static final int DEPTH = 100000;
+
+    @Test
+    public void testEvents() throws Exception {
+        Document document = DocumentHelper.parseText("<a><b>x<c/></b><!--y--><d>z</d></a>");
+        List<String> events = new ArrayList<>();
+        TreeWalker walker = new TreeWalker(document);
+
+        while (walker.hasNext()) {
+            int event = walker.next();
+            Node node = walker.getNode();
+
+            if (event == TreeWalker.START && "b".equals(node.getName())) {
+                walker.skipContent();
+            }
+
+            events.add(event + ":" + walker.getDepth() + ":" + (node instanceof Branch ? node.getName() : node.getText()));
+        }
+
+        assertEquals("[1:0:null, 1:1:a, 1:2:b, 2:2:b, 3:2:y, 1:2:d, 3:3:z, 2:2:d, 2:1:a, 2:0:null]",
+                events.toString());
+
+        events.clear();
+        walker.reset(document.getRootElement());
+
+        while (walker.hasNext()) {
+            if (walker.next() == TreeWalker.NODE) {
+                walker.skipSiblings();
+            }
+
+            events.add(walker.getNode().getName());
+        }
+
+        assertEquals("[a, b, null, b, null, a]", events.toString());
+    }
+
+    @Test
+    public void testDeepDocument() throws Exception {
+        Element element = DocumentHelper.createElement("e");
+        element.addAttribute("ID", "leaf");
+        element.setText("text");
+
+        // built bottom-up, so that adding of an element doesn't walk its ancestors
+        Element root = element;
+
+        for (int i = 0; i < DEPTH; i++) {
+            Element parent = DocumentHelper.createElement(i < DEPTH - 1 ? "e" : "root");
+            parent.add(root);
+            root = parent;
+        }
+
+        Document document = DocumentHelper.createDocument(root);
+
+        assertEquals("text", root.getStringValue());
+        assertSame(element, document.elementByID("leaf"));
+
+        int[] visited = new int[1];
+        document.accept(new Visitor() {
+            @Override
+            public boolean visit(Element node) {
+                visited[0]++;
+                return true;
+            }
+        });
+        assertEquals(DEPTH + 1, visited[0]);
+
+        Element copy = (Element) root.clone();
+        assertNotSame(root, copy);
+        assertEquals("text", copy.getStringValue());
+        assertNotSame(element, copy.elementByID("leaf"));
+        assertSame(copy, findRoot(copy.elementByID("leaf")));
+
+        StringWriter out = new StringWriter();
+        root.write(out);
+        assertTrue(out.toString().startsWith("<root><e><e>"));
+        assertTrue(out.toString().endsWith("</e></e></root>"));
+
+        int[] fired = new int[1];
+        Stylesheet stylesheet = new Stylesheet();
+        stylesheet.setValueOfAction(node -> fired[0]++);
+        stylesheet.addRule(new Rule(DocumentHelper.createPattern("@ID"), node -> fired[0]++));
+        stylesheet.run(document);
+        assertEquals(2, fired[0]);
+    }
+
+    @Test
+    public void testVisitorStops() throws Exception {
+        Document document = DocumentHelper.parseText("<a><b x=\"1\"><c/></b><f><g/><h/></f><e/></a>");
+        List<String> visited = new ArrayList<>();
+
+        document.accept(new Visitor() {
+            @Override
+            public boolean visit(Element node) {
+                visited.add(node.getName());
+                return true;
+            }
+
+            @Override
+            public boolean visit(Attribute node) {
+                // content of b is skipped
+                return false;
+            }
+
+            @Override
+            public boolean visitLeave(Element node) {
+                // h is not visited
+                return !"g".equals(node.getName());
+            }
+        });
+
+        assertEquals("[a, b, f, g, e]", visited.toString());
+    }
+
+    @Test
+    public void testOverriddenElementHooks() {
+        Element root = new DefaultElement("a");
+        root.addText("x");
+        Element masked = new MaskedElement("m");
+        masked.addElement("secret").addText("s");
+        root.add(masked);
+        root.addElement("b").addText("y");
+        List<String> visited = new ArrayList<>();
+
+        root.accept(new Visitor() {
+            @Override
+            public boolean visit(Element node) {
+                visited.add(node.getName());
+                return true;
+            }
+        });
+
+        assertEquals("[a, m]", visited.toString());
+        assertEquals("x***y", root.getStringValue());
+    }
+
+    private static Element findRoot(Element element) {
+        while (element.getParent() != null) {
+            element = element.getParent();
+        }
+
+        return element;
+    }
+
+    /**
+     * Element hiding its content from visitors and from the string-value of its ancestors
+     */
+    private static final class MaskedElement extends DefaultElement {
+        private static final long serialVersionUID = 1L;
+
+        MaskedElement(String name) {
+            super(name);
+        }
+
+        @Override
+        public boolean accept(Visitor visitor) {
+            visitor.visit(this);
+            // siblings are not visited either
+            return false;
+        }
+
+        @Override
+        public String getStringValue() {
+            return "***";
+        }
+    }
+}
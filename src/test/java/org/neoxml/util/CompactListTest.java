@@ -0,0 +1,79 @@
+package org.neoxml.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CompactListTest {
+
+    @Test
+    public void testAddAndRemove() {
+        CompactList<String> list = new CompactList<>();
+        assertTrue(list.isEmpty());
+
+        for (int i = 0; i < 20; i++) {
+            list.add("s" + i);
+        }
+
+        assertEquals(20, list.size());
+        assertEquals("s7", list.get(7));
+
+        list.add(0, "first");
+        assertEquals("first", list.get(0));
+        assertEquals("s0", list.get(1));
+
+        assertEquals("first", list.remove(0));
+        assertTrue(list.remove("s10"));
+        assertFalse(list.remove("s10"));
+        assertEquals(19, list.size());
+        assertEquals("s11", list.get(10));
+        assertEquals(-1, list.indexOf("s10"));
+
+        list.clear();
+        assertTrue(list.isEmpty());
+    }
+
+    @Test
+    public void testIterator() {
+        CompactList<String> list = new CompactList<>(2);
+        list.addAll(Arrays.asList("a", "b", "c", "d", "e"));
+
+        Iterator<String> iter = list.iterator();
+
+        while (iter.hasNext()) {
+            if ("c".equals(iter.next())) {
+                iter.remove();
+            }
+        }
+
+        assertEquals(Arrays.asList("a", "b", "d", "e"), list);
+
+        try {
+            for (String s : list) {
+                list.add(s);
+            }
+            fail("ConcurrentModificationException expected");
+        } catch (ConcurrentModificationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testRemoveIfAndClone() {
+        CompactList<String> list = new CompactList<>();
+        list.addAll(Arrays.asList("a", "bb", "c", "dd"));
+
+        CompactList<String> clone = list.clone();
+        assertTrue(list.removeIf(s -> s.length() > 1));
+
+        assertEquals(Arrays.asList("a", "c"), list);
+        assertEquals(Arrays.asList("a", "bb", "c", "dd"), clone);
+    }
+}
@@ -0,0 +1,131 @@
+package org.neoxml.util;
+
+import org.junit.Test;
+import org.neoxml.AbstractTestCase;
+import org.neoxml.Document;
+import org.neoxml.DocumentHelper;
+import org.neoxml.io.SAXReader;
+import org.xml.sax.InputSource;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NodeDiffTest extends AbstractTestCase {
+    private static final String[][] CASES = {
+            {"<a><b/><c/></a>", "<a><b/><c/></a>"},
+            {"<a><b/><c/><d/></a>", "<a><d/><b/><c/></a>"},
+            {"<a><b/><c/><d/></a>", "<a><c/><d/><b/></a>"},
+            {"<a><b/>text<c x='1'/></a>", "<a><c x='2'/>other<e/></a>"},
+            {"<a><b><c>1</c><c>2</c></b></a>", "<a><b><c>2</c><c>3</c><c>1</c></b></a>"},
+            {"<a xmlns:p='urn:p'><p:b/></a>", "<a xmlns:q='urn:q'><q:b/><b/></a>"},
+            {"<?pi one?><!--c--><a/>", "<!--d--><a/><?pi two?>"},
+            {"<a><b/></a>", "<z><b/></z>"},
+            {"<a/>", "<a><b>1</b><b>2</b></a>"},
+            {"<a><b>1</b><b>2</b></a>", "<a/>"},
+            {"<a><b><c><d>deep</d></c></b></a>", "<a><b><c><d>deeper</d></c></b></a>"},
+    };
+
+    @Test
+    public void testPatch() throws Exception {
+        for (String[] documents : CASES) {
+            Document oldDocument = DocumentHelper.parseText(documents[0]);
+            Document newDocument = DocumentHelper.parseText(documents[1]);
+            assertPatch(oldDocument, newDocument, NodeDiff.diff(oldDocument, newDocument));
+        }
+    }
+
+    @Test
+    public void testStreamingPatch() throws Exception {
+        for (String[] documents : CASES) {
+            Document oldDocument = DocumentHelper.parseText(documents[0]);
+            Document newDocument = DocumentHelper.parseText(documents[1]);
+            List<NodeEdit> edits = NodeDiff.diff(oldDocument, new SAXReader(),
+                    new InputSource(new StringReader(documents[1])));
+            assertPatch(oldDocument, newDocument, edits);
+        }
+    }
+
+    @Test
+    public void testUnchangedSubtreesSkipped() throws Exception {
+        Document oldDocument = DocumentHelper.parseText("<a><b><c/></b><d>1</d><e/></a>");
+        Document newDocument = DocumentHelper.parseText("<a><b><c/></b><d>2</d><e/></a>");
+        List<NodeEdit> edits = NodeDiff.diff(oldDocument, newDocument);
+
+        assertEquals(1, edits.size());
+        assertEquals(NodeEdit.Type.UPDATE, edits.get(0).getType());
+        assertEquals("/node()[1]/node()[2]/node()[1]", edits.get(0).getPath());
+        assertEquals(0, NodeDiff.diff(oldDocument, (Document) oldDocument.clone()).size());
+    }
+
+    @Test
+    public void testSingleMove() throws Exception {
+        StringBuilder items = new StringBuilder();
+
+        for (int i = 1; i < 1000; i++) {
+            items.append("<item id='").append(i).append("'/>");
+        }
+
+        Document oldDocument = DocumentHelper.parseText("<catalog><item id='0'/>" + items + "</catalog>");
+        Document newDocument = DocumentHelper.parseText("<catalog>" + items + "<item id='0'/></catalog>");
+        List<NodeEdit> edits = NodeDiff.diff(oldDocument, newDocument);
+
+        assertEquals(1, edits.size());
+        assertEquals(NodeEdit.Type.MOVE, edits.get(0).getType());
+        assertEquals("/node()[1]/node()[1]", edits.get(0).getPath());
+        assertEquals("/node()[1]/node()[1000]", edits.get(0).getTargetPath());
+        assertPatch(oldDocument, newDocument, edits);
+    }
+
+    @Test
+    public void testShuffledContent() throws Exception {
+        Random random = new Random(42);
+
+        for (int round = 0; round < 200; round++) {
+            List<String> oldItems = new ArrayList<>();
+
+            for (int i = random.nextInt(30); i > 0; i--) {
+                oldItems.add(item(random));
+            }
+
+            List<String> newItems = new ArrayList<>(oldItems);
+            Collections.shuffle(newItems.subList(0, random.nextInt(newItems.size() + 1)), random);
+
+            for (int i = random.nextInt(5); i > 0 && !newItems.isEmpty(); i--) {
+                newItems.remove(random.nextInt(newItems.size()));
+            }
+
+            for (int i = random.nextInt(5); i > 0; i--) {
+                newItems.add(random.nextInt(newItems.size() + 1), item(random));
+            }
+
+            Document oldDocument = DocumentHelper.parseText("<a>" + String.join("", oldItems) + "</a>");
+            Document newDocument = DocumentHelper.parseText("<a>" + String.join("", newItems) + "</a>");
+            assertPatch(oldDocument, newDocument, NodeDiff.diff(oldDocument, newDocument));
+        }
+    }
+
+    private static String item(Random random) {
+        switch (random.nextInt(3)) {
+            case 0:
+                return "<b n='" + random.nextInt(10) + "'/>";
+            case 1:
+                return "<c><d>" + random.nextInt(10) + "</d></c>";
+            default:
+                return "<!--" + random.nextInt(10) + "-->";
+        }
+    }
+
+    private static void assertPatch(Document oldDocument, Document newDocument, List<NodeEdit> edits) {
+        Document patched = (Document) oldDocument.clone();
+        NodePatch.apply(patched, edits);
+
+        assertEquals(edits.toString(), newDocument.asXML(), patched.asXML());
+        assertTrue(NodeDiff.diff(patched, newDocument).isEmpty());
+    }
+}
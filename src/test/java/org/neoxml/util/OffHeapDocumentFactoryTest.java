@@ -0,0 +1,128 @@
+package org.neoxml.util;
+
+import org.junit.Test;
+import org.neoxml.AbstractTestCase;
+import org.neoxml.Document;
+import org.neoxml.DocumentHelper;
+import org.neoxml.Element;
+import org.neoxml.QName;
+import org.neoxml.io.SAXReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OffHeapDocumentFactoryTest extends AbstractTestCase {
+    private static final String XML = "<root a=\"value\" b=\"čáp 😀\">"
+            + "<text>Latin-1 text é</text>"
+            + "<utf>žluťoučký kůň</utf>"
+            + "<![CDATA[<cdata>]]>"
+            + "</root>";
+
+    @Test
+    public void testParse() throws Exception {
+        OffHeapDocumentFactory factory = new OffHeapDocumentFactory(new TextArena(16));
+        Document doc = new SAXReader(factory).read(new StringReader(XML));
+        Element root = doc.getRootElement();
+
+        assertTrue(root.attribute("a") instanceof OffHeapAttribute);
+        assertTrue(root.element("text").node(0) instanceof OffHeapText);
+
+        assertEquals("value", root.attributeValue("a"));
+        assertEquals("čáp 😀", root.attributeValue("b"));
+        assertEquals("Latin-1 text é", root.elementText("text"));
+        assertEquals("žluťoučký kůň", root.elementText("utf"));
+        assertEquals("<cdata>", root.node(2).getText());
+
+        assertEquals(DocumentHelper.parseText(XML).asXML(), doc.asXML());
+        assertTrue(factory.getArena().capacity() > 0);
+    }
+
+    @Test
+    public void testModify() throws Exception {
+        OffHeapDocumentFactory factory = new OffHeapDocumentFactory();
+        Document doc = new SAXReader(factory).read(new StringReader(XML));
+        Element root = doc.getRootElement();
+
+        root.element("text").setText("changed");
+        root.addAttribute("a", "other");
+        root.element("utf").addText(" appended");
+
+        assertEquals("changed", root.elementText("text"));
+        assertEquals("other", root.attributeValue("a"));
+        assertEquals("žluťoučký kůň appended", root.element("utf").getText());
+
+        Element copy = root.createCopy();
+        assertEquals("other", copy.attributeValue("a"));
+
+        root.addAttribute("a", null);
+        assertNull(root.attribute("a"));
+    }
+
+    @Test
+    public void testSettersDoNotGrowArena() throws Exception {
+        OffHeapDocumentFactory factory = new OffHeapDocumentFactory(new TextArena(16));
+        Document doc = new SAXReader(factory).read(new StringReader(XML));
+        Element root = doc.getRootElement();
+        long capacity = factory.getArena().capacity();
+
+        for (int i = 0; i < 100; i++) {
+            root.attribute("a").setValue("value " + i);
+            root.element("text").node(0).setText("text " + i);
+            root.node(2).setText("cdata " + i);
+        }
+
+        assertEquals(capacity, factory.getArena().capacity());
+        assertEquals("value 99", root.attributeValue("a"));
+        assertEquals("text 99", root.elementText("text"));
+        assertEquals("cdata 99", root.node(2).getText());
+
+        root.attribute("a").setValue(null);
+        assertNull(root.attribute("a").getValue());
+    }
+
+    @Test
+    public void testSettersInvalidateStructuralHash() throws Exception {
+        SAXReader reader = new SAXReader(new OffHeapDocumentFactory());
+        Document doc = reader.read(new StringReader("<r><x a='1'>t</x><y/></r>"));
+        Document original = (Document) doc.clone();
+        Element x = doc.getRootElement().element("x");
+        doc.addAttributeIndex("a", QName.get("a"), null);
+        assertEquals(1, doc.lookup("a", "1").size());
+        long hash = doc.getRootElement().structuralHash();
+
+        x.attribute("a").setValue("2");
+        long attributeHash = doc.getRootElement().structuralHash();
+        assertNotEquals(hash, attributeHash);
+        assertEquals(0, doc.lookup("a", "1").size());
+        assertEquals(1, doc.lookup("a", "2").size());
+
+        x.node(0).setText("u");
+        assertNotEquals(attributeHash, doc.getRootElement().structuralHash());
+        assertFalse(NodeDiff.diff(original, doc).isEmpty());
+    }
+
+    @Test
+    public void testSerialize() throws Exception {
+        Document doc = new SAXReader(new OffHeapDocumentFactory()).read(new StringReader(XML));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(doc);
+        }
+
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            Document copy = (Document) in.readObject();
+            assertEquals(doc.asXML(), copy.asXML());
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package org.neoxml.xpath;
+
+import org.jaxen.Navigator;
+import org.jaxen.util.FollowingAxisIterator;
+import org.jaxen.util.FollowingSiblingAxisIterator;
+import org.jaxen.util.PrecedingAxisIterator;
+import org.jaxen.util.PrecedingSiblingAxisIterator;
+import org.junit.Test;
+import org.neoxml.AbstractTestCase;
+import org.neoxml.Attribute;
+import org.neoxml.Document;
+import org.neoxml.DocumentHelper;
+import org.neoxml.Element;
+import org.neoxml.Node;
+import org.neoxml.tree.DefaultElement;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DocumentNavigatorTest extends AbstractTestCase {
+    private static final String XML = "<?pi before?><!--comment-->"
+            + "<root><a id=\"1\">text<b/><c><d/>more<e/></c></a><!--inner--><f><g>last</g></f>tail</root>"
+            + "<?pi after?>";
+
+    @Test
+    public void testAxes() throws Exception {
+        Document document = DocumentHelper.parseText(XML);
+        Navigator navigator = DocumentNavigator.getInstance();
+
+        List<Node> nodes = document.selectNodes("//node() | //@*");
+        nodes.add(document);
+
+        for (Node node : nodes) {
+            String name = node.getPath() + " " + node.getText();
+
+            if (node instanceof Attribute) {
+                // attributes have no siblings
+                assertFalse(name, navigator.getFollowingSiblingAxisIterator(node).hasNext());
+                assertFalse(name, navigator.getPrecedingSiblingAxisIterator(node).hasNext());
+            } else {
+                assertEquals(name, list(new FollowingSiblingAxisIterator(node, navigator)),
+                        list(navigator.getFollowingSiblingAxisIterator(node)));
+                assertEquals(name, list(new PrecedingSiblingAxisIterator(node, navigator)),
+                        list(navigator.getPrecedingSiblingAxisIterator(node)));
+            }
+
+            assertEquals(name, list(new FollowingAxisIterator(node, navigator)),
+                    list(navigator.getFollowingAxisIterator(node)));
+            assertEquals(name, list(new PrecedingAxisIterator(node, navigator)),
+                    list(navigator.getPrecedingAxisIterator(node)));
+        }
+    }
+
+    @Test
+    public void testSiblingPath() throws Exception {
+        Document document = DocumentHelper.parseText(XML);
+
+        assertEquals("f", document.valueOf("name(//a/following-sibling::*[1])"));
+        assertEquals("b", document.valueOf("name(//c/preceding-sibling::*[1])"));
+        assertEquals("last", document.valueOf("//e/following::text()[1]"));
+        assertEquals("d", document.valueOf("name(//e/preceding::*[1])"));
+    }
+
+    @Test
+    public void testSiblingAxesFindPositionOnce() throws Exception {
+        Element root = DocumentHelper.createElement("root");
+        int size = 2000;
+
+        for (int i = 0; i < size; i++) {
+            root.add(new CountingElement("e" + i));
+        }
+
+        Navigator navigator = DocumentNavigator.getInstance();
+        CountingElement.comparisons = 0;
+
+        for (int i = 0; i < size - 1; i++) {
+            Node node = root.node(i);
+            assertSame(root.node(i + 1), navigator.getFollowingSiblingAxisIterator(node).next());
+            assertSame(root.node(i + 1), navigator.getFollowingAxisIterator(node).next());
+            assertSame(node, navigator.getPrecedingSiblingAxisIterator(root.node(i + 1)).next());
+        }
+
+        // a scan of the siblings for each axis would compare about size * size / 2 nodes
+        assertTrue(CountingElement.comparisons < size);
+        assertEquals("e1001", root.valueOf("name(e1000/following-sibling::*[1])"));
+    }
+
+    private static List<Object> list(Iterator<?> iter) {
+        List<Object> answer = new ArrayList<>();
+        iter.forEachRemaining(answer::add);
+        return answer;
+    }
+
+    /**
+     * Element counting its comparisons by equals
+     */
+    private static final class CountingElement extends DefaultElement {
+        private static final long serialVersionUID = 1L;
+
+        static int comparisons;
+
+        CountingElement(String name) {
+            super(name);
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            comparisons++;
+            return super.equals(object);
+        }
+
+        @Override
+        public int hashCode() {
+            return super.hashCode();
+        }
+    }
+}
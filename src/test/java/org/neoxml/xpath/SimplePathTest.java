@@ -0,0 +1,114 @@
+package org.neoxml.xpath;
+
+import org.jaxen.SimpleNamespaceContext;
+import org.junit.Test;
+import org.neoxml.AbstractTestCase;
+import org.neoxml.Document;
+import org.neoxml.DocumentHelper;
+import org.neoxml.Element;
+import org.neoxml.Node;
+import org.neoxml.tree.AbstractDocument;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class SimplePathTest extends AbstractTestCase {
+    private static final String XML = "<catalog xmlns:x=\"urn:x\">"
+            + "<item sku=\"1\" id=\"a\"><name>first</name><item sku=\"1.1\"><name>nested</name></item></item>"
+            + "<item sku=\"2\"><name>second</name><x:item sku=\"x\"/>text<![CDATA[cdata]]></item>"
+            + "<group><item id=\"b\" sku=\"3\"><name>third</name></item><item sku=\"4\"/></group>"
+            + "</catalog>";
+
+    private static final String[] PATHS = {
+            "/catalog/item", "/catalog/item[@id='a']/name", "//item/@sku", "//item", "//item[1]", "//item[2]/@sku",
+            "//item[name='third']", "//item[@id]", "item/name", "item//name", "//item//name", "//text()",
+            "//item/text()", "/catalog/*", "//*[@id=\"b\"]/@*", "./item[2]", ".//item[@sku='4']", "//group/item[1]",
+            "/catalog//item[@sku='1.1']/name", "//name", "/catalog/item/item", "/missing", "item[3]", ".",
+            "//group/item|/catalog/item|//name", "item|item/name|.",
+    };
+
+    @Test
+    public void testSameResultAsJaxen() throws Exception {
+        Document document = DocumentHelper.parseText(XML);
+        Element root = document.getRootElement();
+
+        for (String path : PATHS) {
+            SimplePath simplePath = SimplePath.compile(path, null);
+            assertNotNull(path, simplePath);
+
+            for (Node context : new Node[]{document, root, root.element("item")}) {
+                List<?> expected = new NeoXmlXPath(path).selectNodes(context);
+                assertEquals(path, expected, simplePath.selectNodes(context));
+            }
+        }
+    }
+
+    @Test
+    public void testElementIndex() throws Exception {
+        Document document = DocumentHelper.parseText(XML);
+        ((AbstractDocument) document).setElementIndexEnabled(true);
+        Element root = document.getRootElement();
+
+        for (String path : PATHS) {
+            SimplePath simplePath = SimplePath.compile(path, null);
+
+            for (Node context : new Node[]{document, root, root.element("item")}) {
+                List<?> expected = new NeoXmlXPath(path).selectNodes(context);
+                assertEquals(path, expected, simplePath.selectNodes(context));
+            }
+        }
+
+        root.element("group").addElement("item").addAttribute("sku", "5");
+        assertEquals(6, document.selectNodes("//item").size());
+        assertEquals("5", document.valueOf("//group/item[@sku='5']/@sku"));
+    }
+
+    @Test
+    public void testUnionOrder() throws Exception {
+        Document document = DocumentHelper.parseText(XML);
+        List<Node> nodes = new DefaultXPath("//name|//@sku").selectNodes(document);
+
+        // attributes precede content of their element
+        assertEquals(new HashSet<>(document.selectNodes("//@sku | //name")), new HashSet<>(nodes));
+        assertEquals("1", nodes.get(0).getText());
+        assertEquals("first", nodes.get(1).getText());
+        assertEquals("1.1", nodes.get(2).getText());
+        assertEquals("nested", nodes.get(3).getText());
+    }
+
+    @Test
+    public void testCount() throws Exception {
+        Document document = DocumentHelper.parseText(XML);
+
+        assertEquals(5, document.numberValueOf("count(//item)").intValue());
+        assertEquals("2", document.valueOf("count(/catalog/item)"));
+        assertEquals(0.0, document.createXPath("count(//missing)").evaluate(document));
+    }
+
+    @Test
+    public void testNamespaces() throws Exception {
+        Document document = DocumentHelper.parseText(XML);
+
+        assertNull(SimplePath.compile("//x:item", null));
+
+        DefaultXPath xpath = new DefaultXPath("//x:item/@sku");
+        assertEquals("x", xpath.valueOf(document));
+
+        xpath.setNamespaceContext(new SimpleNamespaceContext(Collections.singletonMap("x", "urn:x")));
+        assertEquals("x", xpath.valueOf(document));
+        assertNotNull(SimplePath.compile("//x:item", xpath.getNamespaceContext()));
+    }
+
+    @Test
+    public void testUnsupported() {
+        for (String path : new String[]{"/", "//.", "..", "a/..", "@a/b", "a[last()]", "a[@b = 'c']", "node()",
+                "child::a", "a | b", "a[0]", "count(a) + 1", "$var", "a[b/c='d']", "text()[1]"}) {
+            assertNull(path, SimplePath.compile(path, null));
+        }
+    }
+}
@@ -9,8 +9,14 @@ package org.neoxml.xpath;
 import org.junit.Before;
 import org.junit.Test;
 import org.neoxml.AbstractTestCase;
+import org.neoxml.Node;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
 
 /**
  * Test harness for the sorting version of the selectNodes() function
@@ -35,6 +41,33 @@ public class SortByTest extends AbstractTestCase {
       log.debug("Number of distinct SPEAKER instances: " + noDuplicates.size());
     }
 
+    @Test
+    public void testSortHooks() throws Exception {
+        List<Node> sorted = document.selectNodes("//SPEAKER");
+        new DefaultXPath(".").sort(sorted, true);
+
+        List<String> calls = new ArrayList<>();
+        DefaultXPath xpath = new DefaultXPath(".") {
+            @Override
+            protected void sort(List<? extends Node> list, Map<Node, String> sortValues) {
+                calls.add("sort");
+                super.sort(list, sortValues);
+            }
+
+            @Override
+            protected void removeDuplicates(List<? extends Node> list, Map<Node, String> sortValues) {
+                calls.add("removeDuplicates");
+                super.removeDuplicates(list, sortValues);
+            }
+        };
+
+        List<Node> list = document.selectNodes("//SPEAKER");
+        xpath.sort(list, true);
+
+        assertEquals(Arrays.asList("sort", "removeDuplicates"), calls);
+        assertEquals(sorted, list);
+    }
+
     @Override
     @Before
     public void setUp() throws Exception {
@@ -0,0 +1,90 @@
+package org.neoxml.xpath;
+
+import org.junit.Test;
+import org.neoxml.AbstractTestCase;
+import org.neoxml.Document;
+import org.neoxml.DocumentHelper;
+import org.neoxml.Element;
+import org.neoxml.Node;
+import org.neoxml.XPath;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class XPathBatchTest extends AbstractTestCase {
+    private static final String XML = "<catalog xmlns:x=\"urn:x\">"
+            + "<item sku=\"1\" id=\"a\"><name>first</name><item sku=\"1.1\"><name>nested</name></item></item>"
+            + "<item sku=\"2\"><name>second</name><x:item sku=\"x\"/>text<![CDATA[cdata]]></item>"
+            + "<group><item id=\"b\" sku=\"3\"><name>third</name></item><item sku=\"4\"/></group>"
+            + "</catalog>";
+
+    private static final String[] PATHS = {
+            "/catalog/item", "/catalog/item[@id='a']/name", "//item/@sku", "//item", "//item[1]", "//item[2]/@sku",
+            "//item[name='third']", "//item[@id]", "item/name", "item//name", "//item//name", "//text()",
+            "//item/text()", "/catalog/*", "//*[@id=\"b\"]/@*", "./item[2]", ".//item[@sku='4']", "//group/item[1]",
+            "/catalog//item[@sku='1.1']/name", "//name", "/catalog/item/item", "/missing", "item[3]", ".",
+            "//group/item|/catalog/item|//name", "item|item/name|.", "//@sku", ".//text()", "@sku", "//*[1][@sku]",
+            "//item[@sku][2]", "count(//item)", "count(item)", "/.", "//item[last()]", "string(//name)",
+            "//x:item", "..", "//name[. = 'nested']",
+    };
+
+    @Test
+    public void testSameResults() throws Exception {
+        Document document = DocumentHelper.parseText(XML);
+        Element root = document.getRootElement();
+        List<XPath> xpaths = new ArrayList<>();
+
+        for (String path : PATHS) {
+            xpaths.add(new DefaultXPath(path));
+        }
+
+        XPathBatch batch = new XPathBatch(xpaths);
+        assertEquals(PATHS.length, batch.size());
+
+        for (Node context : new Node[]{document, root, root.element("item"), root.element("group")}) {
+            List<Object> results = batch.evaluate(context);
+            List<List<Node>> nodes = batch.selectNodes(context);
+
+            for (int i = 0; i < PATHS.length; i++) {
+                String name = PATHS[i] + " from " + context.getPath();
+                assertEquals(name, xpaths.get(i).evaluate(context), results.get(i));
+
+                if (!PATHS[i].contains("(")) {
+                    // values of functions are wrapped in new text nodes
+                    assertEquals(name, xpaths.get(i).selectNodes(context), nodes.get(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMatchers() {
+        for (String path : PATHS) {
+            SimplePath simplePath = SimplePath.compile(path, null);
+
+            if (simplePath != null) {
+                assertNotNull(path, PathMatcher.create(simplePath, false));
+            }
+        }
+
+        assertNull(PathMatcher.create(SimplePath.compile("//item[name='third']", null), true));
+        assertNotNull(PathMatcher.create(SimplePath.compile("//item[@id='b']/name", null), true));
+    }
+
+    @Test
+    public void testNamespaceContextChange() throws Exception {
+        Document document = DocumentHelper.parseText(XML);
+        DefaultXPath xpath = new DefaultXPath("//x:item/@sku");
+        XPathBatch batch = new XPathBatch(Collections.singletonList(xpath));
+
+        assertNotNull(batch.evaluate(document).get(0));
+
+        xpath.setNamespaceURIs(Collections.singletonMap("x", "urn:x"));
+        assertEquals("x", ((Node) batch.evaluate(document).get(0)).getText());
+    }
+}
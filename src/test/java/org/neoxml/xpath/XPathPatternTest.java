@@ -0,0 +1,119 @@
+package org.neoxml.xpath;
+
+import org.jaxen.pattern.PatternParser;
+import org.junit.Test;
+import org.neoxml.AbstractTestCase;
+import org.neoxml.Document;
+import org.neoxml.DocumentHelper;
+import org.neoxml.Element;
+import org.neoxml.Node;
+import org.neoxml.rule.Pattern;
+import org.neoxml.rule.Rule;
+import org.neoxml.rule.RuleSet;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class XPathPatternTest extends AbstractTestCase {
+    private static final String XML = "<catalog xmlns:x=\"urn:x\">"
+            + "<item sku=\"1\" id=\"a\"><name>first</name><item sku=\"1.1\"><name>nested</name></item></item>"
+            + "<item sku=\"2\"><name>second</name><x:item sku=\"x\"/>text<![CDATA[cdata]]></item>"
+            + "<group><item id=\"b\" sku=\"3\"><name>third</name></item><item sku=\"4\"/></group>"
+            + "</catalog>";
+
+    private static final String[] PATTERNS = {
+            "item", "/catalog", "/catalog/item", "//item", "//catalog", "catalog//name", "item/name", "item//name",
+            "group/item[@id]", "item[@id='a']/name", "item[name='third']", "*", "@*", "@sku", "item/@sku",
+            "group//@sku", "text()", "item/text()", "/catalog//item[@sku='4']", "name|@id|group/item", "x:item",
+            "item[2]", "node()", "/", "catalog//item//name", "//@sku", "/catalog//name", "item//@sku",
+    };
+
+    @Test
+    public void testSameMatchesAsJaxen() throws Exception {
+        Document document = DocumentHelper.parseText(XML);
+        List<Node> nodes = allNodes(document);
+        Element detached = document.getRootElement().element("group").createCopy();
+
+        nodes.add(detached);
+        nodes.addAll(detached.selectNodes(".//node()"));
+
+        for (String text : PATTERNS) {
+            XPathPattern pattern = new XPathPattern(text);
+            XPathPattern jaxen = new XPathPattern(PatternParser.parse(text));
+
+            for (Node node : nodes) {
+                assertEquals(text + " on " + node, jaxen.matches(node), pattern.matches(node));
+            }
+        }
+    }
+
+    @Test
+    public void testUnionPatterns() throws Exception {
+        Document document = DocumentHelper.parseText(XML);
+        List<Node> nodes = allNodes(document);
+        Pattern[] parts = new XPathPattern("name|@id|group/item").getUnionPatterns();
+
+        assertNotNull(parts);
+
+        for (Pattern part : parts) {
+            XPathPattern jaxen = new XPathPattern(PatternParser.parse(((XPathPattern) part).getText()));
+
+            for (Node node : nodes) {
+                assertEquals(part + " on " + node, jaxen.matches(node), part.matches(node));
+            }
+        }
+    }
+
+    @Test
+    public void testMatchesNodeName() {
+        assertEquals("name", new XPathPattern("item/name").getMatchesNodeName());
+        assertEquals("sku", new XPathPattern("@sku").getMatchesNodeName());
+        assertNull(new XPathPattern("item/*").getMatchesNodeName());
+        assertNull(new XPathPattern("text()").getMatchesNodeName());
+    }
+
+    @Test
+    public void testDecisionTable() throws Exception {
+        Document document = DocumentHelper.parseText(XML);
+        Element group = document.getRootElement().element("group");
+        RuleSet ruleSet = new RuleSet();
+        Rule any = new Rule(new XPathPattern("*"));
+        Rule item = new Rule(new XPathPattern("item"));
+        Rule groupItem = new Rule(new XPathPattern("group/item"));
+
+        any.setAppearenceCount(1);
+        item.setAppearenceCount(2);
+        groupItem.setAppearenceCount(3);
+        ruleSet.addRule(any);
+        ruleSet.addRule(item);
+        ruleSet.addRule(groupItem);
+
+        assertSame(groupItem, ruleSet.getMatchingRule(group.element("item")));
+        assertSame(item, ruleSet.getMatchingRule(document.getRootElement().element("item")));
+        assertSame(any, ruleSet.getMatchingRule(group));
+        assertNull(ruleSet.getMatchingRule(group.element("item").attribute("sku")));
+
+        ruleSet.removeRule(groupItem);
+        assertSame(item, ruleSet.getMatchingRule(group.element("item")));
+    }
+
+    private static List<Node> allNodes(Document document) {
+        List<Node> nodes = new ArrayList<>();
+        nodes.add(document);
+
+        for (Node node : document.selectNodes("//node()")) {
+            nodes.add(node);
+
+            if (node instanceof Element) {
+                nodes.addAll(((Element) node).attributes());
+            }
+        }
+
+        return nodes;
+    }
+}
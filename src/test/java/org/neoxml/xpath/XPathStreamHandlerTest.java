@@ -0,0 +1,116 @@
+package org.neoxml.xpath;
+
+import org.junit.Test;
+import org.neoxml.AbstractTestCase;
+import org.neoxml.Document;
+import org.neoxml.DocumentHelper;
+import org.neoxml.InvalidXPathException;
+import org.neoxml.Node;
+import org.neoxml.io.SAXReader;
+import org.xml.sax.InputSource;
+import org.xml.sax.helpers.XMLReaderFactory;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class XPathStreamHandlerTest extends AbstractTestCase {
+    private static final String XML = "<catalog xmlns:x=\"urn:x\">"
+            + "<item sku=\"1\" id=\"a\"><name>first</name><item sku=\"1.1\"><name>nested</name></item></item>"
+            + "<item sku=\"2\"><name>second</name><x:item sku=\"x\"/>text<!--c-->more</item>"
+            + "<group><item id=\"b\" sku=\"3\"><name>third</name></item><item sku=\"4\"/></group>"
+            + "</catalog>";
+
+    private static final String[] PATHS = {
+            "/catalog/item", "/catalog/item[@id='a']/name", "//item/@sku", "//item", "//item[1]", "//item[2]/@sku",
+            "//item[@id]", "catalog/item/name", "catalog//name", "//item//name", "//text()", "//item/text()",
+            "/catalog/*", "//*[@id=\"b\"]/@*", "//group/item[1]", "/catalog//item[@sku='1.1']/name", "//name",
+            "/catalog/item/item", "/missing", "//group/item|/catalog/item|//name", "//@sku", "//*[1][@sku]",
+            "//item[@sku][2]", "//x:item/@sku",
+    };
+
+    @Test
+    public void testSameValuesAsTree() throws Exception {
+        Document document = DocumentHelper.parseText(XML);
+        SAXReader reader = new SAXReader();
+
+        for (String path : PATHS) {
+            DefaultXPath xpath = new DefaultXPath(path);
+            xpath.setNamespaceURIs(Collections.singletonMap("x", "urn:x"));
+
+            List<String> expected = new ArrayList<>();
+
+            for (Node node : xpath.selectNodes(document)) {
+                expected.add(node.getStringValue());
+            }
+
+            List<String> values = new ArrayList<>();
+            XPathStreamHandler handler = new XPathStreamHandler(Collections.singletonMap("x", "urn:x"));
+            handler.add(path, values::add);
+            handler.read(reader, new InputSource(new StringReader(XML)));
+
+            // values of nested elements are complete in reverse order
+            Collections.sort(expected);
+            Collections.sort(values);
+            assertEquals(path, expected, values);
+        }
+
+        // the reader still builds documents
+        assertEquals("first", reader.read(new StringReader(XML)).valueOf("//name"));
+    }
+
+    @Test
+    public void testEarlyStop() throws Exception {
+        String xml = "<envelope><header><id>42</id><type>order</type></header><body><broken></body></envelope>";
+        List<String> values = new ArrayList<>();
+
+        XPathStreamHandler handler = new XPathStreamHandler()
+                .addFirst("/envelope/header/id", values::add)
+                .addFirst("//type", values::add)
+                .addFirst("//header/@missing", values::add);
+
+        String wellFormed = xml.replace("<broken>", "");
+        handler.parse(XMLReaderFactory.createXMLReader(), new InputSource(new StringReader(wellFormed)));
+        assertEquals(2, values.size());
+        assertFalse(handler.isSatisfied());
+
+        values.clear();
+        handler = new XPathStreamHandler()
+                .addFirst("/envelope/header/id", values::add)
+                .addFirst("//type", values::add);
+
+        handler.parse(XMLReaderFactory.createXMLReader(), new InputSource(new StringReader(xml)));
+        assertEquals("[42, order]", values.toString());
+        assertTrue(handler.isSatisfied());
+    }
+
+    @Test
+    public void testParseWithLexicalHandler() throws Exception {
+        List<String> values = new ArrayList<>();
+        new XPathStreamHandler()
+                .add("//item/text()", values::add)
+                .parse(XMLReaderFactory.createXMLReader(), new InputSource(new StringReader(XML)));
+
+        // the comment separates text nodes like it does in the tree
+        assertEquals("[text, more]", values.toString());
+    }
+
+    @Test
+    public void testUnsupported() {
+        for (String path : new String[]{"//item[name='x']", "count(//item)", "..", "//item[last()]"}) {
+            try {
+                new XPathStreamHandler().add(path, value -> {
+                });
+            } catch (InvalidXPathException e) {
+                continue;
+            }
+
+            throw new AssertionError(path + " should not be supported");
+        }
+    }
+}